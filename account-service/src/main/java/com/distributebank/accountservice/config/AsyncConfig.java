@@ -1,7 +1,10 @@
 package com.distributebank.accountservice.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -9,13 +12,14 @@ import java.util.concurrent.Executor;
 
 /**
  * 异步任务配置
- * 用于延时双删等异步操作
+ * 用于余额后台刷新等异步操作
  */
 @Configuration
 @EnableAsync
 public class AsyncConfig {
     
     @Bean(name = "cacheTaskExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
     public Executor cacheTaskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(2);
@@ -26,4 +30,16 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+    
+    /**
+     * 虚拟线程模式：每个任务一个虚拟线程，用并发上限代替线程池大小限制同时刷新的数量
+     */
+    @Bean(name = "cacheTaskExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualCacheTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("cache-task-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(100);
+        return executor;
+    }
 } 
\ No newline at end of file
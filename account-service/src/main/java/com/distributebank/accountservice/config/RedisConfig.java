@@ -0,0 +1,39 @@
+package com.distributebank.accountservice.config;
+
+import com.distributebank.accountservice.service.BalanceNearCache;
+import com.distributebank.accountservice.service.HotAccountService;
+import com.distributebank.common.cache.BalanceCacheInvalidation;
+import com.distributebank.common.cache.BalanceShardKeys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Redis配置
+ * 订阅余额缓存失效频道，驱动近端缓存跨实例失效；订阅热点模式变更频道，失效本地分片数缓存
+ */
+@Configuration
+public class RedisConfig {
+    
+    @Bean
+    public RedisMessageListenerContainer balanceInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                              BalanceNearCache balanceNearCache,
+                                                                              HotAccountService hotAccountService,
+                                                                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        if (virtualThreads) {
+            // 默认执行器每条消息新建一个平台线程，虚拟线程模式下改为虚拟线程
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("redis-listener-");
+            executor.setVirtualThreads(true);
+            container.setTaskExecutor(executor);
+        }
+        container.addMessageListener(balanceNearCache, new ChannelTopic(BalanceCacheInvalidation.CHANNEL));
+        container.addMessageListener(hotAccountService, new ChannelTopic(BalanceShardKeys.CHANNEL));
+        return container;
+    }
+}
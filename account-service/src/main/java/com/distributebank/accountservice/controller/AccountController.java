@@ -2,6 +2,8 @@ package com.distributebank.accountservice.controller;
 
 import com.distributebank.common.dto.Result;
 import com.distributebank.accountservice.service.AccountService;
+import com.distributebank.accountservice.service.HotAccountService;
+import com.distributebank.accountservice.dto.BatchAccountQueryRequest;
 import com.distributebank.accountservice.dto.CreateAccountRequest;
 import com.distributebank.accountservice.dto.DepositRequest;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +11,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
  * 账户控制器
@@ -21,6 +24,7 @@ import java.math.BigDecimal;
 public class AccountController {
     
     private final AccountService accountService;
+    private final HotAccountService hotAccountService;
     
     /**
      * 查询账户余额
@@ -54,6 +58,24 @@ public class AccountController {
         }
     }
     
+    /**
+     * 批量查询账户信息
+     * POST /api/accounts/batch-query
+     */
+    @PostMapping("/batch-query")
+    public Result<List<AccountService.AccountInfo>> getAccounts(@RequestBody BatchAccountQueryRequest request) {
+        int count = request.getAccountIds() == null ? 0 : request.getAccountIds().size();
+        log.info("批量查询账户信息: {}个", count);
+        try {
+            List<AccountService.AccountInfo> accounts = accountService.getAccounts(
+                    request.getAccountIds() == null ? List.of() : request.getAccountIds());
+            return Result.success(accounts);
+        } catch (Exception e) {
+            log.error("批量查询账户信息失败", e);
+            return Result.error(500, "查询失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 创建账户
      * POST /api/accounts
@@ -85,4 +107,21 @@ public class AccountController {
             return Result.error(500, "充值失败: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 开启热点账户分片
+     * POST /api/accounts/{accountId}/shards?count=N
+     */
+    @PostMapping("/{accountId}/shards")
+    public Result<Integer> enableHotAccount(@PathVariable String accountId, 
+                                            @RequestParam(defaultValue = "8") int count) {
+        log.info("开启热点账户: {} 分片数: {}", accountId, count);
+        try {
+            int shardCount = hotAccountService.enableHotAccount(accountId, count);
+            return Result.success("热点分片开启成功", shardCount);
+        } catch (Exception e) {
+            log.error("开启热点账户失败", e);
+            return Result.error(500, "开启失败: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.distributebank.accountservice.controller;
+
+import com.distributebank.common.dto.Result;
+import com.distributebank.accountservice.service.BalanceJournalFlusher;
+import com.distributebank.accountservice.service.BalanceLoader;
+import com.distributebank.accountservice.service.BalanceNearCache;
+import com.distributebank.accountservice.service.DelayedInvalidationScheduler;
+import com.distributebank.accountservice.service.IdempotencyIndex;
+import com.distributebank.accountservice.service.VersionedBalanceCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 缓存监控控制器
+ * 提供余额缓存相关的统计接口
+ */
+@RestController
+@RequestMapping("/api/cache")
+@RequiredArgsConstructor
+@Slf4j
+public class CacheController {
+    
+    private final BalanceNearCache balanceNearCache;
+    private final DelayedInvalidationScheduler delayedInvalidationScheduler;
+    private final BalanceLoader balanceLoader;
+    private final VersionedBalanceCache versionedBalanceCache;
+    private final IdempotencyIndex idempotencyIndex;
+    private final ObjectProvider<BalanceJournalFlusher> balanceJournalFlusher;
+    
+    /**
+     * 查询近端缓存统计（命中、未命中、淘汰、失效广播）
+     * GET /api/cache/near-cache/stats
+     */
+    @GetMapping("/near-cache/stats")
+    public Result<BalanceNearCache.NearCacheStats> getNearCacheStats() {
+        return Result.success(balanceNearCache.getStats());
+    }
+    
+    /**
+     * 查询延时删除时间轮统计（队列深度、合并数、延迟）
+     * GET /api/cache/invalidation/stats
+     */
+    @GetMapping("/invalidation/stats")
+    public Result<DelayedInvalidationScheduler.InvalidationStats> getInvalidationStats() {
+        return Result.success(delayedInvalidationScheduler.getStats());
+    }
+    
+    /**
+     * 查询缓存未命中回源统计（实际加载、合并、返回旧值）
+     * GET /api/cache/load/stats
+     */
+    @GetMapping("/load/stats")
+    public Result<BalanceLoader.LoadStats> getLoadStats() {
+        return Result.success(balanceLoader.getStats());
+    }
+    
+    /**
+     * 查询按版本号写入余额的统计（写入、因版本过旧被拒绝、同批合并）
+     * GET /api/cache/versioned/stats
+     */
+    @GetMapping("/versioned/stats")
+    public Result<VersionedBalanceCache.VersionedCacheStats> getVersionedStats() {
+        return Result.success(versionedBalanceCache.getStats());
+    }
+    
+    /**
+     * 采样估算幂等索引内存（按小时分桶 vs 旧的每笔交易独立键）
+     * GET /api/cache/idempotency/stats?sample=16
+     */
+    @GetMapping("/idempotency/stats")
+    public Result<IdempotencyIndex.IdempotencyStats> getIdempotencyStats(
+            @RequestParam(defaultValue = "16") int sample) {
+        return Result.success(idempotencyIndex.getStats(sample));
+    }
+    
+    /**
+     * 查询余额变动日志回写统计（积压、合并比、回写延迟）
+     * GET /api/cache/journal/stats
+     */
+    @GetMapping("/journal/stats")
+    public Result<BalanceJournalFlusher.JournalStats> getJournalStats() {
+        BalanceJournalFlusher flusher = balanceJournalFlusher.getIfAvailable();
+        if (flusher == null) {
+            return Result.error(404, "余额变动日志回写未开启");
+        }
+        return Result.success(flusher.getStats());
+    }
+}
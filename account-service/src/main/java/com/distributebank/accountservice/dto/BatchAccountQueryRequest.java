@@ -0,0 +1,12 @@
+package com.distributebank.accountservice.dto;
+
+import java.util.List;
+
+/**
+ * 批量查询账户请求DTO
+ */
+public class BatchAccountQueryRequest {
+    private List<String> accountIds;
+    public List<String> getAccountIds() { return accountIds; }
+    public void setAccountIds(List<String> accountIds) { this.accountIds = accountIds; }
+}
@@ -0,0 +1,160 @@
+package com.distributebank.accountservice.handler;
+
+import com.distributebank.common.event.TransferEvent;
+import com.distributebank.accountservice.service.AccountService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 账户批量事件处理器
+ * 一次poll拉取的TRANSFER_CREATED事件合并为一次Lua脚本扣款，
+ * 处理结果事件统一发送后flush，由生产者按批次发出，全部确认后才返回（提交位点），任一发送失败抛出异常由容器重新投递。
+ * 脚本调用异常或超时时脚本可能已部分执行，结果视为未知：整批重试（脚本按幂等标记跳过已扣过的交易），
+ * 重试用尽后抛出异常由容器重新投递，不发布失败事件。
+ * 幂等标记为"已扣款"的交易（重试、重新投递，或上次扣款后进程在结果事件发出前退出）重新发布处理完成事件，下游按交易ID幂等；
+ * 标记为"已退回"的交易不再发布
+ */
+@Component
+@ConditionalOnProperty(name = "account.deduct.batch.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class AccountBatchEventHandler {
+    
+    private final AccountService accountService;
+    private final KafkaTemplate<String, TransferEvent> kafkaTemplate;
+    
+    private static final String TRANSFER_TOPIC = "transfer-events";
+    
+    /**
+     * 单次Lua脚本最多处理的交易笔数，避免脚本执行时间过长阻塞Redis
+     */
+    @Value("${account.deduct.batch.max-size:200}")
+    private int maxBatchSize;
+    
+    /**
+     * 脚本调用异常时整批最多执行的次数（含首次）
+     */
+    @Value("${account.deduct.batch.max-attempts:3}")
+    private int maxAttempts;
+    
+    @Value("${account.deduct.batch.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+    
+    /**
+     * 批量处理转账创建事件，执行扣款逻辑
+     */
+    @KafkaListener(topics = "#{@transferEventTopics.topicsFor('TRANSFER_CREATED')}", groupId = "account-service", batch = "true",
+            properties = "transfer.events.accepted-types=TRANSFER_CREATED")
+    public void handleTransferEvents(List<TransferEvent> events) {
+        List<TransferEvent> createdEvents = events.stream()
+                .filter(event -> event.getEventType() == TransferEvent.EventType.TRANSFER_CREATED)
+                .toList();
+        if (createdEvents.isEmpty()) {
+            return;
+        }
+        
+        log.info("批量处理转账事件: 拉取{}条, 待扣款{}条", events.size(), createdEvents.size());
+        
+        List<CompletableFuture<?>> sends = new ArrayList<>(createdEvents.size());
+        for (int from = 0; from < createdEvents.size(); from += maxBatchSize) {
+            List<TransferEvent> chunk = createdEvents.subList(from, Math.min(from + maxBatchSize, createdEvents.size()));
+            processChunk(chunk, sends);
+        }
+        
+        // 所有结果事件已进入生产者缓冲区，统一flush一次，等待全部确认后再提交位点
+        kafkaTemplate.flush();
+        try {
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            log.error("结果事件发送失败, 本批{}笔等待重新投递", createdEvents.size(), e.getCause());
+            throw new RuntimeException("结果事件发送失败", e.getCause());
+        }
+    }
+    
+    /**
+     * 对一批事件执行一次批量扣款并发送结果事件
+     */
+    private void processChunk(List<TransferEvent> chunk, List<CompletableFuture<?>> sends) {
+        List<AccountService.DeductResult> results = null;
+        for (int attempt = 1; results == null; attempt++) {
+            try {
+                results = accountService.deductBalances(chunk);
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    log.error("批量扣款异常且重试{}次仍失败, 本批{}笔结果未知, 等待重新投递", attempt, chunk.size(), e);
+                    throw new RuntimeException("批量扣款结果未知", e);
+                }
+                // 脚本可能已部分执行，不能直接判定失败；脚本幂等，整批重试
+                log.warn("批量扣款异常, 第{}次重试本批{}笔: {}", attempt, chunk.size(), e.getMessage());
+                backoff(attempt);
+            }
+        }
+        
+        for (int i = 0; i < chunk.size(); i++) {
+            TransferEvent event = chunk.get(i);
+            AccountService.DeductResult result = results.get(i);
+            if (result.isSuccess()) {
+                sends.add(send(processedEvent(event, result)));
+                log.debug("转账处理完成: {} 新余额: {}", event.getTransactionId(), result.getNewBalance());
+            } else if (result.isDuplicate()) {
+                if (result.isDebited()) {
+                    // 此前已扣款，无法确定处理完成事件是否发出过，重新发布
+                    sends.add(send(processedEvent(event, result)));
+                    log.info("转账已扣款，重新发布处理完成事件: {}", event.getTransactionId());
+                } else {
+                    log.warn("转账已退回或已取消，跳过重复事件: {}", event.getTransactionId());
+                }
+            } else {
+                sends.add(send(failedEvent(event)));
+                log.error("转账处理失败: {} 原因: {}", event.getTransactionId(), result.getErrorMessage());
+            }
+        }
+    }
+    
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(retryBackoffMs * attempt);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("批量扣款重试被中断", ie);
+        }
+    }
+    
+    private CompletableFuture<?> send(TransferEvent event) {
+        return kafkaTemplate.send(TRANSFER_TOPIC, event.getTransactionId(), event);
+    }
+    
+    private TransferEvent processedEvent(TransferEvent event, AccountService.DeductResult result) {
+        return TransferEvent.builder()
+                .transactionId(event.getTransactionId())
+                .fromAccountId(event.getFromAccountId())
+                .toAccountId(event.getToAccountId())
+                .amount(event.getAmount())
+                .fromBalanceAfter(result.getNewBalance())
+                .eventType(TransferEvent.EventType.TRANSFER_PROCESSED)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+    
+    private TransferEvent failedEvent(TransferEvent event) {
+        return TransferEvent.builder()
+                .transactionId(event.getTransactionId())
+                .fromAccountId(event.getFromAccountId())
+                .toAccountId(event.getToAccountId())
+                .amount(event.getAmount())
+                .eventType(TransferEvent.EventType.CLEARING_FAILED)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
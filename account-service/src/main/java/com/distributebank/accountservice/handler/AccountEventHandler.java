@@ -4,17 +4,20 @@ import com.distributebank.common.event.TransferEvent;
 import com.distributebank.accountservice.service.AccountService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.ExecutionException;
 
 /**
  * 账户事件处理器
- * 负责处理Kafka中的账户相关事件
+ * 负责处理Kafka中的账户相关事件（逐条模式，开启批量模式时由AccountBatchEventHandler接管）
  */
 @Component
+@ConditionalOnProperty(name = "account.deduct.batch.enabled", havingValue = "false", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class AccountEventHandler {
@@ -25,9 +28,10 @@ public class AccountEventHandler {
     private static final String TRANSFER_TOPIC = "transfer-events";
     
     /**
-     * 处理转账创建事件，执行扣款逻辑
+     * 处理转账创建事件，执行扣款逻辑；结果事件确认发送后才返回（提交位点），发送失败抛出异常由容器重新投递
      */
-    @KafkaListener(topics = "transfer-events", groupId = "account-service")
+    @KafkaListener(topics = "#{@transferEventTopics.topicsFor('TRANSFER_CREATED')}", groupId = "account-service",
+            properties = "transfer.events.accepted-types=TRANSFER_CREATED")
     public void handleTransferEvent(TransferEvent event) {
         if (event.getEventType() != TransferEvent.EventType.TRANSFER_CREATED) {
             return;
@@ -35,56 +39,74 @@ public class AccountEventHandler {
         
         log.info("处理转账事件: {}", event.getTransactionId());
         
+        AccountService.DeductResult result;
         try {
             // 执行扣款
-            AccountService.DeductResult result = accountService.deductBalance(
+            result = accountService.deductBalance(
                 event.getFromAccountId(), 
                 event.getAmount(), 
                 event.getTransactionId()
             );
-            
-            if (result.isSuccess()) {
-                // 扣款成功，发送处理完成事件
-                TransferEvent processedEvent = TransferEvent.builder()
-                        .transactionId(event.getTransactionId())
-                        .fromAccountId(event.getFromAccountId())
-                        .toAccountId(event.getToAccountId())
-                        .amount(event.getAmount())
-                        .fromBalanceAfter(result.getNewBalance())
-                        .eventType(TransferEvent.EventType.TRANSFER_PROCESSED)
-                        .timestamp(LocalDateTime.now())
-                        .build();
-                
-                kafkaTemplate.send(TRANSFER_TOPIC, event.getTransactionId(), processedEvent);
-                log.info("转账处理完成: {} 新余额: {}", event.getTransactionId(), result.getNewBalance());
-            } else {
-                // 扣款失败，发送失败事件
-                TransferEvent failedEvent = TransferEvent.builder()
-                        .transactionId(event.getTransactionId())
-                        .fromAccountId(event.getFromAccountId())
-                        .toAccountId(event.getToAccountId())
-                        .amount(event.getAmount())
-                        .eventType(TransferEvent.EventType.CLEARING_FAILED)
-                        .timestamp(LocalDateTime.now())
-                        .build();
-                
-                kafkaTemplate.send(TRANSFER_TOPIC, event.getTransactionId(), failedEvent);
-                log.error("转账处理失败: {} 原因: {}", event.getTransactionId(), result.getErrorMessage());
-            }
         } catch (Exception e) {
+            // 扣款结果未知：失败事件触发的退回按幂等标记处理，已扣款则退回，未扣款则写入占位
             log.error("处理转账事件异常: {}", event.getTransactionId(), e);
-            
-            // 发送失败事件
-            TransferEvent failedEvent = TransferEvent.builder()
-                    .transactionId(event.getTransactionId())
-                    .fromAccountId(event.getFromAccountId())
-                    .toAccountId(event.getToAccountId())
-                    .amount(event.getAmount())
-                    .eventType(TransferEvent.EventType.CLEARING_FAILED)
-                    .timestamp(LocalDateTime.now())
-                    .build();
-            
-            kafkaTemplate.send(TRANSFER_TOPIC, event.getTransactionId(), failedEvent);
+            send(failedEvent(event));
+            return;
         }
+        
+        if (result.isSuccess()) {
+            // 扣款成功，发送处理完成事件
+            send(processedEvent(event, result));
+            log.info("转账处理完成: {} 新余额: {}", event.getTransactionId(), result.getNewBalance());
+        } else if (result.isDuplicate()) {
+            if (result.isDebited()) {
+                // 此前已扣款（重新投递，或上次扣款后进程在结果事件发出前退出），重新发布处理完成事件，下游按交易ID幂等
+                send(processedEvent(event, result));
+                log.info("转账已扣款，重新发布处理完成事件: {}", event.getTransactionId());
+            } else {
+                log.warn("转账已退回或已取消，跳过重复事件: {}", event.getTransactionId());
+            }
+        } else {
+            // 扣款失败，发送失败事件
+            send(failedEvent(event));
+            log.error("转账处理失败: {} 原因: {}", event.getTransactionId(), result.getErrorMessage());
+        }
+    }
+    
+    /**
+     * 发送结果事件并等待broker确认，失败时抛出异常
+     */
+    private void send(TransferEvent event) {
+        try {
+            kafkaTemplate.send(TRANSFER_TOPIC, event.getTransactionId(), event).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("结果事件发送被中断: " + event.getTransactionId(), e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("结果事件发送失败: " + event.getTransactionId(), e.getCause());
+        }
+    }
+    
+    private TransferEvent processedEvent(TransferEvent event, AccountService.DeductResult result) {
+        return TransferEvent.builder()
+                .transactionId(event.getTransactionId())
+                .fromAccountId(event.getFromAccountId())
+                .toAccountId(event.getToAccountId())
+                .amount(event.getAmount())
+                .fromBalanceAfter(result.getNewBalance())
+                .eventType(TransferEvent.EventType.TRANSFER_PROCESSED)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+    
+    private TransferEvent failedEvent(TransferEvent event) {
+        return TransferEvent.builder()
+                .transactionId(event.getTransactionId())
+                .fromAccountId(event.getFromAccountId())
+                .toAccountId(event.getToAccountId())
+                .amount(event.getAmount())
+                .eventType(TransferEvent.EventType.CLEARING_FAILED)
+                .timestamp(LocalDateTime.now())
+                .build();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package com.distributebank.accountservice.handler;
+
+import com.distributebank.accountservice.service.VersionedBalanceCache;
+import com.distributebank.common.event.BalanceChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 余额变更事件处理器
+ * 账本提交后发布的余额变更按版本号写入Redis，缓存保持有效，不再删除后回源加载
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceChangedEventHandler {
+    
+    private final VersionedBalanceCache versionedBalanceCache;
+    
+    @KafkaListener(topics = BalanceChangedEvent.TOPIC, groupId = "account-service-balance", batch = "true")
+    public void handleBalanceChangedEvents(List<BalanceChangedEvent> events) {
+        int applied = versionedBalanceCache.applyAll(events);
+        log.debug("应用余额变更事件: 拉取{}条, 写入{}个账户", events.size(), applied);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.distributebank.accountservice.handler;
+
+import com.distributebank.accountservice.service.AccountService;
+import com.distributebank.common.event.TransferEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 清算失败事件处理器
+ * 已扣款的交易清算失败后退回Redis余额；开启余额变动日志回写时同时追加正向变动记录，
+ * 由回写器抵消已写入数据库的扣款。退回按幂等标记判断，重复投递或扣款本身失败的交易不会重复退回
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ClearingFailedEventHandler {
+    
+    private final AccountService accountService;
+    
+    @KafkaListener(topics = "#{@transferEventTopics.topicsFor('CLEARING_FAILED')}", groupId = "account-service-refund",
+            properties = "transfer.events.accepted-types=CLEARING_FAILED")
+    public void handleClearingFailed(TransferEvent event) {
+        if (event.getEventType() != TransferEvent.EventType.CLEARING_FAILED) {
+            return;
+        }
+        // 异常向上抛出，由容器重试，退回脚本幂等
+        accountService.refundBalance(event.getFromAccountId(), event.getAmount(), event.getTransactionId());
+    }
+}
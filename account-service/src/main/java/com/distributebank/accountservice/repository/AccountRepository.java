@@ -4,6 +4,7 @@ import com.distributebank.common.model.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 
 /**
@@ -27,4 +28,9 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
      * 根据账户状态查询账户列表
      */
     java.util.List<Account> findByStatus(Account.AccountStatus status);
-} 
\ No newline at end of file
+    
+    /**
+     * 根据账户ID批量查询账户（单条IN查询）
+     */
+    java.util.List<Account> findByAccountIdIn(Collection<String> accountIds);
+}
\ No newline at end of file
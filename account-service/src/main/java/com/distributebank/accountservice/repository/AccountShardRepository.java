@@ -0,0 +1,50 @@
+package com.distributebank.accountservice.repository;
+
+import com.distributebank.common.model.AccountBalanceShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 热点账户余额分片数据访问层
+ */
+@Repository
+public interface AccountShardRepository extends JpaRepository<AccountBalanceShard, Long> {
+    
+    /**
+     * 查询账户的全部分片
+     */
+    List<AccountBalanceShard> findByAccountIdOrderByShardNoAsc(String accountId);
+    
+    /**
+     * 查询账户的指定分片
+     */
+    Optional<AccountBalanceShard> findByAccountIdAndShardNo(String accountId, Integer shardNo);
+    
+    /**
+     * 账户是否已开启热点分片
+     */
+    boolean existsByAccountId(String accountId);
+    
+    /**
+     * 账户各分片余额之和
+     */
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM AccountBalanceShard s WHERE s.accountId = :accountId")
+    BigDecimal sumBalance(@Param("accountId") String accountId);
+    
+    /**
+     * 分片收款（单条语句原子累加）
+     */
+    @Modifying
+    @Query("UPDATE AccountBalanceShard s SET s.balance = s.balance + :amount, s.version = s.version + 1, " +
+           "s.updatedAt = :now WHERE s.accountId = :accountId AND s.shardNo = :shardNo")
+    int creditShard(@Param("accountId") String accountId, @Param("shardNo") Integer shardNo,
+                    @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+}
\ No newline at end of file
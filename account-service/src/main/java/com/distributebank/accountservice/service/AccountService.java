@@ -1,11 +1,19 @@
 package com.distributebank.accountservice.service;
 
+import com.distributebank.common.cache.BalanceKeys;
+import com.distributebank.common.cache.PendingBalanceDeltas;
+import com.distributebank.common.cache.SourceDebitMode;
+import com.distributebank.common.event.TransferEvent;
 import com.distributebank.common.model.Account;
+import com.distributebank.common.util.MoneyCodec;
 import com.distributebank.accountservice.repository.AccountRepository;
 import com.distributebank.accountservice.dto.CreateAccountRequest;
 import com.distributebank.accountservice.dto.DepositRequest;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
@@ -13,9 +21,15 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 账户服务业务逻辑类
@@ -30,58 +44,175 @@ public class AccountService {
     private final AccountRepository accountRepository;
     private final RedisTemplate<String, String> redisTemplate;
     private final CacheService cacheService;
+    private final HotAccountService hotAccountService;
+    private final BalanceLoader balanceLoader;
+    private final IdempotencyIndex idempotencyIndex;
     
-    private static final String ACCOUNT_BALANCE_PREFIX = "account:balance:";
-    private static final String TRANSACTION_PROCESSED_PREFIX = "transaction:processed:";
+    @Value("${account.query.batch.max-size:1000}")
+    private int batchQueryMaxSize;
+    
+    @Value("${account.journal.enabled:false}")
+    private boolean journalEnabled;
+    
+    private static final String ACCOUNT_BALANCE_PREFIX = BalanceKeys.PREFIX;
     
     // Redis Lua脚本：原子扣款，包含幂等检查
-    private static final String DEDUCT_BALANCE_SCRIPT = 
-        "local balanceKey = KEYS[1] " +
-        "local processedKey = KEYS[2] " +
-        "local amount = tonumber(ARGV[1]) " +
-        "local transactionId = ARGV[2] " +
-        " " +
-        "-- 检查是否已处理过 " +
-        "if redis.call('EXISTS', processedKey) == 1 then " +
-        "    return {0, '交易已处理过'} " +
-        "end " +
-        " " +
-        "-- 获取当前余额 " +
-        "local currentBalance = tonumber(redis.call('GET', balanceKey)) " +
-        "if not currentBalance then " +
-        "    return {0, '账户余额不存在'} " +
-        "end " +
-        " " +
-        "-- 检查余额是否足够 " +
-        "if currentBalance < amount then " +
-        "    return {0, '余额不足'} " +
-        "end " +
-        " " +
-        "-- 执行扣款 " +
-        "local newBalance = currentBalance - amount " +
-        "redis.call('SET', balanceKey, tostring(newBalance)) " +
-        " " +
-        "-- 标记交易已处理 " +
-        "redis.call('SETEX', processedKey, 86400, '1') " +
-        " " +
-        "return {1, tostring(newBalance)}";
+    // 余额和金额均为以分为单位的整数，扣款使用DECRBY整数运算
+    // KEYS为(余额key, 幂等桶key, 旧幂等key, 未落库标记key[, 变动日志key])，ARGV为(金额, 幂等模式, 幂等字段, 桶过期时间, 账户ID, 交易ID)
+    // 扣款成功后登记一笔未落库变动，数据库入账前版本化写入不覆盖该余额；
+    // 传入变动日志key时在同一脚本内追加一条变动记录；已处理过的交易返回{2, 幂等标记}（1-已扣款，2-已退回或占位）
+    private static final String DEDUCT_BALANCE_SCRIPT = IdempotencyIndex.LUA_FUNCTIONS + PendingBalanceDeltas.LUA_FUNCTIONS +
+        "local balanceKey = KEYS[1]\n" +
+        "local amount = tonumber(ARGV[1])\n" +
+        "-- 检查是否已处理过，返回已有的幂等标记\n" +
+        "local state = idem_get(KEYS[2], KEYS[3], ARGV[2], ARGV[3])\n" +
+        "if state then\n" +
+        "    return {2, state}\n" +
+        "end\n" +
+        "-- 获取当前余额\n" +
+        "local rawBalance = redis.call('GET', balanceKey)\n" +
+        "if not rawBalance then\n" +
+        "    return {0, '账户余额不存在'}\n" +
+        "end\n" +
+        "-- 检查余额是否足够\n" +
+        "if tonumber(rawBalance) < amount then\n" +
+        "    return {0, '余额不足'}\n" +
+        "end\n" +
+        "-- 执行扣款\n" +
+        "local newBalance = redis.call('DECRBY', balanceKey, ARGV[1])\n" +
+        "-- 标记交易已处理\n" +
+        "idem_mark(KEYS[2], KEYS[3], ARGV[2], ARGV[3], ARGV[4])\n" +
+        "pending_add(KEYS[4], ARGV[6], '-' .. ARGV[1])\n" +
+        "if KEYS[5] then\n" +
+        "    redis.call('XADD', KEYS[5], '*', 'a', ARGV[5], 'd', '-' .. ARGV[1], 't', ARGV[6])\n" +
+        "end\n" +
+        "return {1, newBalance}";
+    
+    // Redis Lua脚本：批量原子扣款，KEYS按(余额key, 幂等桶key, 旧幂等key, 未落库标记key)四个一组传入，最后可附加变动日志key，
+    // ARGV按(金额, 幂等模式, 幂等字段, 桶过期时间, 账户ID, 交易ID)六个一组传入
+    // 返回结果按交易顺序平铺：{状态1, 新余额(分)或错误信息1, 状态2, ...}，状态1-扣款成功，0-失败，2-已处理过（第二项为幂等标记）
+    private static final String BATCH_DEDUCT_BALANCE_SCRIPT = IdempotencyIndex.LUA_FUNCTIONS + PendingBalanceDeltas.LUA_FUNCTIONS +
+        "local results = {}\n" +
+        "local count = #ARGV / 6\n" +
+        "local journalKey = KEYS[count * 4 + 1]\n" +
+        "for i = 1, count do\n" +
+        "    local balanceKey = KEYS[i * 4 - 3]\n" +
+        "    local bucketKey = KEYS[i * 4 - 2]\n" +
+        "    local legacyKey = KEYS[i * 4 - 1]\n" +
+        "    local amountArg = ARGV[i * 6 - 5]\n" +
+        "    local mode = ARGV[i * 6 - 4]\n" +
+        "    local field = ARGV[i * 6 - 3]\n" +
+        "    local status = 0\n" +
+        "    local message\n" +
+        "    local state = idem_get(bucketKey, legacyKey, mode, field)\n" +
+        "    if state then\n" +
+        "        status = 2\n" +
+        "        message = state\n" +
+        "    else\n" +
+        "        local rawBalance = redis.call('GET', balanceKey)\n" +
+        "        if not rawBalance then\n" +
+        "            message = '账户余额不存在'\n" +
+        "        elseif tonumber(rawBalance) < tonumber(amountArg) then\n" +
+        "            message = '余额不足'\n" +
+        "        else\n" +
+        "            message = redis.call('DECRBY', balanceKey, amountArg)\n" +
+        "            idem_mark(bucketKey, legacyKey, mode, field, ARGV[i * 6 - 2])\n" +
+        "            pending_add(KEYS[i * 4], ARGV[i * 6], '-' .. amountArg)\n" +
+        "            if journalKey then\n" +
+        "                redis.call('XADD', journalKey, '*', 'a', ARGV[i * 6 - 1], 'd', '-' .. amountArg, 't', ARGV[i * 6])\n" +
+        "            end\n" +
+        "            status = 1\n" +
+        "        end\n" +
+        "    end\n" +
+        "    results[#results + 1] = status\n" +
+        "    results[#results + 1] = message\n" +
+        "end\n" +
+        "return results";
+    
+    // Redis Lua脚本：清算失败后退回扣款，KEYS为(余额key或热点分片key, 幂等桶key, 旧幂等key, 未落库标记key, 版本key, 推迟标记key[, 变动日志key])，
+    // ARGV同单笔扣款。幂等标记为1（已扣款）时累加余额并改为2（已退回）：传入变动日志key时追加一条正向变动记录由回写器入账，
+    // 同时登记一笔未落库的退回；否则这笔扣款不会再入账，直接清除其未落库标记（清空且有推迟的事件时删除余额键，返回-1）。
+    // 没有扣款标记时只写入2占位，阻止迟到的创建事件再扣款。返回{状态, 新余额(分)或-1}，状态1-已退回，0-未扣款，2-此前已退回
+    private static final String REFUND_BALANCE_SCRIPT = IdempotencyIndex.LUA_FUNCTIONS + PendingBalanceDeltas.LUA_FUNCTIONS +
+        "local state = idem_get(KEYS[2], KEYS[3], ARGV[2], ARGV[3])\n" +
+        "if state == '2' then\n" +
+        "    return {2, -1}\n" +
+        "end\n" +
+        "idem_set(KEYS[2], KEYS[3], ARGV[2], ARGV[3], ARGV[4], '2')\n" +
+        "if state ~= '1' then\n" +
+        "    return {0, -1}\n" +
+        "end\n" +
+        "local newBalance = -1\n" +
+        "-- 余额键不存在时下次读取从数据库加载，数据库侧的扣款由变动日志记录抵消\n" +
+        "if redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+        "    newBalance = redis.call('INCRBY', KEYS[1], ARGV[1])\n" +
+        "end\n" +
+        "if KEYS[7] then\n" +
+        "    redis.call('XADD', KEYS[7], '*', 'a', ARGV[5], 'd', ARGV[1], 't', ARGV[6])\n" +
+        "    pending_add(KEYS[4], '" + PendingBalanceDeltas.REFUND_FIELD_PREFIX + "' .. ARGV[6], ARGV[1])\n" +
+        "elseif pending_settle(KEYS[4], ARGV[6], KEYS[1], KEYS[5], KEYS[6]) == 1 then\n" +
+        "    newBalance = -1\n" +
+        "end\n" +
+        "return {1, newBalance}";
+    
+    // 脚本对象只构建一次，SHA1随之缓存，执行时走EVALSHA，仅在NOSCRIPT时回退EVAL
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> DEDUCT_SCRIPT = 
+            new DefaultRedisScript<>(DEDUCT_BALANCE_SCRIPT, List.class);
+    
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> BATCH_DEDUCT_SCRIPT = 
+            new DefaultRedisScript<>(BATCH_DEDUCT_BALANCE_SCRIPT, List.class);
+    
+    @SuppressWarnings("rawtypes")
+    static final DefaultRedisScript<List> REFUND_SCRIPT =
+            new DefaultRedisScript<>(REFUND_BALANCE_SCRIPT, List.class);
+    
+    /**
+     * 启动时预加载扣款脚本（SCRIPT LOAD），避免首批请求发送完整脚本文本
+     */
+    @PostConstruct
+    public void preloadScripts() {
+        try {
+            for (DefaultRedisScript<?> script : Arrays.asList(DEDUCT_SCRIPT, BATCH_DEDUCT_SCRIPT, REFUND_SCRIPT)) {
+                byte[] scriptBytes = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+                redisTemplate.execute((RedisCallback<String>) connection -> 
+                        connection.scriptingCommands().scriptLoad(scriptBytes));
+            }
+            log.info("扣款脚本预加载完成: {}, {}", DEDUCT_SCRIPT.getSha1(), BATCH_DEDUCT_SCRIPT.getSha1());
+        } catch (Exception e) {
+            // 预加载失败不影响启动，首次执行时会回退到EVAL
+            log.warn("扣款脚本预加载失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 启动时校验与ledger-service的源账户扣款配置一致：开启变动日志回写时账本必须关闭源账户扣款
+     */
+    @PostConstruct
+    public void checkSourceDebitMode() {
+        SourceDebitMode.verify(redisTemplate,
+                journalEnabled ? SourceDebitMode.ACCOUNT_JOURNAL : SourceDebitMode.LEDGER, "account-service");
+    }
     
     /**
      * 获取账户余额（优先从Redis获取）
      */
     public BigDecimal getBalance(String accountId) {
+        // 热点账户余额为各分片之和
+        if (hotAccountService.isHot(accountId)) {
+            return hotAccountService.getBalance(accountId);
+        }
+        
         // 先从Redis获取
         String cachedBalance = cacheService.getCache(accountId);
         if (cachedBalance != null) {
-            return new BigDecimal(cachedBalance);
+            balanceLoader.remember(accountId, cachedBalance);
+            return MoneyCodec.decode(cachedBalance);
         }
         
-        // Redis没有，从数据库获取并缓存
-        Account account = accountRepository.findByAccountId(accountId)
-                .orElseThrow(() -> new RuntimeException("账户不存在: " + accountId));
-        
-        cacheService.setCache(accountId, account.getBalance().toString());
-        return account.getBalance();
+        // Redis没有，从数据库获取并缓存（同一账户的并发未命中合并为一次加载）
+        return balanceLoader.load(accountId);
     }
     
     /**
@@ -92,17 +223,81 @@ public class AccountService {
                 .orElseThrow(() -> new RuntimeException("账户不存在: " + accountId));
         
         BigDecimal redisBalance = getBalance(accountId);
+        // 热点账户的accounts.balance已清零，数据库余额为各分片行之和
+        BigDecimal dbBalance = hotAccountService.isHot(accountId)
+                ? hotAccountService.getDbBalance(accountId) : account.getBalance();
         
         return new AccountInfo(
                 account.getAccountId(),
                 account.getAccountName(),
                 account.getBankCode(),
-                account.getBalance(),
+                dbBalance,
                 redisBalance,
                 account.getStatus().name()
         );
     }
     
+    /**
+     * 批量查询账户信息
+     * 一次IN查询取账户信息，余额按近端缓存 -> 一次MGET取得，未命中的以数据库余额管道回填，
+     * 返回顺序与请求一致，不存在的账户不返回
+     */
+    public List<AccountInfo> getAccounts(List<String> accountIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(accountIds));
+        if (ids.size() > batchQueryMaxSize) {
+            throw new RuntimeException("单次最多查询" + batchQueryMaxSize + "个账户");
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<String, Account> accounts = new HashMap<>(ids.size() * 2);
+        for (Account account : accountRepository.findByAccountIdIn(ids)) {
+            accounts.put(account.getAccountId(), account);
+        }
+        
+        // 热点账户余额为各分片之和，其余账户批量读缓存
+        Map<String, Integer> shardCounts = hotAccountService.getShardCounts(accounts.keySet());
+        List<String> normalIds = ids.stream()
+                .filter(accounts::containsKey)
+                .filter(id -> shardCounts.getOrDefault(id, 0) == 0)
+                .toList();
+        Map<String, String> cached = cacheService.getCaches(normalIds);
+        
+        Map<String, String> misses = new HashMap<>();
+        for (String accountId : normalIds) {
+            if (!cached.containsKey(accountId)) {
+                misses.put(accountId, MoneyCodec.encode(accounts.get(accountId).getBalance()));
+            }
+        }
+        Map<String, String> backfilled = cacheService.backfillCaches(misses);
+        
+        List<AccountInfo> result = new ArrayList<>(accounts.size());
+        for (String accountId : ids) {
+            Account account = accounts.get(accountId);
+            if (account == null) {
+                continue;
+            }
+            BigDecimal dbBalance = account.getBalance();
+            BigDecimal redisBalance;
+            if (shardCounts.getOrDefault(accountId, 0) > 0) {
+                dbBalance = hotAccountService.getDbBalance(accountId);
+                redisBalance = hotAccountService.getBalance(accountId);
+            } else {
+                redisBalance = MoneyCodec.decode(cached.getOrDefault(accountId, backfilled.get(accountId)));
+            }
+            result.add(new AccountInfo(
+                    account.getAccountId(),
+                    account.getAccountName(),
+                    account.getBankCode(),
+                    dbBalance,
+                    redisBalance,
+                    account.getStatus().name()
+            ));
+        }
+        return result;
+    }
+    
     /**
      * 创建账户
      */
@@ -122,7 +317,7 @@ public class AccountService {
         accountRepository.save(account);
         
         // 同步余额到Redis
-        cacheService.setCache(account.getAccountId(), account.getBalance().toString());
+        cacheService.setCache(account.getAccountId(), MoneyCodec.encode(account.getBalance()));
         
         log.info("创建账户成功: {}", account.getAccountId());
         return account.getAccountId();
@@ -133,6 +328,10 @@ public class AccountService {
      */
     @Transactional
     public BigDecimal deposit(String accountId, BigDecimal amount) {
+        if (hotAccountService.isHot(accountId)) {
+            return hotAccountService.deposit(accountId, amount);
+        }
+        
         int maxRetries = 3;
         long delayMs = 500; // 延时500ms
         
@@ -183,17 +382,29 @@ public class AccountService {
      * 使用Redis Lua脚本执行原子扣款
      */
     public DeductResult deductBalance(String accountId, BigDecimal amount, String transactionId) {
-        String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-        String processedKey = TRANSACTION_PROCESSED_PREFIX + transactionId;
-        
-        DefaultRedisScript<List> script = new DefaultRedisScript<>();
-        script.setScriptText(DEDUCT_BALANCE_SCRIPT);
-        script.setResultType(List.class);
+        if (hotAccountService.isHot(accountId)) {
+            return hotAccountService.deduct(accountId, amount, transactionId);
+        }
         
-        List<String> keys = Arrays.asList(balanceKey, processedKey);
-        List<String> args = Arrays.asList(amount.toString(), transactionId);
+        List<String> keys = new ArrayList<>(5);
+        List<Object> args = new ArrayList<>(6);
+        keys.add(ACCOUNT_BALANCE_PREFIX + accountId);
+        args.add(Long.toString(MoneyCodec.toMinorUnits(amount)));
+        IdempotencyIndex.Slot slot = idempotencyIndex.slotOf(transactionId);
+        if (slot.isExpired()) {
+            log.warn("交易超出幂等保留期，拒绝扣款: {}", transactionId);
+            return new DeductResult(false, DeductResult.EXPIRED_MESSAGE, null);
+        }
+        slot.appendKeys(keys);
+        keys.add(PendingBalanceDeltas.pendingKey(accountId));
+        slot.appendArgs(args);
+        args.add(accountId);
+        args.add(transactionId);
+        if (journalEnabled) {
+            keys.add(BalanceJournalFlusher.JOURNAL_KEY);
+        }
         
-        List<Object> result = redisTemplate.execute(script, keys, args.toArray());
+        List<Object> result = redisTemplate.execute(DEDUCT_SCRIPT, keys, args.toArray());
         
         if (result == null || result.isEmpty()) {
             return new DeductResult(false, "扣款执行失败", null);
@@ -201,19 +412,162 @@ public class AccountService {
         
         Long success = (Long) result.get(0);
         if (success == 1) {
-            String newBalanceStr = (String) result.get(1);
-            return new DeductResult(true, "扣款成功", new BigDecimal(newBalanceStr));
+            long newBalance = (Long) result.get(1);
+            cacheService.onBalanceDeducted(accountId, Long.toString(newBalance));
+            return new DeductResult(true, "扣款成功", MoneyCodec.fromMinorUnits(newBalance));
+        } else if (success == DeductResult.STATUS_DUPLICATE) {
+            return DeductResult.duplicate((String) result.get(1));
         } else {
             String errorMsg = (String) result.get(1);
             return new DeductResult(false, errorMsg, null);
         }
     }
     
+    /**
+     * 清算失败后退回扣款（幂等），返回是否实际退回了余额
+     */
+    public boolean refundBalance(String accountId, BigDecimal amount, String transactionId) {
+        if (hotAccountService.isHot(accountId)) {
+            return hotAccountService.refund(accountId, amount, transactionId);
+        }
+        
+        IdempotencyIndex.Slot slot = idempotencyIndex.slotOf(transactionId);
+        if (slot.isExpired()) {
+            log.error("交易超出幂等保留期，无法判断是否已扣款，需人工核对: {} 账户: {} 金额: {}",
+                    transactionId, accountId, amount);
+            return false;
+        }
+        List<String> keys = new ArrayList<>(7);
+        List<Object> args = new ArrayList<>(6);
+        keys.add(ACCOUNT_BALANCE_PREFIX + accountId);
+        args.add(Long.toString(MoneyCodec.toMinorUnits(amount)));
+        slot.appendKeys(keys);
+        PendingBalanceDeltas.appendRefundKeys(keys, accountId);
+        slot.appendArgs(args);
+        args.add(accountId);
+        args.add(transactionId);
+        if (journalEnabled) {
+            keys.add(BalanceJournalFlusher.JOURNAL_KEY);
+        }
+        
+        List<Object> result = redisTemplate.execute(REFUND_SCRIPT, keys, args.toArray());
+        if (result == null || result.isEmpty()) {
+            throw new RuntimeException("退回扣款执行失败: " + transactionId);
+        }
+        long status = (Long) result.get(0);
+        if (status != 1) {
+            log.info("交易无需退回: {} 状态: {}", transactionId, status == 0 ? "未扣款" : "已退回");
+            return false;
+        }
+        long newBalance = (Long) result.get(1);
+        if (newBalance >= 0) {
+            cacheService.onBalanceRefunded(accountId, Long.toString(newBalance));
+        } else {
+            cacheService.deleteCache(accountId);
+        }
+        log.info("清算失败退回扣款: {} 账户: {} 金额: {}", transactionId, accountId, amount);
+        return true;
+    }
+    
+    /**
+     * 使用一次Lua脚本调用批量执行原子扣款
+     * 返回结果与传入事件一一对应
+     */
+    public List<DeductResult> deductBalances(List<TransferEvent> events) {
+        if (events.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        // 热点账户走分片扣款、超出幂等保留期的交易直接拒绝，其余事件合并为一次脚本调用
+        boolean[] single = new boolean[events.size()];
+        List<TransferEvent> normalEvents = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            TransferEvent event = events.get(i);
+            single[i] = hotAccountService.isHot(event.getFromAccountId())
+                    || idempotencyIndex.isExpired(event.getTransactionId());
+            if (!single[i]) {
+                normalEvents.add(event);
+            }
+        }
+        if (normalEvents.size() < events.size()) {
+            List<DeductResult> normalResults = deductBalances(normalEvents);
+            List<DeductResult> deductResults = new ArrayList<>(events.size());
+            int next = 0;
+            for (int i = 0; i < events.size(); i++) {
+                TransferEvent event = events.get(i);
+                if (single[i]) {
+                    deductResults.add(deductBalance(
+                            event.getFromAccountId(), event.getAmount(), event.getTransactionId()));
+                } else {
+                    deductResults.add(normalResults.get(next++));
+                }
+            }
+            return deductResults;
+        }
+        
+        List<String> keys = new ArrayList<>(events.size() * 4 + 1);
+        List<Object> args = new ArrayList<>(events.size() * 6);
+        for (TransferEvent event : events) {
+            keys.add(ACCOUNT_BALANCE_PREFIX + event.getFromAccountId());
+            args.add(Long.toString(MoneyCodec.toMinorUnits(event.getAmount())));
+            IdempotencyIndex.Slot slot = idempotencyIndex.slotOf(event.getTransactionId());
+            slot.appendKeys(keys);
+            keys.add(PendingBalanceDeltas.pendingKey(event.getFromAccountId()));
+            slot.appendArgs(args);
+            args.add(event.getFromAccountId());
+            args.add(event.getTransactionId());
+        }
+        if (journalEnabled) {
+            keys.add(BalanceJournalFlusher.JOURNAL_KEY);
+        }
+        
+        List<Object> result = redisTemplate.execute(BATCH_DEDUCT_SCRIPT, keys, args.toArray());
+        
+        List<DeductResult> deductResults = new ArrayList<>(events.size());
+        // 同一账户在本批内多次扣款时，只按最后一次的余额同步近端缓存
+        Map<String, String> latestBalances = new LinkedHashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            if (result == null || result.size() < (i + 1) * 2) {
+                deductResults.add(new DeductResult(false, "扣款执行失败", null));
+                continue;
+            }
+            Long success = (Long) result.get(i * 2);
+            if (success == 1) {
+                long newBalance = (Long) result.get(i * 2 + 1);
+                latestBalances.put(events.get(i).getFromAccountId(), Long.toString(newBalance));
+                deductResults.add(new DeductResult(true, "扣款成功", MoneyCodec.fromMinorUnits(newBalance)));
+            } else if (success == DeductResult.STATUS_DUPLICATE) {
+                deductResults.add(DeductResult.duplicate((String) result.get(i * 2 + 1)));
+            } else {
+                deductResults.add(new DeductResult(false, (String) result.get(i * 2 + 1), null));
+            }
+        }
+        latestBalances.forEach(cacheService::onBalanceDeducted);
+        return deductResults;
+    }
+    
     /**
      * 扣款结果类
      */
     public static class DeductResult {
+        /**
+         * 扣款脚本返回的"已处理过"状态：幂等标记已存在，本次未重复扣款，第二项为标记值
+         */
+        static final long STATUS_DUPLICATE = 2;
+        
+        /**
+         * 幂等标记：已退回（清算失败后退回，或未扣款时写入的占位）
+         */
+        private static final String REFUNDED_MARK = "2";
+        
+        /**
+         * 交易创建时间超出幂等保留期，无法判断是否扣过款，拒绝扣款
+         */
+        static final String EXPIRED_MESSAGE = "交易超出幂等保留期，拒绝扣款";
+        
         private boolean success;
+        private boolean duplicate;
+        private boolean debited;
         private String errorMessage;
         private BigDecimal newBalance;
         
@@ -223,8 +577,22 @@ public class AccountService {
             this.newBalance = newBalance;
         }
         
+        /**
+         * 交易此前已处理过（重复投递或上次执行结果未知后的重试），不是扣款失败；
+         * mark为已有的幂等标记，1表示已扣款且未退回，2表示已退回或占位
+         */
+        public static DeductResult duplicate(String mark) {
+            boolean debited = !REFUNDED_MARK.equals(mark);
+            DeductResult result = new DeductResult(false, debited ? "交易已扣款" : "交易已退回或已取消", null);
+            result.duplicate = true;
+            result.debited = debited;
+            return result;
+        }
+        
         // getters
         public boolean isSuccess() { return success; }
+        public boolean isDuplicate() { return duplicate; }
+        public boolean isDebited() { return debited; }
         public String getErrorMessage() { return errorMessage; }
         public BigDecimal getNewBalance() { return newBalance; }
     }
@@ -0,0 +1,124 @@
+package com.distributebank.accountservice.service;
+
+import com.distributebank.common.cache.BalanceKeys;
+import com.distributebank.common.util.MoneyCodec;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * 余额存储格式迁移
+ * 将旧键 account:balance:{id} 中的十进制余额字符串转换为分值整数，移动到新键 account:balance-minor:{id}，
+ * 在监听器和Web容器启动前执行。两种格式的键前缀不同，迁移按键名判断格式，不根据值的内容猜测；
+ * 每个键的转换和删除旧键在同一脚本内完成，中断后重跑只会处理剩余的旧键，全部完成后写入标记 account:balance-format
+ */
+@Component
+@ConditionalOnProperty(name = "account.balance.migration.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceFormatMigration {
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    
+    private static final String LEGACY_BALANCE_PATTERN = BalanceKeys.LEGACY_PREFIX + "*";
+    private static final String FORMAT_MARKER_KEY = "account:balance-format";
+    private static final String PREFIXED_FORMAT = "minor-prefixed";
+    
+    // Redis Lua脚本：KEYS[1]为旧键，KEYS[2]为新键；旧键值在读取后被修改过则放弃（下一轮重试）
+    // 新键已存在时（新版本已从数据库加载并开始扣款）以新键为准，只删除旧键；否则按旧键剩余TTL写入新键
+    private static final String MIGRATE_BALANCE_SCRIPT =
+        "if redis.call('GET', KEYS[1]) ~= ARGV[1] then\n" +
+        "    return -1\n" +
+        "end\n" +
+        "if redis.call('EXISTS', KEYS[2]) == 1 then\n" +
+        "    redis.call('DEL', KEYS[1])\n" +
+        "    return 0\n" +
+        "end\n" +
+        "local ttl = redis.call('PTTL', KEYS[1])\n" +
+        "if ttl > 0 then\n" +
+        "    redis.call('SET', KEYS[2], ARGV[2], 'PX', ttl)\n" +
+        "else\n" +
+        "    redis.call('SET', KEYS[2], ARGV[2])\n" +
+        "end\n" +
+        "redis.call('DEL', KEYS[1])\n" +
+        "return 1";
+    
+    private static final DefaultRedisScript<Long> MIGRATE_SCRIPT =
+            new DefaultRedisScript<>(MIGRATE_BALANCE_SCRIPT, Long.class);
+    
+    /**
+     * 执行迁移
+     */
+    @PostConstruct
+    public void migrate() {
+        String format = redisTemplate.opsForValue().get(FORMAT_MARKER_KEY);
+        if (PREFIXED_FORMAT.equals(format)) {
+            log.info("余额已迁移到分值整数键，跳过迁移");
+            return;
+        }
+        
+        int converted = 0;
+        int retried = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(LEGACY_BALANCE_PATTERN).count(500).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                if (!isLegacyBalanceKey(key)) {
+                    continue;
+                }
+                int result = migrateKey(key);
+                if (result < 0) {
+                    // 并发修改，重新读取后再试一次
+                    retried++;
+                    result = migrateKey(key);
+                }
+                if (result > 0) {
+                    converted++;
+                } else if (result < 0) {
+                    throw new IllegalStateException("余额迁移期间键被持续修改: " + key);
+                }
+            }
+        }
+        
+        redisTemplate.opsForValue().set(FORMAT_MARKER_KEY, PREFIXED_FORMAT);
+        log.info("余额存储格式迁移完成: 转换{}个键, 冲突重试{}次", converted, retried);
+    }
+    
+    /**
+     * 旧前缀下只有 account:balance:{id} 形式的字符串键是旧格式余额；
+     * 分片键（account:balance:{id}:shard:{n}，始终为分值整数）和变动日志Stream不迁移
+     */
+    private boolean isLegacyBalanceKey(String key) {
+        if (key.indexOf(':', BalanceKeys.LEGACY_PREFIX.length()) >= 0) {
+            return false;
+        }
+        return redisTemplate.type(key) == DataType.STRING;
+    }
+    
+    /**
+     * 迁移单个键：1-已转换，0-无需转换，-1-并发修改
+     */
+    private int migrateKey(String key) {
+        String legacyValue = redisTemplate.opsForValue().get(key);
+        if (legacyValue == null) {
+            return 0;
+        }
+        String accountId = key.substring(BalanceKeys.LEGACY_PREFIX.length());
+        String minorUnits = Long.toString(MoneyCodec.parseLegacy(legacyValue));
+        Long result = redisTemplate.execute(MIGRATE_SCRIPT,
+                Arrays.asList(key, BalanceKeys.balanceKey(accountId)), legacyValue, minorUnits);
+        if (result != null && result > 0) {
+            log.debug("余额格式迁移: {} {} -> {}", key, legacyValue, minorUnits);
+        }
+        return result == null ? 0 : result.intValue();
+    }
+}
@@ -0,0 +1,251 @@
+package com.distributebank.accountservice.service;
+
+import com.distributebank.common.cache.PendingBalanceDeltas;
+import com.distributebank.common.util.MoneyCodec;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 余额变动日志回写器（write-behind）
+ * 扣款Lua脚本在扣减Redis余额的同时向Redis Stream追加一条变动记录，本组件定时读取游标之后的记录，
+ * 按账户合并为一个增量，在同一个数据库事务内批量UPDATE余额并推进游标，提交后再裁剪已回写的记录。
+ * 游标行在事务开始时 SELECT ... FOR UPDATE，多实例同时运行时同一时刻只有一个实例在回写；
+ * 余额和游标同事务提交，崩溃后重读未提交部分，不会重复入账；提交后清除这些记录在Redis中的未落库变动标记
+ */
+@Component
+@ConditionalOnProperty(name = "account.journal.enabled", havingValue = "true")
+@Slf4j
+public class BalanceJournalFlusher {
+    
+    public static final String JOURNAL_KEY = "account:balance:journal";
+    
+    private static final String SOURCE = "account-service-journal";
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxEntries;
+    
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong appliedEntries = new AtomicLong();
+    private final AtomicLong updatedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile int lastBatchEntries;
+    private volatile int lastBatchAccounts;
+    private volatile long lastAppliedLagMs;
+    
+    public BalanceJournalFlusher(RedisTemplate<String, String> redisTemplate,
+                                 JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${account.journal.max-entries:5000}") int maxEntries) {
+        this.redisTemplate = redisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.maxEntries = maxEntries;
+    }
+    
+    /**
+     * 初始化游标行（已存在时保持不变）
+     */
+    @PostConstruct
+    public void initCursor() {
+        jdbcTemplate.update("INSERT IGNORE INTO balance_journal_cursor (journal, last_id, applied_entries, updated_at) " +
+                "VALUES (?, '0-0', 0, ?)", JOURNAL_KEY, Timestamp.valueOf(LocalDateTime.now()));
+    }
+    
+    /**
+     * 定时回写，一批读满时继续回写下一批
+     */
+    @Scheduled(fixedDelayString = "${account.journal.flush-interval-ms:200}")
+    public void flush() {
+        try {
+            Integer applied;
+            do {
+                applied = transactionTemplate.execute(status -> flushOnce());
+            } while (applied != null && applied >= maxEntries);
+        } catch (Exception e) {
+            failedFlushes.incrementAndGet();
+            log.error("余额变动日志回写失败，下次从游标处重试", e);
+        }
+    }
+    
+    /**
+     * 回写一批记录，需在事务内执行，返回本批记录数
+     */
+    private int flushOnce() {
+        String cursor = jdbcTemplate.queryForObject(
+                "SELECT last_id FROM balance_journal_cursor WHERE journal = ? FOR UPDATE", String.class, JOURNAL_KEY);
+        
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(JOURNAL_KEY,
+                Range.rightUnbounded(Range.Bound.exclusive(cursor)), Limit.limit().count(maxEntries));
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        
+        // 按账户合并增量，账户ID排序后更新，多个回写事务之间加锁顺序一致
+        Map<String, Long> deltas = new TreeMap<>();
+        Map<String, List<String>> settled = new LinkedHashMap<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> fields = record.getValue();
+            String accountId = (String) fields.get("a");
+            String delta = (String) fields.get("d");
+            String transactionId = (String) fields.get("t");
+            deltas.merge(accountId, Long.parseLong(delta), Long::sum);
+            settled.computeIfAbsent(accountId, id -> new ArrayList<>()).add(
+                    delta.startsWith("-") ? transactionId : PendingBalanceDeltas.refundField(transactionId));
+        }
+        
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+        deltas.forEach((accountId, delta) -> {
+            if (delta != 0) {
+                batchArgs.add(new Object[] {MoneyCodec.fromMinorUnits(delta), now, accountId});
+            }
+        });
+        int[] rows = jdbcTemplate.batchUpdate(
+                "UPDATE accounts SET balance = balance + ?, version = version + 1, updated_at = ? WHERE account_id = ?",
+                batchArgs);
+        
+        String lastId = records.get(records.size() - 1).getId().getValue();
+        jdbcTemplate.update("UPDATE balance_journal_cursor SET last_id = ?, applied_entries = applied_entries + ?, " +
+                "updated_at = ? WHERE journal = ?", lastId, records.size(), now, JOURNAL_KEY);
+        
+        // 提交后再裁剪，回滚时记录仍保留在Stream中
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                settlePending(settled);
+                trimBefore(lastId);
+            }
+        });
+        
+        int updated = 0;
+        for (int i = 0; i < rows.length; i++) {
+            // 批量重写模式下驱动可能返回SUCCESS_NO_INFO(-2)，只有明确为0时才是账户不存在
+            if (rows[i] == 0) {
+                log.error("余额变动日志回写时账户不存在: {}", batchArgs.get(i)[2]);
+            } else {
+                updated++;
+            }
+        }
+        
+        flushCount.incrementAndGet();
+        appliedEntries.addAndGet(records.size());
+        updatedRows.addAndGet(updated);
+        lastBatchEntries = records.size();
+        lastBatchAccounts = deltas.size();
+        lastAppliedLagMs = System.currentTimeMillis() - records.get(records.size() - 1).getId().getTimestamp();
+        log.debug("余额变动日志回写: {}条记录合并为{}个账户更新，游标: {}", records.size(), deltas.size(), lastId);
+        return records.size();
+    }
+    
+    /**
+     * 清除已回写记录的未落库变动标记，期间被推迟的余额变更由此触发重新加载
+     */
+    private void settlePending(Map<String, List<String>> settled) {
+        try {
+            PendingBalanceDeltas.settle(redisTemplate, settled, SOURCE);
+        } catch (Exception e) {
+            // 清除失败时标记在过期后失效，期间余额变更事件继续被推迟
+            log.warn("清除未落库变动标记失败: {}个账户", settled.size(), e);
+        }
+    }
+    
+    /**
+     * 裁剪游标之前的记录（游标本身保留，下次从其之后读取）
+     */
+    private void trimBefore(String lastId) {
+        try {
+            redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("XTRIM",
+                    JOURNAL_KEY.getBytes(StandardCharsets.UTF_8),
+                    "MINID".getBytes(StandardCharsets.UTF_8),
+                    lastId.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            // 裁剪失败不影响正确性，下次回写成功后会一并裁剪
+            log.warn("裁剪余额变动日志失败: {}", lastId, e);
+        }
+    }
+    
+    /**
+     * 获取回写统计
+     */
+    public JournalStats getStats() {
+        Long pending = redisTemplate.opsForStream().size(JOURNAL_KEY);
+        long entries = appliedEntries.get();
+        long rows = updatedRows.get();
+        return new JournalStats(
+                pending == null ? 0 : pending,
+                flushCount.get(),
+                entries,
+                rows,
+                rows == 0 ? 0 : (double) entries / rows,
+                failedFlushes.get(),
+                lastBatchEntries,
+                lastBatchAccounts,
+                lastAppliedLagMs
+        );
+    }
+    
+    /**
+     * 回写统计类
+     */
+    public static class JournalStats {
+        private long streamLength;
+        private long flushes;
+        private long appliedEntries;
+        private long updatedRows;
+        private double entriesPerUpdate;
+        private long failedFlushes;
+        private int lastBatchEntries;
+        private int lastBatchAccounts;
+        private long lastAppliedLagMs;
+        
+        public JournalStats(long streamLength, long flushes, long appliedEntries, long updatedRows,
+                            double entriesPerUpdate, long failedFlushes, int lastBatchEntries,
+                            int lastBatchAccounts, long lastAppliedLagMs) {
+            this.streamLength = streamLength;
+            this.flushes = flushes;
+            this.appliedEntries = appliedEntries;
+            this.updatedRows = updatedRows;
+            this.entriesPerUpdate = entriesPerUpdate;
+            this.failedFlushes = failedFlushes;
+            this.lastBatchEntries = lastBatchEntries;
+            this.lastBatchAccounts = lastBatchAccounts;
+            this.lastAppliedLagMs = lastAppliedLagMs;
+        }
+        
+        // getters
+        public long getStreamLength() { return streamLength; }
+        public long getFlushes() { return flushes; }
+        public long getAppliedEntries() { return appliedEntries; }
+        public long getUpdatedRows() { return updatedRows; }
+        public double getEntriesPerUpdate() { return entriesPerUpdate; }
+        public long getFailedFlushes() { return failedFlushes; }
+        public int getLastBatchEntries() { return lastBatchEntries; }
+        public int getLastBatchAccounts() { return lastBatchAccounts; }
+        public long getLastAppliedLagMs() { return lastAppliedLagMs; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,206 @@
+package com.distributebank.accountservice.service;
+
+import com.distributebank.accountservice.repository.AccountRepository;
+import com.distributebank.common.model.Account;
+import com.distributebank.common.util.MoneyCodec;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 余额回源加载器
+ * 缓存未命中时同一账户的并发请求合并为一次数据库加载（single-flight），其余请求等待同一结果；
+ * 开启stale-while-revalidate后，有最近已知值时直接返回旧值，同时在后台发起一次合并后的刷新
+ */
+@Component
+@Slf4j
+public class BalanceLoader {
+    
+    private final AccountRepository accountRepository;
+    private final CacheService cacheService;
+    private final VersionedBalanceCache versionedBalanceCache;
+    private final Executor cacheTaskExecutor;
+    private final boolean staleWhileRevalidate;
+    
+    /**
+     * 账户 -> 正在进行的加载，加载完成后移除
+     */
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    
+    /**
+     * 最近已知余额（分值字符串），仅在stale-while-revalidate模式下使用
+     */
+    private final Cache<String, String> lastKnown;
+    
+    private final AtomicLong executedLoads = new AtomicLong();
+    private final AtomicLong coalescedLoads = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+    private final AtomicLong backgroundRefreshes = new AtomicLong();
+    private final AtomicLong failedLoads = new AtomicLong();
+    
+    public BalanceLoader(AccountRepository accountRepository,
+                         CacheService cacheService,
+                         VersionedBalanceCache versionedBalanceCache,
+                         @Qualifier("cacheTaskExecutor") Executor cacheTaskExecutor,
+                         @Value("${account.cache.load.stale-while-revalidate:false}") boolean staleWhileRevalidate,
+                         @Value("${account.cache.load.stale-max-age-ms:30000}") long staleMaxAgeMs,
+                         @Value("${account.cache.load.stale-max-size:10000}") long staleMaxSize) {
+        this.accountRepository = accountRepository;
+        this.cacheService = cacheService;
+        this.versionedBalanceCache = versionedBalanceCache;
+        this.cacheTaskExecutor = cacheTaskExecutor;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.lastKnown = Caffeine.newBuilder()
+                .maximumSize(staleMaxSize)
+                .expireAfterWrite(Duration.ofMillis(staleMaxAgeMs))
+                .build();
+    }
+    
+    /**
+     * 缓存命中时记录最近已知值
+     */
+    public void remember(String accountId, String value) {
+        if (staleWhileRevalidate) {
+            lastKnown.put(accountId, value);
+        }
+    }
+    
+    /**
+     * 缓存未命中时加载余额
+     */
+    public BigDecimal load(String accountId) {
+        if (staleWhileRevalidate) {
+            String stale = lastKnown.getIfPresent(accountId);
+            if (stale != null) {
+                staleServed.incrementAndGet();
+                refreshInBackground(accountId);
+                return MoneyCodec.decode(stale);
+            }
+        }
+        
+        try {
+            return MoneyCodec.decode(loadShared(accountId).join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("余额加载失败: " + accountId, e.getCause());
+        }
+    }
+    
+    /**
+     * 已有同账户加载在进行时直接返回它，否则由当前线程执行加载
+     */
+    private CompletableFuture<String> loadShared(String accountId) {
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(accountId, created);
+        if (existing != null) {
+            coalescedLoads.incrementAndGet();
+            return existing;
+        }
+        
+        executedLoads.incrementAndGet();
+        try {
+            created.complete(loadFromDatabase(accountId));
+        } catch (Exception e) {
+            failedLoads.incrementAndGet();
+            created.completeExceptionally(e);
+        } finally {
+            inFlight.remove(accountId, created);
+        }
+        return created;
+    }
+    
+    /**
+     * 后台刷新，已有加载在进行时不再提交
+     */
+    private void refreshInBackground(String accountId) {
+        if (inFlight.containsKey(accountId)) {
+            return;
+        }
+        backgroundRefreshes.incrementAndGet();
+        cacheTaskExecutor.execute(() -> loadShared(accountId).exceptionally(e -> {
+            log.warn("后台刷新余额失败: {}", accountId, e);
+            return null;
+        }));
+    }
+    
+    private String loadFromDatabase(String accountId) {
+        Account account = accountRepository.findByAccountId(accountId)
+                .orElseThrow(() -> new RuntimeException("账户不存在: " + accountId));
+        
+        String value = MoneyCodec.encode(account.getBalance());
+        if (account.getVersion() == null) {
+            cacheService.setCache(accountId, value);
+        } else if (!versionedBalanceCache.setIfNewer(accountId, value, account.getVersion())) {
+            // 加载期间余额变更事件已写入相同或更新的版本，以缓存为准
+            String cached = cacheService.getCache(accountId);
+            if (cached != null) {
+                value = cached;
+            }
+        }
+        remember(accountId, value);
+        log.debug("余额回源加载: {} = {}", accountId, value);
+        return value;
+    }
+    
+    /**
+     * 获取回源加载统计
+     */
+    public LoadStats getStats() {
+        return new LoadStats(
+                staleWhileRevalidate,
+                inFlight.size(),
+                executedLoads.get(),
+                coalescedLoads.get(),
+                staleServed.get(),
+                backgroundRefreshes.get(),
+                failedLoads.get()
+        );
+    }
+    
+    /**
+     * 回源加载统计类
+     */
+    public static class LoadStats {
+        private boolean staleWhileRevalidate;
+        private int inFlight;
+        private long executed;
+        private long coalesced;
+        private long staleServed;
+        private long backgroundRefreshes;
+        private long failed;
+        
+        public LoadStats(boolean staleWhileRevalidate, int inFlight, long executed, long coalesced,
+                         long staleServed, long backgroundRefreshes, long failed) {
+            this.staleWhileRevalidate = staleWhileRevalidate;
+            this.inFlight = inFlight;
+            this.executed = executed;
+            this.coalesced = coalesced;
+            this.staleServed = staleServed;
+            this.backgroundRefreshes = backgroundRefreshes;
+            this.failed = failed;
+        }
+        
+        // getters
+        public boolean isStaleWhileRevalidate() { return staleWhileRevalidate; }
+        public int getInFlight() { return inFlight; }
+        public long getExecuted() { return executed; }
+        public long getCoalesced() { return coalesced; }
+        public long getStaleServed() { return staleServed; }
+        public long getBackgroundRefreshes() { return backgroundRefreshes; }
+        public long getFailed() { return failed; }
+    }
+}
\ No newline at end of file
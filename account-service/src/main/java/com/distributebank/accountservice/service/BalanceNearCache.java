@@ -0,0 +1,182 @@
+package com.distributebank.accountservice.service;
+
+import com.distributebank.common.cache.BalanceCacheInvalidation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 余额近端缓存
+ * 位于Redis之前的进程内缓存，按容量和TTL淘汰，
+ * 本实例修改余额键后通过Redis频道广播失效，其他实例收到后清理本地副本
+ */
+@Component
+@Slf4j
+public class BalanceNearCache implements MessageListener {
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final boolean enabled;
+    private final Cache<String, String> cache;
+    
+    /**
+     * 本实例ID，用于忽略自己发出的失效消息
+     */
+    private final String instanceId = "account-service-" + UUID.randomUUID();
+    
+    private final AtomicLong invalidationsPublished = new AtomicLong();
+    private final AtomicLong invalidationsReceived = new AtomicLong();
+    
+    public BalanceNearCache(RedisTemplate<String, String> redisTemplate,
+                            @Value("${account.near-cache.enabled:true}") boolean enabled,
+                            @Value("${account.near-cache.max-size:10000}") long maxSize,
+                            @Value("${account.near-cache.ttl-ms:1000}") long ttlMs) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * 读取本地缓存，未命中返回null
+     */
+    public String get(String accountId) {
+        return enabled ? cache.getIfPresent(accountId) : null;
+    }
+    
+    /**
+     * 写入本地缓存（不广播，用于从Redis回填）
+     */
+    public void put(String accountId, String value) {
+        if (enabled) {
+            cache.put(accountId, value);
+        }
+    }
+    
+    /**
+     * 本实例修改了余额：更新本地副本并通知其他实例失效
+     */
+    public void update(String accountId, String value) {
+        put(accountId, value);
+        publishInvalidation(accountId);
+    }
+    
+    /**
+     * 本实例删除了余额键：清理本地副本并通知其他实例失效
+     */
+    public void invalidate(String accountId) {
+        cache.invalidate(accountId);
+        publishInvalidation(accountId);
+    }
+    
+    /**
+     * 批量删除了余额键：清理本地副本并用一条消息通知其他实例失效
+     */
+    public void invalidateAll(Collection<String> accountIds) {
+        if (accountIds.isEmpty()) {
+            return;
+        }
+        cache.invalidateAll(accountIds);
+        publishInvalidation(BalanceCacheInvalidation.encode(instanceId, accountIds), accountIds.size());
+    }
+    
+    private void publishInvalidation(String accountId) {
+        publishInvalidation(BalanceCacheInvalidation.encode(instanceId, accountId), 1);
+    }
+    
+    private void publishInvalidation(String message, int accountCount) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(BalanceCacheInvalidation.CHANNEL, message);
+            invalidationsPublished.addAndGet(accountCount);
+        } catch (Exception e) {
+            // 广播失败时其他实例依靠TTL兜底
+            log.warn("发布近端缓存失效消息失败: {}", message, e);
+        }
+    }
+    
+    /**
+     * 接收其他实例或其他服务发出的失效消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (instanceId.equals(BalanceCacheInvalidation.originOf(body))) {
+            return;
+        }
+        List<String> accountIds = BalanceCacheInvalidation.accountIdsOf(body);
+        cache.invalidateAll(accountIds);
+        invalidationsReceived.addAndGet(accountIds.size());
+        log.debug("收到近端缓存失效消息: {}", body);
+    }
+    
+    /**
+     * 获取近端缓存统计
+     */
+    public NearCacheStats getStats() {
+        CacheStats stats = cache.stats();
+        return new NearCacheStats(
+                enabled,
+                cache.estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount(),
+                invalidationsPublished.get(),
+                invalidationsReceived.get()
+        );
+    }
+    
+    /**
+     * 近端缓存统计类
+     */
+    public static class NearCacheStats {
+        private boolean enabled;
+        private long size;
+        private long hitCount;
+        private long missCount;
+        private double hitRate;
+        private long evictionCount;
+        private long invalidationsPublished;
+        private long invalidationsReceived;
+        
+        public NearCacheStats(boolean enabled, long size, long hitCount, long missCount, double hitRate,
+                              long evictionCount, long invalidationsPublished, long invalidationsReceived) {
+            this.enabled = enabled;
+            this.size = size;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.hitRate = hitRate;
+            this.evictionCount = evictionCount;
+            this.invalidationsPublished = invalidationsPublished;
+            this.invalidationsReceived = invalidationsReceived;
+        }
+        
+        // getters
+        public boolean isEnabled() { return enabled; }
+        public long getSize() { return size; }
+        public long getHitCount() { return hitCount; }
+        public long getMissCount() { return missCount; }
+        public double getHitRate() { return hitRate; }
+        public long getEvictionCount() { return evictionCount; }
+        public long getInvalidationsPublished() { return invalidationsPublished; }
+        public long getInvalidationsReceived() { return invalidationsReceived; }
+    }
+}
@@ -1,17 +1,25 @@
 package com.distributebank.accountservice.service;
 
+import com.distributebank.common.cache.BalanceKeys;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.CompletableFuture;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 缓存管理服务
  * 实现延时双删策略，保证缓存一致性
+ * 读取时先查进程内近端缓存，所有对余额键的修改都会同步失效各实例的近端缓存
  */
 @Service
 @RequiredArgsConstructor
@@ -19,8 +27,10 @@ import java.util.concurrent.TimeUnit;
 public class CacheService {
     
     private final RedisTemplate<String, String> redisTemplate;
+    private final BalanceNearCache balanceNearCache;
+    private final DelayedInvalidationScheduler delayedInvalidationScheduler;
     
-    private static final String ACCOUNT_BALANCE_PREFIX = "account:balance:";
+    private static final String ACCOUNT_BALANCE_PREFIX = BalanceKeys.PREFIX;
     
     /**
      * 先删除缓存
@@ -28,65 +38,137 @@ public class CacheService {
     public void deleteCacheFirst(String accountId) {
         String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
         redisTemplate.delete(balanceKey);
+        balanceNearCache.invalidate(accountId);
         log.debug("先删除缓存: {}", balanceKey);
     }
     
     /**
-     * 延时删除缓存
+     * 延时删除缓存（挂到时间轮，不占用线程等待）
      */
-    @Async("cacheTaskExecutor")
-    public CompletableFuture<Void> scheduleDelayedDelete(String accountId, long delayMs) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                Thread.sleep(delayMs);
-                String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-                redisTemplate.delete(balanceKey);
-                log.info("延时删除缓存成功: {} (延时{}ms)", balanceKey, delayMs);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.warn("延时删除被中断: {}", accountId);
-            } catch (Exception e) {
-                log.error("延时删除缓存失败: {}", accountId, e);
-                // 可以考虑重试机制
-                retryDelayedDelete(accountId, delayMs);
+    public void scheduleDelayedDelete(String accountId, long delayMs) {
+        delayedInvalidationScheduler.schedule(accountId, delayMs);
+        log.debug("登记延时删除缓存: {} (延时{}ms)", accountId, delayMs);
+    }
+    
+    /**
+     * 设置缓存，value为MoneyCodec编码的分值字符串
+     */
+    public void setCache(String accountId, String value) {
+        String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
+        redisTemplate.opsForValue().set(balanceKey, value, 24, TimeUnit.HOURS);
+        balanceNearCache.update(accountId, value);
+        log.debug("设置缓存: {} = {}", balanceKey, value);
+    }
+    
+    /**
+     * 获取缓存（近端缓存 -> Redis）
+     */
+    public String getCache(String accountId) {
+        String nearValue = balanceNearCache.get(accountId);
+        if (nearValue != null) {
+            return nearValue;
+        }
+        String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
+        String value = redisTemplate.opsForValue().get(balanceKey);
+        if (value != null) {
+            balanceNearCache.put(accountId, value);
+        }
+        return value;
+    }
+    
+    /**
+     * 批量获取缓存：先查近端缓存，剩余账户一次MGET，未命中的账户不在返回结果中
+     */
+    public Map<String, String> getCaches(List<String> accountIds) {
+        Map<String, String> values = new HashMap<>(accountIds.size() * 2);
+        List<String> remaining = new ArrayList<>();
+        for (String accountId : accountIds) {
+            String nearValue = balanceNearCache.get(accountId);
+            if (nearValue != null) {
+                values.put(accountId, nearValue);
+            } else {
+                remaining.add(accountId);
             }
-        });
+        }
+        if (remaining.isEmpty()) {
+            return values;
+        }
+        
+        List<String> redisValues = redisTemplate.opsForValue().multiGet(
+                remaining.stream().map(accountId -> ACCOUNT_BALANCE_PREFIX + accountId).toList());
+        for (int i = 0; i < remaining.size(); i++) {
+            String value = redisValues != null ? redisValues.get(i) : null;
+            if (value != null) {
+                values.put(remaining.get(i), value);
+                balanceNearCache.put(remaining.get(i), value);
+            }
+        }
+        return values;
     }
     
     /**
-     * 重试延时删除
+     * 批量回填缓存：一次管道发送全部SET NX，不覆盖期间已被其他请求写入的值；
+     * 只有写入成功的值进入近端缓存，未写入的账户重新读取Redis中的胜出值，返回各账户在Redis中的当前值
      */
-    private void retryDelayedDelete(String accountId, long delayMs) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                Thread.sleep(delayMs * 2); // 重试延时加倍
-                String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-                redisTemplate.delete(balanceKey);
-                log.info("重试延时删除缓存成功: {}", balanceKey);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.warn("重试延时删除被中断: {}", accountId);
-            } catch (Exception e) {
-                log.error("重试延时删除缓存失败: {}", accountId, e);
+    public Map<String, String> backfillCaches(Map<String, String> values) {
+        if (values.isEmpty()) {
+            return values;
+        }
+        List<String> accountIds = new ArrayList<>(values.keySet());
+        Expiration expiration = Expiration.from(24, TimeUnit.HOURS);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String accountId : accountIds) {
+                connection.stringCommands().set(
+                        (ACCOUNT_BALANCE_PREFIX + accountId).getBytes(StandardCharsets.UTF_8),
+                        values.get(accountId).getBytes(StandardCharsets.UTF_8),
+                        expiration,
+                        RedisStringCommands.SetOption.SET_IF_ABSENT);
             }
+            return null;
         });
+        
+        Map<String, String> current = new HashMap<>(accountIds.size() * 2);
+        List<String> lost = new ArrayList<>();
+        for (int i = 0; i < accountIds.size(); i++) {
+            String accountId = accountIds.get(i);
+            if (Boolean.TRUE.equals(results.get(i))) {
+                current.put(accountId, values.get(accountId));
+                balanceNearCache.put(accountId, values.get(accountId));
+            } else {
+                lost.add(accountId);
+            }
+        }
+        if (!lost.isEmpty()) {
+            // 期间已有其他请求写入（可能是更新的扣款结果），以Redis中的值为准
+            List<String> redisValues = redisTemplate.opsForValue().multiGet(
+                    lost.stream().map(accountId -> ACCOUNT_BALANCE_PREFIX + accountId).toList());
+            for (int i = 0; i < lost.size(); i++) {
+                String value = redisValues != null ? redisValues.get(i) : null;
+                if (value != null) {
+                    current.put(lost.get(i), value);
+                    balanceNearCache.put(lost.get(i), value);
+                } else {
+                    // 胜出值随即被删除，只返回数据库余额，不写入近端缓存
+                    current.put(lost.get(i), values.get(lost.get(i)));
+                }
+            }
+        }
+        log.debug("批量回填缓存: {}个账户 未写入: {}", accountIds.size(), lost.size());
+        return current;
     }
     
     /**
-     * 设置缓存
+     * Lua脚本扣款成功后同步近端缓存
      */
-    public void setCache(String accountId, String value) {
-        String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-        redisTemplate.opsForValue().set(balanceKey, value, 24, TimeUnit.HOURS);
-        log.debug("设置缓存: {} = {}", balanceKey, value);
+    public void onBalanceDeducted(String accountId, String newBalance) {
+        balanceNearCache.update(accountId, newBalance);
     }
     
     /**
-     * 获取缓存
+     * 清算失败退回扣款后同步近端缓存
      */
-    public String getCache(String accountId) {
-        String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-        return redisTemplate.opsForValue().get(balanceKey);
+    public void onBalanceRefunded(String accountId, String newBalance) {
+        balanceNearCache.update(accountId, newBalance);
     }
     
     /**
@@ -95,6 +177,7 @@ public class CacheService {
     public void deleteCache(String accountId) {
         String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
         redisTemplate.delete(balanceKey);
+        balanceNearCache.invalidate(accountId);
         log.debug("删除缓存: {}", balanceKey);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,320 @@
+package com.distributebank.accountservice.service;
+
+import com.distributebank.common.cache.BalanceKeys;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 延时删除调度器（哈希时间轮）
+ * 延时双删的第二次删除不再占用睡眠线程：到期时间挂到时间轮槽位上，由单个tick线程推进，
+ * 同一账户在窗口内的多次删除合并为一次（到期时间取最晚的一次），到期的键按批次一次DEL删除，
+ * 删除失败的键重新挂回时间轮按指数退避重试
+ */
+@Component
+@Slf4j
+public class DelayedInvalidationScheduler {
+    
+    private static final String ACCOUNT_BALANCE_PREFIX = BalanceKeys.PREFIX;
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final BalanceNearCache balanceNearCache;
+    
+    private final long tickMs;
+    private final int maxBatchSize;
+    private final int maxRetries;
+    private final long retryDelayMs;
+    
+    /**
+     * 时间轮槽位，槽位数为2的幂，按 到期tick & mask 定位
+     */
+    private final Queue<String>[] wheel;
+    private final int mask;
+    
+    /**
+     * 待删除账户 -> 到期时间（毫秒），同一账户只保留一项，用于合并
+     */
+    private final Map<String, Long> deadlines = new ConcurrentHashMap<>();
+    
+    /**
+     * 账户 -> 已重试次数
+     */
+    private final Map<String, Integer> retryAttempts = new ConcurrentHashMap<>();
+    
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-invalidation-wheel");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * 已推进到的tick，仅由tick线程写入
+     */
+    private volatile long processedTick;
+    
+    /**
+     * 挂入槽位与tick线程取空槽位互斥：否则挂入线程读到旧的processedTick后，
+     * 可能把账户放进刚被取空的槽位，多等一整圈
+     */
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    
+    private final AtomicLong scheduledCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong totalLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+    private volatile long lastLagMs;
+    
+    @SuppressWarnings("unchecked")
+    public DelayedInvalidationScheduler(RedisTemplate<String, String> redisTemplate,
+                                        BalanceNearCache balanceNearCache,
+                                        @Value("${account.cache.invalidation.tick-ms:20}") long tickMs,
+                                        @Value("${account.cache.invalidation.wheel-size:512}") int wheelSize,
+                                        @Value("${account.cache.invalidation.max-batch-size:500}") int maxBatchSize,
+                                        @Value("${account.cache.invalidation.max-retries:3}") int maxRetries,
+                                        @Value("${account.cache.invalidation.retry-delay-ms:500}") long retryDelayMs) {
+        this.redisTemplate = redisTemplate;
+        this.balanceNearCache = balanceNearCache;
+        this.tickMs = tickMs;
+        this.maxBatchSize = maxBatchSize;
+        this.maxRetries = maxRetries;
+        this.retryDelayMs = retryDelayMs;
+        
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.processedTick = System.currentTimeMillis() / tickMs;
+    }
+    
+    @PostConstruct
+    public void start() {
+        ticker.scheduleAtFixedRate(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        log.info("延时删除时间轮启动: tick={}ms, 槽位={}", tickMs, wheel.length);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        ticker.shutdown();
+        try {
+            ticker.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 停机前把未到期的删除全部执行掉，避免遗留脏缓存
+        List<String> remaining = new ArrayList<>(deadlines.keySet());
+        deadlines.clear();
+        flush(remaining);
+    }
+    
+    /**
+     * 登记一次延时删除，已有未到期的同账户删除时合并为一次
+     */
+    public void schedule(String accountId, long delayMs) {
+        long deadline = System.currentTimeMillis() + delayMs;
+        boolean[] inserted = {false};
+        deadlines.compute(accountId, (key, existing) -> {
+            if (existing == null) {
+                inserted[0] = true;
+                return deadline;
+            }
+            return Math.max(existing, deadline);
+        });
+        
+        scheduledCount.incrementAndGet();
+        if (inserted[0]) {
+            place(accountId, deadline);
+        } else {
+            coalescedCount.incrementAndGet();
+        }
+    }
+    
+    /**
+     * 挂到到期时间对应的槽位，已推进过的tick顺延到下一个tick
+     */
+    private void place(String accountId, long deadline) {
+        wheelLock.lock();
+        try {
+            long tick = Math.max(deadline / tickMs, processedTick + 1);
+            wheel[(int) (tick & mask)].add(accountId);
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+    
+    /**
+     * tick线程：推进到当前时间，收集到期账户后批量删除
+     */
+    private void advance() {
+        try {
+            long now = System.currentTimeMillis();
+            long currentTick = now / tickMs;
+            List<String> due = new ArrayList<>();
+            
+            for (long tick = processedTick + 1; tick <= currentTick; tick++) {
+                Queue<String> bucket = wheel[(int) (tick & mask)];
+                List<String> candidates = new ArrayList<>();
+                wheelLock.lock();
+                try {
+                    String accountId;
+                    while ((accountId = bucket.poll()) != null) {
+                        candidates.add(accountId);
+                    }
+                    processedTick = tick;
+                } finally {
+                    wheelLock.unlock();
+                }
+                
+                for (String candidate : candidates) {
+                    collectIfDue(candidate, now, due);
+                }
+            }
+            
+            flush(due);
+        } catch (Exception e) {
+            log.error("延时删除时间轮推进异常", e);
+        }
+    }
+    
+    /**
+     * 到期则移出待删除表；到期时间被合并推迟的，重新挂到新的槽位（含跨轮的情况）
+     */
+    private void collectIfDue(String accountId, long now, List<String> due) {
+        long[] lag = {-1};
+        Long remaining = deadlines.computeIfPresent(accountId, (key, deadline) -> {
+            if (deadline <= now) {
+                lag[0] = now - deadline;
+                return null;
+            }
+            return deadline;
+        });
+        
+        if (lag[0] >= 0) {
+            due.add(accountId);
+            recordLag(lag[0]);
+        } else if (remaining != null) {
+            place(accountId, remaining);
+        }
+    }
+    
+    private void recordLag(long lag) {
+        lastLagMs = lag;
+        totalLagMs.addAndGet(lag);
+        maxLagMs.accumulateAndGet(lag, Math::max);
+    }
+    
+    /**
+     * 按批次执行DEL，失败的键重新挂回时间轮
+     */
+    private void flush(List<String> accountIds) {
+        for (int from = 0; from < accountIds.size(); from += maxBatchSize) {
+            List<String> batch = accountIds.subList(from, Math.min(from + maxBatchSize, accountIds.size()));
+            List<String> keys = batch.stream().map(accountId -> ACCOUNT_BALANCE_PREFIX + accountId).toList();
+            try {
+                redisTemplate.delete(keys);
+                balanceNearCache.invalidateAll(batch);
+                batch.forEach(retryAttempts::remove);
+                deletedCount.addAndGet(batch.size());
+                batchCount.incrementAndGet();
+                log.debug("延时删除缓存成功: {}个键", batch.size());
+            } catch (Exception e) {
+                log.error("延时删除缓存失败: {}个键", batch.size(), e);
+                batch.forEach(this::retry);
+            }
+        }
+    }
+    
+    private void retry(String accountId) {
+        int attempts = retryAttempts.merge(accountId, 1, Integer::sum);
+        if (attempts > maxRetries) {
+            retryAttempts.remove(accountId);
+            droppedCount.incrementAndGet();
+            log.error("延时删除重试次数已用完，放弃: {}", accountId);
+            return;
+        }
+        retryCount.incrementAndGet();
+        // 重试延时按次数加倍
+        schedule(accountId, retryDelayMs << (attempts - 1));
+    }
+    
+    /**
+     * 获取时间轮统计
+     */
+    public InvalidationStats getStats() {
+        long deleted = deletedCount.get();
+        return new InvalidationStats(
+                deadlines.size(),
+                scheduledCount.get(),
+                coalescedCount.get(),
+                deleted,
+                batchCount.get(),
+                retryCount.get(),
+                droppedCount.get(),
+                lastLagMs,
+                maxLagMs.get(),
+                deleted == 0 ? 0 : (double) totalLagMs.get() / deleted
+        );
+    }
+    
+    /**
+     * 时间轮统计类
+     */
+    public static class InvalidationStats {
+        private int queueDepth;
+        private long scheduled;
+        private long coalesced;
+        private long deleted;
+        private long batches;
+        private long retries;
+        private long dropped;
+        private long lastLagMs;
+        private long maxLagMs;
+        private double avgLagMs;
+        
+        public InvalidationStats(int queueDepth, long scheduled, long coalesced, long deleted, long batches,
+                                 long retries, long dropped, long lastLagMs, long maxLagMs, double avgLagMs) {
+            this.queueDepth = queueDepth;
+            this.scheduled = scheduled;
+            this.coalesced = coalesced;
+            this.deleted = deleted;
+            this.batches = batches;
+            this.retries = retries;
+            this.dropped = dropped;
+            this.lastLagMs = lastLagMs;
+            this.maxLagMs = maxLagMs;
+            this.avgLagMs = avgLagMs;
+        }
+        
+        // getters
+        public int getQueueDepth() { return queueDepth; }
+        public long getScheduled() { return scheduled; }
+        public long getCoalesced() { return coalesced; }
+        public long getDeleted() { return deleted; }
+        public long getBatches() { return batches; }
+        public long getRetries() { return retries; }
+        public long getDropped() { return dropped; }
+        public long getLastLagMs() { return lastLagMs; }
+        public long getMaxLagMs() { return maxLagMs; }
+        public double getAvgLagMs() { return avgLagMs; }
+    }
+}
\ No newline at end of file
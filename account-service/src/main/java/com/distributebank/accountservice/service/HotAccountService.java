@@ -0,0 +1,396 @@
+package com.distributebank.accountservice.service;
+
+import com.distributebank.accountservice.repository.AccountRepository;
+import com.distributebank.accountservice.repository.AccountShardRepository;
+import com.distributebank.common.cache.BalanceKeys;
+import com.distributebank.common.cache.BalanceShardKeys;
+import com.distributebank.common.cache.PendingBalanceDeltas;
+import com.distributebank.common.model.Account;
+import com.distributebank.common.model.AccountBalanceShard;
+import com.distributebank.common.util.MoneyCodec;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 热点账户服务
+ * 企业发薪等场景下同一付款账户被高频扣款，开启热点模式后余额拆分为N个分片（Redis与数据库各一份），
+ * 扣款优先选择余额足够的分片，所有分片都不够时跨分片重新均衡后扣款，查询余额为各分片之和。
+ * 开启后accounts.balance清零，余额只保存在分片上；分片数缓存在本地，开启时通过Redis频道通知各实例失效
+ */
+@Service
+@Slf4j
+public class HotAccountService implements MessageListener {
+    
+    private final AccountRepository accountRepository;
+    private final AccountShardRepository accountShardRepository;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final CacheService cacheService;
+    private final IdempotencyIndex idempotencyIndex;
+    
+    /**
+     * 账户分片数本地缓存，0表示非热点账户；开启热点模式时收到频道消息失效，TTL兜底丢失的消息
+     */
+    private final Cache<String, Integer> shardCounts;
+    
+    private static final String ACCOUNT_BALANCE_KEY_PREFIX = BalanceKeys.PREFIX;
+    private static final int MAX_SHARDS = 64;
+    
+    // Redis Lua脚本：开启热点模式，原子地把主余额键拆分到各分片键并写入分片数标记
+    // KEYS[1]为主余额键，KEYS[2]为分片数标记键，KEYS[3..]为分片键；ARGV[1]为主余额键不存在时使用的数据库余额（分）
+    private static final String SPLIT_BALANCE_SCRIPT =
+        "local n = #KEYS - 2\n" +
+        "local raw = redis.call('GET', KEYS[1])\n" +
+        "local total = tonumber(raw or ARGV[1])\n" +
+        "local share = math.floor(total / n)\n" +
+        "for i = 1, n do\n" +
+        "    local value = share\n" +
+        "    if i == 1 then value = total - share * (n - 1) end\n" +
+        "    redis.call('SET', KEYS[i + 2], string.format('%d', value))\n" +
+        "end\n" +
+        "redis.call('SET', KEYS[2], n)\n" +
+        "redis.call('DEL', KEYS[1])\n" +
+        "return total";
+    
+    // Redis Lua脚本：分片扣款，KEYS[1..n]为分片键，KEYS[n+1]、KEYS[n+2]为幂等桶key和旧幂等key；
+    // ARGV[1]为金额（分），ARGV[2]为起始分片，ARGV[3..5]为幂等模式、字段、桶过期时间；已处理过的交易返回{2, 幂等标记}
+    // 从起始分片开始找余额足够的分片扣款；都不够但总额足够时，扣款后把剩余余额均匀重新分布到各分片
+    private static final String SHARD_DEDUCT_BALANCE_SCRIPT = IdempotencyIndex.LUA_FUNCTIONS +
+        "local n = #KEYS - 2\n" +
+        "local amount = tonumber(ARGV[1])\n" +
+        "local start = tonumber(ARGV[2])\n" +
+        "local state = idem_get(KEYS[n + 1], KEYS[n + 2], ARGV[3], ARGV[4])\n" +
+        "if state then\n" +
+        "    return {2, state}\n" +
+        "end\n" +
+        "local balances = {}\n" +
+        "local total = 0\n" +
+        "for i = 1, n do\n" +
+        "    local raw = redis.call('GET', KEYS[i])\n" +
+        "    if not raw then\n" +
+        "        return {-1, KEYS[i]}\n" +
+        "    end\n" +
+        "    balances[i] = tonumber(raw)\n" +
+        "    total = total + balances[i]\n" +
+        "end\n" +
+        "if total < amount then\n" +
+        "    return {0, '余额不足'}\n" +
+        "end\n" +
+        "for k = 0, n - 1 do\n" +
+        "    local i = (start + k) % n + 1\n" +
+        "    if balances[i] >= amount then\n" +
+        "        redis.call('DECRBY', KEYS[i], ARGV[1])\n" +
+        "        idem_mark(KEYS[n + 1], KEYS[n + 2], ARGV[3], ARGV[4], ARGV[5])\n" +
+        "        return {1, total - amount}\n" +
+        "    end\n" +
+        "end\n" +
+        "-- 没有单个分片余额足够：跨分片重新均衡\n" +
+        "local remaining = total - amount\n" +
+        "local share = math.floor(remaining / n)\n" +
+        "for i = 1, n do\n" +
+        "    local value = share\n" +
+        "    if i == 1 then value = remaining - share * (n - 1) end\n" +
+        "    redis.call('SET', KEYS[i], string.format('%d', value))\n" +
+        "end\n" +
+        "idem_mark(KEYS[n + 1], KEYS[n + 2], ARGV[3], ARGV[4], ARGV[5])\n" +
+        "return {1, remaining}";
+    
+    // Redis Lua脚本：分片收款，仅在分片键存在时累加（不存在时下次读取会从数据库加载）
+    private static final String SHARD_CREDIT_BALANCE_SCRIPT =
+        "if redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+        "    return redis.call('INCRBY', KEYS[1], ARGV[1])\n" +
+        "end\n" +
+        "return -1";
+    
+    private static final DefaultRedisScript<Long> SPLIT_SCRIPT =
+            new DefaultRedisScript<>(SPLIT_BALANCE_SCRIPT, Long.class);
+    
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> SHARD_DEDUCT_SCRIPT =
+            new DefaultRedisScript<>(SHARD_DEDUCT_BALANCE_SCRIPT, List.class);
+    
+    private static final DefaultRedisScript<Long> SHARD_CREDIT_SCRIPT =
+            new DefaultRedisScript<>(SHARD_CREDIT_BALANCE_SCRIPT, Long.class);
+    
+    public HotAccountService(AccountRepository accountRepository,
+                             AccountShardRepository accountShardRepository,
+                             RedisTemplate<String, String> redisTemplate,
+                             CacheService cacheService,
+                             IdempotencyIndex idempotencyIndex,
+                             @Value("${account.hot.shard-count-cache-ms:5000}") long shardCountCacheMs) {
+        this.accountRepository = accountRepository;
+        this.accountShardRepository = accountShardRepository;
+        this.redisTemplate = redisTemplate;
+        this.cacheService = cacheService;
+        this.idempotencyIndex = idempotencyIndex;
+        this.shardCounts = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(Duration.ofMillis(shardCountCacheMs))
+                .build();
+    }
+    
+    /**
+     * 获取账户分片数，非热点账户返回0
+     */
+    public int getShardCount(String accountId) {
+        return shardCounts.get(accountId, id -> {
+            String value = redisTemplate.opsForValue().get(BalanceShardKeys.shardCountKey(id));
+            return value == null ? 0 : Integer.parseInt(value);
+        });
+    }
+    
+    /**
+     * 批量获取账户分片数，本地未缓存的账户用一次MGET读取标记
+     */
+    public Map<String, Integer> getShardCounts(Collection<String> accountIds) {
+        return shardCounts.getAll(accountIds, ids -> {
+            List<String> idList = new ArrayList<>(ids);
+            List<String> values = redisTemplate.opsForValue().multiGet(
+                    idList.stream().map(BalanceShardKeys::shardCountKey).toList());
+            Map<String, Integer> counts = new HashMap<>(idList.size() * 2);
+            for (int i = 0; i < idList.size(); i++) {
+                String value = values != null ? values.get(i) : null;
+                counts.put(idList.get(i), value == null ? 0 : Integer.parseInt(value));
+            }
+            return counts;
+        });
+    }
+    
+    /**
+     * 是否为热点账户
+     */
+    public boolean isHot(String accountId) {
+        return getShardCount(accountId) > 0;
+    }
+    
+    /**
+     * 热点账户数据库余额：各分片行之和
+     */
+    public BigDecimal getDbBalance(String accountId) {
+        return accountShardRepository.sumBalance(accountId);
+    }
+    
+    /**
+     * 开启热点模式：数据库余额拆分为分片行并在同一事务内清零accounts.balance，Redis主余额键原子拆分为分片键
+     */
+    @Transactional
+    public int enableHotAccount(String accountId, int shardCount) {
+        if (shardCount < 2 || shardCount > MAX_SHARDS) {
+            throw new RuntimeException("分片数必须在2到" + MAX_SHARDS + "之间");
+        }
+        if (accountShardRepository.existsByAccountId(accountId)) {
+            throw new RuntimeException("账户已开启热点模式: " + accountId);
+        }
+        
+        Account account = accountRepository.findByAccountId(accountId)
+                .orElseThrow(() -> new RuntimeException("账户不存在: " + accountId));
+        
+        // 先按版本号清零账户行：期间有入账时乐观锁冲突整体回滚，分片总额与清零前的余额一致；
+        // 清零后直接读取accounts.balance的路径（缓存回源、账本非分片入账）不会再看到拆分前的余额
+        BigDecimal balance = account.getBalance();
+        account.setBalance(BigDecimal.ZERO);
+        account.setUpdatedAt(LocalDateTime.now());
+        accountRepository.saveAndFlush(account);
+        
+        long total = MoneyCodec.toMinorUnits(balance);
+        long share = total / shardCount;
+        List<AccountBalanceShard> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            long value = i == 0 ? total - share * (shardCount - 1) : share;
+            shards.add(AccountBalanceShard.builder()
+                    .accountId(accountId)
+                    .shardNo(i)
+                    .balance(MoneyCodec.fromMinorUnits(value))
+                    .version(0L)
+                    .createdAt(LocalDateTime.now())
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+        }
+        accountShardRepository.saveAll(shards);
+        
+        // Redis侧以主余额键的当前值为准（可能包含尚未入账到数据库的扣款）
+        List<String> keys = new ArrayList<>();
+        keys.add(ACCOUNT_BALANCE_KEY_PREFIX + accountId);
+        keys.add(BalanceShardKeys.shardCountKey(accountId));
+        keys.addAll(BalanceShardKeys.shardKeys(accountId, shardCount));
+        Long redisTotal = redisTemplate.execute(SPLIT_SCRIPT, keys, Long.toString(total));
+        
+        shardCounts.put(accountId, shardCount);
+        cacheService.deleteCache(accountId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publishShardChange(accountId);
+            }
+        });
+        
+        log.info("开启热点账户: {} 分片数: {} 数据库余额: {} Redis余额: {}",
+                accountId, shardCount, balance,
+                redisTotal == null ? null : MoneyCodec.fromMinorUnits(redisTotal));
+        return shardCount;
+    }
+    
+    /**
+     * 热点账户扣款
+     */
+    public AccountService.DeductResult deduct(String accountId, BigDecimal amount, String transactionId) {
+        int shardCount = getShardCount(accountId);
+        List<String> keys = new ArrayList<>(BalanceShardKeys.shardKeys(accountId, shardCount));
+        List<Object> args = new ArrayList<>(5);
+        args.add(Long.toString(MoneyCodec.toMinorUnits(amount)));
+        args.add(Integer.toString(Math.floorMod(transactionId.hashCode(), shardCount)));
+        IdempotencyIndex.Slot slot = idempotencyIndex.slotOf(transactionId);
+        if (slot.isExpired()) {
+            return new AccountService.DeductResult(false, AccountService.DeductResult.EXPIRED_MESSAGE, null);
+        }
+        slot.appendKeys(keys);
+        slot.appendArgs(args);
+        
+        // 分片键缺失时从数据库加载后重试一次
+        for (int attempt = 0; attempt < 2; attempt++) {
+            List<Object> result = redisTemplate.execute(SHARD_DEDUCT_SCRIPT, keys, args.toArray());
+            if (result == null || result.isEmpty()) {
+                return new AccountService.DeductResult(false, "扣款执行失败", null);
+            }
+            
+            long status = (Long) result.get(0);
+            if (status == 1) {
+                return new AccountService.DeductResult(true, "扣款成功", MoneyCodec.fromMinorUnits((Long) result.get(1)));
+            }
+            if (status == AccountService.DeductResult.STATUS_DUPLICATE) {
+                return AccountService.DeductResult.duplicate((String) result.get(1));
+            }
+            if (status == 0) {
+                return new AccountService.DeductResult(false, (String) result.get(1), null);
+            }
+            loadMissingShards(accountId, shardCount);
+        }
+        return new AccountService.DeductResult(false, "账户余额不存在", null);
+    }
+    
+    /**
+     * 热点账户清算失败退回：按交易ID散列退回到一个分片键（分片键缺失时不累加，下次从数据库分片行加载），
+     * 热点账户的数据库分片只在清算成功后由账本扣减，无需回写；返回是否实际退回了余额
+     */
+    public boolean refund(String accountId, BigDecimal amount, String transactionId) {
+        IdempotencyIndex.Slot slot = idempotencyIndex.slotOf(transactionId);
+        if (slot.isExpired()) {
+            log.error("交易超出幂等保留期，无法判断是否已扣款，需人工核对: {} 账户: {} 金额: {}",
+                    transactionId, accountId, amount);
+            return false;
+        }
+        int shardNo = Math.floorMod(transactionId.hashCode(), getShardCount(accountId));
+        List<String> keys = new ArrayList<>(6);
+        List<Object> args = new ArrayList<>(6);
+        keys.add(BalanceShardKeys.shardKey(accountId, shardNo));
+        args.add(Long.toString(MoneyCodec.toMinorUnits(amount)));
+        slot.appendKeys(keys);
+        // 分片扣款不登记未落库变动，脚本中的清除为空操作
+        PendingBalanceDeltas.appendRefundKeys(keys, accountId);
+        slot.appendArgs(args);
+        args.add(accountId);
+        args.add(transactionId);
+        
+        List<Object> result = redisTemplate.execute(AccountService.REFUND_SCRIPT, keys, args.toArray());
+        if (result == null || result.isEmpty()) {
+            throw new RuntimeException("退回扣款执行失败: " + transactionId);
+        }
+        boolean refunded = (Long) result.get(0) == 1;
+        if (refunded) {
+            log.info("热点账户清算失败退回扣款: {} 账户: {} 分片: {} 金额: {}", transactionId, accountId, shardNo, amount);
+        }
+        return refunded;
+    }
+    
+    /**
+     * 热点账户余额：各分片之和
+     */
+    public BigDecimal getBalance(String accountId) {
+        int shardCount = getShardCount(accountId);
+        List<String> values = redisTemplate.opsForValue().multiGet(BalanceShardKeys.shardKeys(accountId, shardCount));
+        if (values == null || values.contains(null)) {
+            values = loadMissingShards(accountId, shardCount);
+        }
+        long total = 0;
+        for (String value : values) {
+            total += Long.parseLong(value);
+        }
+        return MoneyCodec.fromMinorUnits(total);
+    }
+    
+    /**
+     * 热点账户充值：按交易分散到某个分片，数据库单条语句累加，Redis分片键存在时同步累加
+     */
+    @Transactional
+    public BigDecimal deposit(String accountId, BigDecimal amount) {
+        int shardCount = getShardCount(accountId);
+        int shardNo = (int) Math.floorMod(System.nanoTime(), (long) shardCount);
+        int updated = accountShardRepository.creditShard(accountId, shardNo, amount, LocalDateTime.now());
+        if (updated == 0) {
+            throw new RuntimeException("热点账户分片不存在: " + accountId + "#" + shardNo);
+        }
+        
+        redisTemplate.execute(SHARD_CREDIT_SCRIPT,
+                Arrays.asList(BalanceShardKeys.shardKey(accountId, shardNo)),
+                Long.toString(MoneyCodec.toMinorUnits(amount)));
+        
+        log.info("热点账户充值成功: {} 分片: {} 金额: {}", accountId, shardNo, amount);
+        return getBalance(accountId);
+    }
+    
+    /**
+     * 接收热点模式变更通知，失效本地分片数缓存
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String accountId = new String(message.getBody(), StandardCharsets.UTF_8);
+        shardCounts.invalidate(accountId);
+        log.debug("收到热点账户变更通知: {}", accountId);
+    }
+    
+    private void publishShardChange(String accountId) {
+        try {
+            redisTemplate.convertAndSend(BalanceShardKeys.CHANNEL, accountId);
+        } catch (Exception e) {
+            // 其他实例依靠TTL兜底
+            log.warn("发布热点账户变更通知失败: {}", accountId, e);
+        }
+    }
+    
+    /**
+     * 从数据库加载缺失的分片键（SETNX，不覆盖已存在的分片），返回全部分片的当前值
+     */
+    private List<String> loadMissingShards(String accountId, int shardCount) {
+        List<AccountBalanceShard> shards = accountShardRepository.findByAccountIdOrderByShardNoAsc(accountId);
+        if (shards.size() != shardCount) {
+            throw new RuntimeException("热点账户分片数据不完整: " + accountId);
+        }
+        for (AccountBalanceShard shard : shards) {
+            redisTemplate.opsForValue().setIfAbsent(
+                    BalanceShardKeys.shardKey(accountId, shard.getShardNo()),
+                    MoneyCodec.encode(shard.getBalance()));
+        }
+        log.warn("热点账户分片键缺失，已从数据库加载: {}", accountId);
+        return redisTemplate.opsForValue().multiGet(BalanceShardKeys.shardKeys(accountId, shardCount));
+    }
+}
\ No newline at end of file
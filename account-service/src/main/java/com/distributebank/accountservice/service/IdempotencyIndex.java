@@ -0,0 +1,320 @@
+package com.distributebank.accountservice.service;
+
+import com.distributebank.common.util.TransactionIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 扣款幂等索引
+ * 交易ID按其中的创建时间落入按小时划分的Redis Hash桶（再按交易ID散列到子桶），
+ * 每笔交易只占Hash中的一个字段，过期由桶级EXPIREAT统一控制，代替每笔交易一个带TTL的独立键；
+ * 无法解析时间的交易ID仍使用原来的 transaction:processed:{id} 独立键；
+ * 创建时间在保留期之外的交易ID对应的桶可能已过期，无法判断是否扣过款，直接拒绝（不回落到旧独立键）
+ */
+@Component
+public class IdempotencyIndex {
+    
+    private static final String BUCKET_PREFIX = "idem:txn:";
+    private static final String LEGACY_PREFIX = "transaction:processed:";
+    private static final String TRANSACTION_ID_PREFIX = "TXN_";
+    private static final DateTimeFormatter HOUR_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    
+    /**
+     * 幂等模式：h-仅查Hash桶，H-查Hash桶并兼容查询旧独立键，k-旧独立键
+     */
+    private static final String MODE_BUCKET = "h";
+    private static final String MODE_BUCKET_WITH_LEGACY = "H";
+    private static final String MODE_LEGACY = "k";
+    
+    /**
+     * 扣款和退回脚本共用的幂等检查和标记函数，每笔交易占用KEYS(桶键, 旧键)和ARGV(模式, 字段, 桶过期时间)；
+     * 标记值 1-已扣款，2-已退回（清算失败后退回，或未扣款时占位阻止迟到的创建事件再扣款），扣款脚本对两者都按已处理过返回并带回标记值
+     */
+    static final String LUA_FUNCTIONS =
+        "local function idem_get(bucketKey, legacyKey, mode, field)\n" +
+        "    if mode == 'k' then\n" +
+        "        return redis.call('GET', legacyKey)\n" +
+        "    end\n" +
+        "    local value = redis.call('HGET', bucketKey, field)\n" +
+        "    if not value and mode == 'H' then\n" +
+        "        value = redis.call('GET', legacyKey)\n" +
+        "    end\n" +
+        "    return value\n" +
+        "end\n" +
+        "local function idem_set(bucketKey, legacyKey, mode, field, expireAt, value)\n" +
+        "    if mode == 'k' then\n" +
+        "        redis.call('SETEX', legacyKey, 86400, value)\n" +
+        "    else\n" +
+        "        redis.call('HSET', bucketKey, field, value)\n" +
+        "        redis.call('EXPIREAT', bucketKey, expireAt)\n" +
+        "    end\n" +
+        "end\n" +
+        "local function idem_mark(bucketKey, legacyKey, mode, field, expireAt)\n" +
+        "    idem_set(bucketKey, legacyKey, mode, field, expireAt, '1')\n" +
+        "end\n";
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final boolean enabled;
+    private final boolean legacyCheck;
+    private final int subBuckets;
+    private final long retentionSeconds;
+    
+    private final AtomicLong bucketSlots = new AtomicLong();
+    private final AtomicLong legacySlots = new AtomicLong();
+    private final AtomicLong expiredSlots = new AtomicLong();
+    
+    public IdempotencyIndex(RedisTemplate<String, String> redisTemplate,
+                            @Value("${account.idempotency.bucketed.enabled:true}") boolean enabled,
+                            @Value("${account.idempotency.bucketed.legacy-check:true}") boolean legacyCheck,
+                            @Value("${account.idempotency.bucketed.sub-buckets:1024}") int subBuckets,
+                            @Value("${account.idempotency.bucketed.retention-seconds:172800}") long retentionSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.legacyCheck = legacyCheck;
+        this.subBuckets = subBuckets;
+        this.retentionSeconds = retentionSeconds;
+    }
+    
+    /**
+     * 计算交易的幂等位置
+     */
+    public Slot slotOf(String transactionId) {
+        String legacyKey = LEGACY_PREFIX + transactionId;
+        Long createdAt = enabled ? parseCreatedAt(transactionId) : null;
+        if (createdAt == null) {
+            legacySlots.incrementAndGet();
+            return new Slot(legacyKey, legacyKey, MODE_LEGACY, "1", "0");
+        }
+        if (!withinRetention(createdAt)) {
+            expiredSlots.incrementAndGet();
+            return Slot.expired(legacyKey);
+        }
+        
+        bucketSlots.incrementAndGet();
+        long hourStart = createdAt - createdAt % HOUR_MS;
+        int subBucket = Math.floorMod(transactionId.hashCode(), subBuckets);
+        String bucketKey = BUCKET_PREFIX + HOUR_FORMAT.format(Instant.ofEpochMilli(hourStart)) + ":" + subBucket;
+        // 桶在所属小时结束后再保留retention，覆盖该小时内最晚创建的交易
+        long expireAt = (hourStart + HOUR_MS) / 1000 + retentionSeconds;
+        String field = transactionId.substring(transactionId.startsWith(TRANSACTION_ID_PREFIX)
+                ? TRANSACTION_ID_PREFIX.length() : TransactionIdGenerator.PREFIX.length());
+        return new Slot(bucketKey, legacyKey, legacyCheck ? MODE_BUCKET_WITH_LEGACY : MODE_BUCKET,
+                field, Long.toString(expireAt));
+    }
+    
+    /**
+     * 交易创建时间是否超出保留期（不计入统计，供批量扣款预先分流）
+     */
+    public boolean isExpired(String transactionId) {
+        Long createdAt = enabled ? parseCreatedAt(transactionId) : null;
+        return createdAt != null && !withinRetention(createdAt);
+    }
+    
+    /**
+     * 解析交易ID中的创建时间（Snowflake格式或旧的TXN_{毫秒时间戳}_{随机串}），格式不符时返回null
+     */
+    private Long parseCreatedAt(String transactionId) {
+        Long snowflakeTime = TransactionIdGenerator.timestampOf(transactionId);
+        if (snowflakeTime != null) {
+            return snowflakeTime;
+        }
+        if (transactionId == null || !transactionId.startsWith(TRANSACTION_ID_PREFIX)) {
+            return null;
+        }
+        int end = transactionId.indexOf('_', TRANSACTION_ID_PREFIX.length());
+        if (end < 0) {
+            return null;
+        }
+        try {
+            return Long.parseLong(transactionId.substring(TRANSACTION_ID_PREFIX.length(), end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 创建时间是否在幂等保留期内（允许1小时的时钟偏差）
+     */
+    private boolean withinRetention(long createdAt) {
+        long now = System.currentTimeMillis();
+        return createdAt <= now + HOUR_MS && createdAt >= now - retentionSeconds * 1000;
+    }
+    
+    /**
+     * 采样当前小时的桶和旧独立键，估算每百万笔交易的幂等索引内存
+     */
+    public IdempotencyStats getStats(int sampleSize) {
+        String hour = HOUR_FORMAT.format(Instant.now());
+        long bucketBytes = 0;
+        long bucketEntries = 0;
+        int sampledBuckets = 0;
+        for (int i = 0; i < Math.min(sampleSize, subBuckets); i++) {
+            String bucketKey = BUCKET_PREFIX + hour + ":" + i;
+            Long entries = redisTemplate.opsForHash().size(bucketKey);
+            if (entries == null || entries == 0) {
+                continue;
+            }
+            bucketBytes += memoryUsage(bucketKey);
+            bucketEntries += entries;
+            sampledBuckets++;
+        }
+        
+        List<String> legacyKeys = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(LEGACY_PREFIX + "*").count(1000).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext() && legacyKeys.size() < sampleSize) {
+                legacyKeys.add(cursor.next());
+            }
+        }
+        long legacyBytes = 0;
+        for (String key : legacyKeys) {
+            legacyBytes += memoryUsage(key);
+        }
+        
+        double bytesPerTxn = bucketEntries == 0 ? 0 : (double) bucketBytes / bucketEntries;
+        double legacyBytesPerTxn = legacyKeys.isEmpty() ? 0 : (double) legacyBytes / legacyKeys.size();
+        return new IdempotencyStats(
+                enabled,
+                legacyCheck,
+                subBuckets,
+                bucketSlots.get(),
+                legacySlots.get(),
+                expiredSlots.get(),
+                sampledBuckets,
+                bucketEntries,
+                bytesPerTxn,
+                bytesPerTxn * 1_000_000 / (1024 * 1024),
+                legacyKeys.size(),
+                legacyBytesPerTxn,
+                legacyBytesPerTxn * 1_000_000 / (1024 * 1024)
+        );
+    }
+    
+    private long memoryUsage(String key) {
+        Object usage = redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute(
+                "MEMORY", "USAGE".getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8)));
+        return usage instanceof Number number ? number.longValue() : 0;
+    }
+    
+    /**
+     * 单笔交易的幂等位置
+     */
+    public static class Slot {
+        private final String bucketKey;
+        private final String legacyKey;
+        private final String mode;
+        private final String field;
+        private final String expireAt;
+        private boolean expired;
+        
+        public Slot(String bucketKey, String legacyKey, String mode, String field, String expireAt) {
+            this.bucketKey = bucketKey;
+            this.legacyKey = legacyKey;
+            this.mode = mode;
+            this.field = field;
+            this.expireAt = expireAt;
+        }
+        
+        /**
+         * 创建时间超出保留期的交易：幂等标记可能已过期，调用方应拒绝扣款而不是执行脚本
+         */
+        static Slot expired(String legacyKey) {
+            Slot slot = new Slot(legacyKey, legacyKey, MODE_LEGACY, "1", "0");
+            slot.expired = true;
+            return slot;
+        }
+        
+        /**
+         * 按脚本约定追加KEYS：桶键、旧键
+         */
+        public void appendKeys(List<String> keys) {
+            keys.add(bucketKey);
+            keys.add(legacyKey);
+        }
+        
+        /**
+         * 按脚本约定追加ARGV：模式、字段、桶过期时间
+         */
+        public void appendArgs(List<Object> args) {
+            args.add(mode);
+            args.add(field);
+            args.add(expireAt);
+        }
+        
+        // getters
+        public String getBucketKey() { return bucketKey; }
+        public String getLegacyKey() { return legacyKey; }
+        public String getMode() { return mode; }
+        public String getField() { return field; }
+        public String getExpireAt() { return expireAt; }
+        public boolean isExpired() { return expired; }
+    }
+    
+    /**
+     * 幂等索引统计类
+     */
+    public static class IdempotencyStats {
+        private boolean enabled;
+        private boolean legacyCheck;
+        private int subBuckets;
+        private long bucketSlots;
+        private long legacySlots;
+        private long expiredSlots;
+        private int sampledBuckets;
+        private long sampledEntries;
+        private double bytesPerTransaction;
+        private double mbPerMillion;
+        private int sampledLegacyKeys;
+        private double legacyBytesPerTransaction;
+        private double legacyMbPerMillion;
+        
+        public IdempotencyStats(boolean enabled, boolean legacyCheck, int subBuckets, long bucketSlots,
+                                long legacySlots, long expiredSlots, int sampledBuckets, long sampledEntries,
+                                double bytesPerTransaction, double mbPerMillion, int sampledLegacyKeys,
+                                double legacyBytesPerTransaction, double legacyMbPerMillion) {
+            this.enabled = enabled;
+            this.legacyCheck = legacyCheck;
+            this.subBuckets = subBuckets;
+            this.bucketSlots = bucketSlots;
+            this.legacySlots = legacySlots;
+            this.expiredSlots = expiredSlots;
+            this.sampledBuckets = sampledBuckets;
+            this.sampledEntries = sampledEntries;
+            this.bytesPerTransaction = bytesPerTransaction;
+            this.mbPerMillion = mbPerMillion;
+            this.sampledLegacyKeys = sampledLegacyKeys;
+            this.legacyBytesPerTransaction = legacyBytesPerTransaction;
+            this.legacyMbPerMillion = legacyMbPerMillion;
+        }
+        
+        // getters
+        public boolean isEnabled() { return enabled; }
+        public boolean isLegacyCheck() { return legacyCheck; }
+        public int getSubBuckets() { return subBuckets; }
+        public long getBucketSlots() { return bucketSlots; }
+        public long getLegacySlots() { return legacySlots; }
+        public long getExpiredSlots() { return expiredSlots; }
+        public int getSampledBuckets() { return sampledBuckets; }
+        public long getSampledEntries() { return sampledEntries; }
+        public double getBytesPerTransaction() { return bytesPerTransaction; }
+        public double getMbPerMillion() { return mbPerMillion; }
+        public int getSampledLegacyKeys() { return sampledLegacyKeys; }
+        public double getLegacyBytesPerTransaction() { return legacyBytesPerTransaction; }
+        public double getLegacyMbPerMillion() { return legacyMbPerMillion; }
+    }
+}
\ No newline at end of file
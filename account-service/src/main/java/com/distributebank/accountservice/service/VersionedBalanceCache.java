@@ -0,0 +1,184 @@
+package com.distributebank.accountservice.service;
+
+import com.distributebank.common.cache.BalanceKeys;
+import com.distributebank.common.cache.PendingBalanceDeltas;
+import com.distributebank.common.event.BalanceChangedEvent;
+import com.distributebank.common.util.MoneyCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带版本号的余额缓存写入
+ * 余额键旁边保存写入时的账户行版本号，Lua脚本比较版本后原子写入余额和版本：
+ * 只接受更新的版本（版本相同时仅在余额键不存在时写入），乱序到达的旧事件和慢回源都不会覆盖新值。
+ * 版本号只来自数据库账户行；账户有尚未落库的Redis侧扣款/退回时（见PendingBalanceDeltas）推迟写入，
+ * 数据库追上后由入账方删除余额键，下次读取重新加载
+ */
+@Component
+@Slf4j
+public class VersionedBalanceCache {
+    
+    private static final String ACCOUNT_BALANCE_PREFIX = BalanceKeys.PREFIX;
+    private static final long TTL_SECONDS = 24 * 3600;
+    
+    // KEYS按(余额key, 版本key, 未落库标记key, 推迟标记key)四个一组，ARGV按(分值余额, 版本号)两个一组，最后一个ARGV为过期秒数
+    // 返回每组结果：1-写入，0-版本不比缓存新，2-有未落库的Redis侧变动，推迟写入
+    private static final String COMPARE_AND_SET_SCRIPT =
+        "local ttl = ARGV[#ARGV]\n" +
+        "local results = {}\n" +
+        "for i = 1, #KEYS / 4 do\n" +
+        "    local balanceKey = KEYS[i * 4 - 3]\n" +
+        "    local versionKey = KEYS[i * 4 - 2]\n" +
+        "    local version = tonumber(ARGV[i * 2])\n" +
+        "    local current = tonumber(redis.call('GET', versionKey) or '-1')\n" +
+        "    if redis.call('EXISTS', KEYS[i * 4 - 1]) == 1 then\n" +
+        "        redis.call('SET', KEYS[i * 4], '1', 'EX', " + PendingBalanceDeltas.TTL_SECONDS + ")\n" +
+        "        results[i] = 2\n" +
+        "    elseif version > current or (version == current and redis.call('EXISTS', balanceKey) == 0) then\n" +
+        "        redis.call('SET', balanceKey, ARGV[i * 2 - 1], 'EX', ttl)\n" +
+        "        redis.call('SET', versionKey, ARGV[i * 2], 'EX', ttl)\n" +
+        "        results[i] = 1\n" +
+        "    else\n" +
+        "        results[i] = 0\n" +
+        "    end\n" +
+        "end\n" +
+        "return results";
+    
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CAS_SCRIPT =
+            new DefaultRedisScript<>(COMPARE_AND_SET_SCRIPT, List.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final BalanceNearCache balanceNearCache;
+    
+    private final AtomicLong appliedCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong deferredCount = new AtomicLong();
+    
+    public VersionedBalanceCache(RedisTemplate<String, String> redisTemplate, BalanceNearCache balanceNearCache) {
+        this.redisTemplate = redisTemplate;
+        this.balanceNearCache = balanceNearCache;
+    }
+    
+    /**
+     * 应用一批余额变更事件：同一账户只保留版本最高的一条，一次脚本调用写入，写入成功的账户同步近端缓存
+     */
+    public int applyAll(List<BalanceChangedEvent> events) {
+        Map<String, BalanceChangedEvent> latest = new LinkedHashMap<>();
+        for (BalanceChangedEvent event : events) {
+            if (event.getAccountId() == null || event.getBalance() == null || event.getVersion() == null) {
+                continue;
+            }
+            BalanceChangedEvent previous = latest.merge(event.getAccountId(), event,
+                    (existing, incoming) -> incoming.getVersion() > existing.getVersion() ? incoming : existing);
+            if (previous != event) {
+                coalescedCount.incrementAndGet();
+            }
+        }
+        if (latest.isEmpty()) {
+            return 0;
+        }
+        
+        List<String> accountIds = new ArrayList<>(latest.keySet());
+        List<String> values = accountIds.stream()
+                .map(accountId -> MoneyCodec.encode(latest.get(accountId).getBalance()))
+                .toList();
+        List<Long> versions = accountIds.stream().map(accountId -> latest.get(accountId).getVersion()).toList();
+        boolean[] applied = compareAndSet(accountIds, values, versions);
+        
+        List<String> appliedIds = new ArrayList<>();
+        for (int i = 0; i < applied.length; i++) {
+            if (applied[i]) {
+                appliedIds.add(accountIds.get(i));
+            }
+        }
+        if (!appliedIds.isEmpty()) {
+            balanceNearCache.invalidateAll(appliedIds);
+            for (int i = 0; i < applied.length; i++) {
+                if (applied[i]) {
+                    balanceNearCache.put(accountIds.get(i), values.get(i));
+                }
+            }
+        }
+        return appliedIds.size();
+    }
+    
+    /**
+     * 回源加载后按版本写入，缓存中已有相同或更新的版本时不覆盖，返回是否写入
+     */
+    public boolean setIfNewer(String accountId, String value, long version) {
+        boolean applied = compareAndSet(List.of(accountId), List.of(value), List.of(version))[0];
+        if (applied) {
+            balanceNearCache.update(accountId, value);
+        }
+        return applied;
+    }
+    
+    private boolean[] compareAndSet(List<String> accountIds, List<String> values, List<Long> versions) {
+        List<String> keys = new ArrayList<>(accountIds.size() * 4);
+        List<Object> args = new ArrayList<>(accountIds.size() * 2 + 1);
+        for (int i = 0; i < accountIds.size(); i++) {
+            keys.add(ACCOUNT_BALANCE_PREFIX + accountIds.get(i));
+            keys.add(BalanceKeys.versionKey(accountIds.get(i)));
+            keys.add(PendingBalanceDeltas.pendingKey(accountIds.get(i)));
+            keys.add(PendingBalanceDeltas.staleKey(accountIds.get(i)));
+            args.add(values.get(i));
+            args.add(Long.toString(versions.get(i)));
+        }
+        args.add(Long.toString(TTL_SECONDS));
+        
+        List<?> results = redisTemplate.execute(CAS_SCRIPT, keys, args.toArray());
+        boolean[] applied = new boolean[accountIds.size()];
+        for (int i = 0; i < applied.length; i++) {
+            long result = results == null ? 0 : ((Number) results.get(i)).longValue();
+            applied[i] = result == 1;
+            if (applied[i]) {
+                appliedCount.incrementAndGet();
+            } else if (result == 2) {
+                deferredCount.incrementAndGet();
+            } else {
+                staleCount.incrementAndGet();
+            }
+        }
+        return applied;
+    }
+    
+    /**
+     * 获取版本化写入统计
+     */
+    public VersionedCacheStats getStats() {
+        return new VersionedCacheStats(appliedCount.get(), staleCount.get(), coalescedCount.get(), deferredCount.get());
+    }
+    
+    /**
+     * 版本化写入统计类
+     */
+    public static class VersionedCacheStats {
+        private long applied;
+        private long stale;
+        private long coalesced;
+        private long deferred;
+        
+        public VersionedCacheStats(long applied, long stale, long coalesced, long deferred) {
+            this.applied = applied;
+            this.stale = stale;
+            this.coalesced = coalesced;
+            this.deferred = deferred;
+        }
+        
+        // getters
+        public long getApplied() { return applied; }
+        public long getStale() { return stale; }
+        public long getCoalesced() { return coalesced; }
+        public long getDeferred() { return deferred; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,244 @@
+package com.distributebank.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 账本记账写路径基准：单语句条件UPDATE 对比 读-改-写加乐观锁重试
+ * 少量账户、多线程并发转账模拟热门账户争用；在独立表bench_accounts上运行，不影响业务数据。
+ * 连接参数：-Dbench.jdbc.url、-Dbench.jdbc.user、-Dbench.jdbc.password（默认指向docker-compose中的MySQL）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(16)
+public class LedgerUpdateBenchmark {
+
+    private static final String URL = System.getProperty("bench.jdbc.url",
+            "jdbc:mysql://localhost:3307/distribute_bank?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true");
+    private static final String USER = System.getProperty("bench.jdbc.user", "root");
+    private static final String PASSWORD = System.getProperty("bench.jdbc.password", "password");
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    private static final int MAX_RETRIES = 3;
+
+    /**
+     * 准备基准账户表
+     */
+    @State(Scope.Benchmark)
+    public static class Accounts {
+
+        /**
+         * 参与转账的账户数，越少争用越激烈
+         */
+        @Param({"4", "64"})
+        public int accountCount;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS bench_accounts");
+                statement.execute("CREATE TABLE bench_accounts (" +
+                        "account_id VARCHAR(32) PRIMARY KEY, " +
+                        "balance DECIMAL(19,2) NOT NULL, " +
+                        "version BIGINT NOT NULL) ENGINE=InnoDB");
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO bench_accounts (account_id, balance, version) VALUES (?, ?, 0)")) {
+                    for (int i = 0; i < accountCount; i++) {
+                        insert.setString(1, accountId(i));
+                        insert.setBigDecimal(2, new BigDecimal("100000000.00"));
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS bench_accounts");
+            }
+        }
+
+        String accountId(int i) {
+            return String.format("BENCH%05d", i);
+        }
+    }
+
+    /**
+     * 每个线程一个连接
+     */
+    @State(Scope.Thread)
+    public static class Session {
+
+        Connection connection;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            connection = DriverManager.getConnection(URL, USER, PASSWORD);
+            connection.setAutoCommit(false);
+            // 读已提交：乐观锁重试能读到其他事务已提交的新版本号（可重复读下重试读到的仍是旧快照）
+            connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            connection.close();
+        }
+    }
+
+    /**
+     * 乐观锁重试耗尽而失败的转账数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcome {
+
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            dropped = 0;
+        }
+    }
+
+    /**
+     * 当前写路径：按账户ID顺序各执行一条条件UPDATE，随后在已持有的行锁下读取新余额
+     */
+    @Benchmark
+    public BigDecimal guardedUpdate(Accounts accounts, Session session) throws SQLException {
+        String[] pair = pickPair(accounts);
+        Connection connection = session.connection;
+        BigDecimal balances = BigDecimal.ZERO;
+        try {
+            boolean fromFirst = pair[0].compareTo(pair[1]) < 0;
+            for (int k = 0; k < 2; k++) {
+                boolean debit = (k == 0) == fromFirst;
+                String accountId = debit ? pair[0] : pair[1];
+                String sql = debit
+                        ? "UPDATE bench_accounts SET balance = balance - ?, version = version + 1 " +
+                          "WHERE account_id = ? AND balance >= ?"
+                        : "UPDATE bench_accounts SET balance = balance + ?, version = version + 1 " +
+                          "WHERE account_id = ?";
+                try (PreparedStatement update = connection.prepareStatement(sql)) {
+                    update.setBigDecimal(1, AMOUNT);
+                    update.setString(2, accountId);
+                    if (debit) {
+                        update.setBigDecimal(3, AMOUNT);
+                    }
+                    if (update.executeUpdate() == 0) {
+                        throw new SQLException("余额不足: " + accountId);
+                    }
+                }
+                balances = balances.add(readBalance(connection, accountId));
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        return balances;
+    }
+
+    /**
+     * 原写路径：读取余额和版本号，按版本号条件写回，冲突时递增延时重试，3次后整笔失败
+     */
+    @Benchmark
+    public BigDecimal optimisticRetry(Accounts accounts, Session session, Outcome outcome) throws SQLException {
+        String[] pair = pickPair(accounts);
+        Connection connection = session.connection;
+        try {
+            BigDecimal fromBalance = optimisticUpdate(connection, pair[0], AMOUNT.negate());
+            BigDecimal toBalance = fromBalance == null ? null : optimisticUpdate(connection, pair[1], AMOUNT);
+            if (toBalance == null) {
+                connection.rollback();
+                outcome.dropped++;
+                return BigDecimal.ZERO;
+            }
+            connection.commit();
+            return fromBalance.add(toBalance);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    private BigDecimal optimisticUpdate(Connection connection, String accountId, BigDecimal delta) throws SQLException {
+        for (int i = 0; i < MAX_RETRIES; i++) {
+            BigDecimal balance;
+            long version;
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT balance, version FROM bench_accounts WHERE account_id = ?")) {
+                select.setString(1, accountId);
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    balance = rs.getBigDecimal(1);
+                    version = rs.getLong(2);
+                }
+            }
+            BigDecimal newBalance = balance.add(delta);
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE bench_accounts SET balance = ?, version = version + 1 WHERE account_id = ? AND version = ?")) {
+                update.setBigDecimal(1, newBalance);
+                update.setString(2, accountId);
+                update.setLong(3, version);
+                if (update.executeUpdate() == 1) {
+                    return newBalance;
+                }
+            }
+            try {
+                Thread.sleep(10L * (i + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private BigDecimal readBalance(Connection connection, String accountId) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT balance FROM bench_accounts WHERE account_id = ?")) {
+            select.setString(1, accountId);
+            try (ResultSet rs = select.executeQuery()) {
+                rs.next();
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+
+    private String[] pickPair(Accounts accounts) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accounts.accountCount);
+        int to = (from + 1 + random.nextInt(accounts.accountCount - 1)) % accounts.accountCount;
+        return new String[]{accounts.accountId(from), accounts.accountId(to)};
+    }
+}
@@ -0,0 +1,56 @@
+package com.distributebank.benchmarks;
+
+import com.distributebank.common.util.TransactionIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易ID生成吞吐基准：Snowflake生成器（CAS推进）对比原 "TXN_" + 毫秒时间戳 + "_" + UUID前8位
+ * 默认使用全部CPU线程并发生成，-t 参数可调整线程数观察CAS竞争
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class TransactionIdGeneratorBenchmark {
+
+    private final TransactionIdGenerator generator = new TransactionIdGenerator(1);
+
+    /**
+     * 64位ID，不含字符串编码
+     */
+    @Benchmark
+    public long snowflakeLong() {
+        return generator.nextLong();
+    }
+
+    /**
+     * 交易ID字符串（TXN + 13位Base32）
+     */
+    @Benchmark
+    public String snowflakeId() {
+        return generator.nextId();
+    }
+
+    /**
+     * 原实现：SecureRandom生成UUID后截取并拼接字符串
+     */
+    @Benchmark
+    public String legacyUuidId() {
+        return "TXN_" + System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,134 @@
+package com.distributebank.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 固定内存预算下的并发能力：平台线程池 对比 虚拟线程
+ * 每次操作提交concurrency个阻塞任务（模拟一次Redis/MySQL往返的等待，并持有一块请求级缓冲区），等待全部完成。
+ * 堆固定为256MB，平台线程栈固定为-Xss1m；栈不在堆内，所以同时报告进程常驻内存峰值（rssMb，读取/proc/self/status），
+ * 平台线程的内存开销约为 -Xss × 线程数，要在真实的内存上限内比较，把基准放进限额容器运行：
+ * docker run -m 1g ... java -jar benchmarks/target/benchmarks.jar VirtualThreadConcurrencyBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms256m", "-Xmx256m", "-Xss1m"})
+public class VirtualThreadConcurrencyBenchmark {
+
+    private static final int PLATFORM_POOL_SIZE = 200;
+    private static final long BLOCKING_MILLIS = 10;
+    private static final int BUFFER_BYTES = 4096;
+
+    /**
+     * 执行器
+     */
+    @State(Scope.Benchmark)
+    public static class Executor {
+
+        /**
+         * platform：200个平台线程的固定线程池；platform-per-task：每任务一个平台线程；virtual：每任务一个虚拟线程
+         */
+        @Param({"platform", "platform-per-task", "virtual"})
+        public String executor;
+
+        /**
+         * 同时在途的阻塞任务数
+         */
+        @Param({"1000", "10000"})
+        public int concurrency;
+
+        ExecutorService service;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            service = switch (executor) {
+                case "virtual" -> Executors.newVirtualThreadPerTaskExecutor();
+                case "platform-per-task" -> Executors.newThreadPerTaskExecutor(Thread.ofPlatform().factory());
+                default -> Executors.newFixedThreadPool(PLATFORM_POOL_SIZE);
+            };
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            service.shutdownNow();
+        }
+    }
+
+    /**
+     * 内存计数：每轮迭代内任务全部提交后采样的进程常驻内存最大值（MB）
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Memory {
+
+        public long rssMb;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rssMb = 0;
+        }
+
+        void sample() {
+            rssMb = Math.max(rssMb, residentMegabytes());
+        }
+    }
+
+    /**
+     * 提交一批阻塞任务并等待全部完成；每批耗时越短，说明同一内存预算下能同时服务的请求越多
+     */
+    @Benchmark
+    public long blockingFanOut(Executor executor, Memory memory) throws InterruptedException, ExecutionException {
+        List<Future<Integer>> futures = new ArrayList<>(executor.concurrency);
+        for (int i = 0; i < executor.concurrency; i++) {
+            futures.add(executor.service.submit(() -> {
+                byte[] buffer = new byte[BUFFER_BYTES];
+                Thread.sleep(BLOCKING_MILLIS);
+                return buffer.length;
+            }));
+        }
+        memory.sample();
+        long bytes = 0;
+        for (Future<Integer> future : futures) {
+            bytes += future.get();
+        }
+        return bytes;
+    }
+
+    private static long residentMegabytes() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) / 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // 非Linux环境不报告
+        }
+        return 0;
+    }
+}
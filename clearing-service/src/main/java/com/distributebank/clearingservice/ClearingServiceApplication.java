@@ -2,12 +2,14 @@ package com.distributebank.clearingservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 清算服务主启动类
  * 模拟银联或SWIFT清算机构
  */
 @SpringBootApplication
+@EnableScheduling
 public class ClearingServiceApplication {
     
     public static void main(String[] args) {
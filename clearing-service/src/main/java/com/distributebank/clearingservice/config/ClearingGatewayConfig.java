@@ -0,0 +1,32 @@
+package com.distributebank.clearingservice.config;
+
+import com.distributebank.clearingservice.service.BankCodeResolver;
+import com.distributebank.clearingservice.service.ResilientClearingGateway;
+import com.distributebank.clearingservice.service.SimulatedClearingGateway;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 清算通道配置
+ * 实际通道（当前为本地模拟器）外面包一层按银行隔离的隔离舱、超时、熔断和对冲，业务代码只依赖ClearingGateway接口
+ */
+@Configuration
+@EnableConfigurationProperties(ClearingGatewayProperties.class)
+public class ClearingGatewayConfig {
+    
+    @Bean(destroyMethod = "shutdown")
+    public SimulatedClearingGateway simulatedClearingGateway(ClearingGatewayProperties properties,
+                                                             BankCodeResolver bankCodeResolver) {
+        return new SimulatedClearingGateway(properties.getSimulator(), bankCodeResolver);
+    }
+    
+    @Bean
+    @Primary
+    public ResilientClearingGateway clearingGateway(SimulatedClearingGateway simulatedClearingGateway,
+                                                    BankCodeResolver bankCodeResolver,
+                                                    ClearingGatewayProperties properties) {
+        return new ResilientClearingGateway(simulatedClearingGateway, bankCodeResolver, properties);
+    }
+}
\ No newline at end of file
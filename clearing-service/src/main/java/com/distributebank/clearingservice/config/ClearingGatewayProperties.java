@@ -0,0 +1,114 @@
+package com.distributebank.clearingservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 清算通道配置
+ * 包括隔离舱、超时、熔断、对冲请求，以及本地模拟器按银行代码配置的时延分布和故障率
+ */
+@Data
+@ConfigurationProperties(prefix = "clearing.gateway")
+public class ClearingGatewayProperties {
+    
+    /**
+     * 单次清算请求超时时间，超时后结果未知，转入结果查询
+     */
+    private long timeoutMs = 5000;
+    
+    /**
+     * 每个银行同时在途的清算请求上限（隔离舱），超出时立即失败
+     */
+    private int bulkheadSize = 200;
+    
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    
+    private Hedge hedge = new Hedge();
+    
+    private Inquiry inquiry = new Inquiry();
+    
+    private Simulator simulator = new Simulator();
+    
+    /**
+     * 熔断配置：连续failureThreshold次超时或异常后熔断openMs，之后放行一个探测请求
+     */
+    @Data
+    public static class CircuitBreaker {
+        private int failureThreshold = 20;
+        private long openMs = 10000;
+    }
+    
+    /**
+     * 对冲请求：超过delayMs未返回时以同一幂等键再发一次，先返回者为准（清算机构按幂等键只受理一次）
+     */
+    @Data
+    public static class Hedge {
+        private boolean enabled = false;
+        private long delayMs = 2500;
+    }
+    
+    /**
+     * 结果查询：调用超时表示结果未知（请求可能已被受理），按backoffMs起指数退避（上限maxBackoffMs）
+     * 按幂等键查询状态，直到得到明确结果；清算机构未收到请求时以同一幂等键重新提交。
+     * 超时不按清算失败处理，避免已划款的转账被退款
+     */
+    @Data
+    public static class Inquiry {
+        private long backoffMs = 1000;
+        private long maxBackoffMs = 30000;
+    }
+    
+    /**
+     * 本地模拟器：defaultProfile适用于所有银行，banks按银行代码覆盖
+     */
+    @Data
+    public static class Simulator {
+        private BankProfile defaultProfile = new BankProfile();
+        private Map<String, BankProfile> banks = new HashMap<>();
+        
+        /**
+         * 已受理请求的结果保留时长，期间同一幂等键的重复提交和查询返回该结果
+         */
+        private long recordRetentionMs = 3600000;
+        
+        public BankProfile profileOf(String bankCode) {
+            return bankCode != null ? banks.getOrDefault(bankCode, defaultProfile) : defaultProfile;
+        }
+    }
+    
+    /**
+     * 单个银行的模拟行为
+     */
+    @Data
+    public static class BankProfile {
+        
+        /**
+         * 时延分布：uniform-在[min, max]间均匀分布，lognormal-以median为中位数、sigma为对数标准差
+         */
+        private String distribution = "uniform";
+        private long minLatencyMs = 1000;
+        private long maxLatencyMs = 3000;
+        private long medianLatencyMs = 1500;
+        private double sigma = 0.5;
+        
+        /**
+         * 长尾毛刺：按spikeRate的概率额外增加spikeLatencyMs
+         */
+        private double spikeRate = 0.0;
+        private long spikeLatencyMs = 10000;
+        
+        /**
+         * 清算失败率（清算机构拒绝）
+         */
+        private double failureRate = 0.05;
+        
+        /**
+         * 无响应比例（只能靠超时发现）：一半为请求丢失（未受理），一半为应答丢失（已受理，结果可查询）；
+         * 查询请求按同一比例丢失
+         */
+        private double timeoutRate = 0.0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.distributebank.clearingservice.config;
+
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+/**
+ * Kafka消费配置
+ * 清算监听使用手动确认并允许乱序确认（asyncAcks）：清算结果先到先确认，
+ * 容器只提交到最小的连续已确认偏移量，未完成的清算在重启或再均衡后会被重新消费
+ */
+@Configuration
+public class KafkaConsumerConfig {
+    
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> clearingListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        // 按事件类型消息头跳过的记录也要确认，否则会卡住偏移量提交
+        factory.setAckDiscarded(true);
+        return factory;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.distributebank.clearingservice.controller;
+
+import com.distributebank.clearingservice.handler.ClearingEventHandler;
+import com.distributebank.clearingservice.service.NettingEngine;
+import com.distributebank.clearingservice.service.ResilientClearingGateway;
+import com.distributebank.common.dto.Result;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 清算监控控制器
+ */
+@RestController
+@RequestMapping("/api/clearing")
+@RequiredArgsConstructor
+@Slf4j
+public class ClearingController {
+    
+    private final ClearingEventHandler clearingEventHandler;
+    private final ObjectProvider<NettingEngine> nettingEngine;
+    private final ResilientClearingGateway clearingGateway;
+    
+    /**
+     * 查询各分区在途清算笔数
+     * GET /api/clearing/in-flight
+     */
+    @GetMapping("/in-flight")
+    public Result<Map<String, Integer>> getInFlight() {
+        return Result.success(clearingEventHandler.getInFlight());
+    }
+    
+    /**
+     * 查询轧差统计（未开启轧差模式时返回空）
+     * GET /api/clearing/netting/stats
+     */
+    @GetMapping("/netting/stats")
+    public Result<NettingEngine.NettingStats> getNettingStats() {
+        NettingEngine engine = nettingEngine.getIfAvailable();
+        return engine != null ? Result.success(engine.getStats()) : Result.success("轧差模式未开启", null);
+    }
+    
+    /**
+     * 查询清算通道统计：各银行熔断状态、隔离舱在途数、拒绝/超时/对冲次数和时延分位数
+     * GET /api/clearing/gateway/stats
+     */
+    @GetMapping("/gateway/stats")
+    public Result<ResilientClearingGateway.GatewayStats> getGatewayStats() {
+        return Result.success(clearingGateway.getStats());
+    }
+}
\ No newline at end of file
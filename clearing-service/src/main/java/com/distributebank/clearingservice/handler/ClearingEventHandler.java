@@ -2,37 +2,140 @@ package com.distributebank.clearingservice.handler;
 
 import com.distributebank.common.event.TransferEvent;
 import com.distributebank.clearingservice.service.ClearingService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * 清算事件处理器
- * 负责处理Kafka中的清算相关事件
+ * 负责处理Kafka中的清算相关事件：清算请求异步提交，每个分区最多window-size笔在途，
+ * 窗口占满时阻塞监听线程形成背压；清算结果事件发送成功后才确认对应记录，发送失败时只重发结果事件（不重新清算），
+ * 偏移量由容器按连续已确认位置提交。分区撤销时丢弃该分区的窗口并停止重发，未确认的记录由新的分区所有者重新消费
  */
 @Component
-@RequiredArgsConstructor
 @Slf4j
-public class ClearingEventHandler {
+public class ClearingEventHandler implements ConsumerSeekAware {
     
     private final ClearingService clearingService;
+    private final int windowSize;
+    private final long resultRetryBackoffMs;
+    
+    /**
+     * 当前分配到本实例的分区的在途窗口
+     */
+    private final Map<TopicPartition, PartitionWindow> windows = new ConcurrentHashMap<>();
+    
+    private final AtomicLong resultSendRetries = new AtomicLong();
+    
+    public ClearingEventHandler(ClearingService clearingService,
+                                @Value("${clearing.window-size:64}") int windowSize,
+                                @Value("${clearing.result-retry-backoff-ms:1000}") long resultRetryBackoffMs) {
+        this.clearingService = clearingService;
+        this.windowSize = windowSize;
+        this.resultRetryBackoffMs = resultRetryBackoffMs;
+    }
     
     /**
      * 处理转账处理完成事件，执行清算逻辑
      */
-    @KafkaListener(topics = "transfer-events", groupId = "clearing-service")
-    public void handleTransferEvent(TransferEvent event) {
+    @KafkaListener(topics = "#{@transferEventTopics.topicsFor('TRANSFER_PROCESSED')}", groupId = "clearing-service",
+            containerFactory = "clearingListenerContainerFactory",
+            properties = "transfer.events.accepted-types=TRANSFER_PROCESSED")
+    public void handleTransferEvent(ConsumerRecord<String, TransferEvent> record, Acknowledgment ack)
+            throws InterruptedException {
+        TransferEvent event = record.value();
         if (event.getEventType() != TransferEvent.EventType.TRANSFER_PROCESSED) {
+            ack.acknowledge();
             return;
         }
         
-        log.info("开始清算处理: {}", event.getTransactionId());
+        PartitionWindow window = windows.computeIfAbsent(new TopicPartition(record.topic(), record.partition()),
+                partition -> new PartitionWindow(windowSize));
+        window.permits.acquire();
+        
+        clearingService.processClearing(event)
+                .thenAccept(resultEvent -> publishResult(resultEvent, window, ack, 1));
+    }
+    
+    /**
+     * 发布清算结果，成功后确认记录并释放窗口；失败时按退避间隔重发，直到成功或分区被撤销
+     */
+    private void publishResult(TransferEvent resultEvent, PartitionWindow window, Acknowledgment ack, int attempt) {
+        clearingService.publishResult(resultEvent).whenComplete((result, e) -> {
+            if (e == null) {
+                window.permits.release();
+                if (!window.revoked) {
+                    ack.acknowledge();
+                }
+                return;
+            }
+            if (window.revoked) {
+                window.permits.release();
+                log.warn("分区已撤销，停止重发清算结果，由新的分区所有者重新处理: {}", resultEvent.getTransactionId());
+                return;
+            }
+            resultSendRetries.incrementAndGet();
+            log.error("清算结果发送失败，{}毫秒后第{}次重发: {}", resultRetryBackoffMs, attempt,
+                    resultEvent.getTransactionId(), e);
+            CompletableFuture.delayedExecutor(resultRetryBackoffMs, TimeUnit.MILLISECONDS)
+                    .execute(() -> publishResult(resultEvent, window, ack, attempt + 1));
+        });
+    }
+    
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        assignments.keySet().forEach(partition -> windows.put(partition, new PartitionWindow(windowSize)));
+    }
+    
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            PartitionWindow window = windows.remove(partition);
+            if (window != null) {
+                window.revoked = true;
+            }
+        }
+    }
+    
+    /**
+     * 各分区当前在途的清算笔数
+     */
+    public Map<String, Integer> getInFlight() {
+        Map<String, Integer> inFlight = new ConcurrentHashMap<>();
+        windows.forEach((partition, window) ->
+                inFlight.put(partition.toString(), windowSize - window.permits.availablePermits()));
+        return inFlight;
+    }
+    
+    /**
+     * 清算结果事件重发次数
+     */
+    public long getResultSendRetries() {
+        return resultSendRetries.get();
+    }
+    
+    /**
+     * 分区在途窗口，分区撤销后标记失效：迟到的清算结果不再确认，也不再占用新窗口
+     */
+    private static class PartitionWindow {
+        private final Semaphore permits;
+        private volatile boolean revoked;
         
-        try {
-            clearingService.processClearing(event);
-        } catch (Exception e) {
-            log.error("清算处理异常: {}", event.getTransactionId(), e);
+        PartitionWindow(int windowSize) {
+            this.permits = new Semaphore(windowSize);
         }
     }
-} 
\ No newline at end of file
+}
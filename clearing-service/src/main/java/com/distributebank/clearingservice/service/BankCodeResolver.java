@@ -0,0 +1,59 @@
+package com.distributebank.clearingservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 账户所属银行代码查询
+ * 账户开户后银行代码不会变更，查询结果常驻缓存，未命中的账户用一条IN查询批量加载
+ */
+@Component
+@RequiredArgsConstructor
+public class BankCodeResolver {
+    
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final Map<String, String> bankCodes = new ConcurrentHashMap<>();
+    
+    /**
+     * 查询单个账户的银行代码，账户不存在时返回null
+     */
+    public String bankCodeOf(String accountId) {
+        String bankCode = bankCodes.get(accountId);
+        if (bankCode == null) {
+            load(Set.of(accountId));
+            bankCode = bankCodes.get(accountId);
+        }
+        return bankCode;
+    }
+    
+    /**
+     * 批量预加载，之后bankCodeOf只读缓存
+     */
+    public void preload(Collection<String> accountIds) {
+        Set<String> missing = new HashSet<>();
+        for (String accountId : accountIds) {
+            if (!bankCodes.containsKey(accountId)) {
+                missing.add(accountId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            load(missing);
+        }
+    }
+    
+    private void load(Set<String> accountIds) {
+        jdbcTemplate.query("SELECT account_id, bank_code FROM accounts WHERE account_id IN (:accountIds)",
+                new MapSqlParameterSource("accountIds", accountIds),
+                rs -> {
+                    bankCodes.put(rs.getString("account_id"), rs.getString("bank_code"));
+                });
+    }
+}
\ No newline at end of file
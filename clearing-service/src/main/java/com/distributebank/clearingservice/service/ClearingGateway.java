@@ -0,0 +1,53 @@
+package com.distributebank.clearingservice.service;
+
+import com.distributebank.common.event.TransferEvent;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 清算通道
+ * 向清算机构提交清算请求，立即返回，清算结果到达时完成Future（true-清算成功，false-清算失败）；
+ * 实现不得阻塞调用线程。每个请求都带幂等键（逐笔清算为交易ID，轧差结算为结算ID），
+ * 清算机构对同一幂等键只受理一次，重复提交返回首次受理的结果；结果未知时用inquire按幂等键查询
+ */
+public interface ClearingGateway {
+    
+    /**
+     * 逐笔清算，以交易ID为幂等键
+     */
+    CompletableFuture<Boolean> submit(TransferEvent event);
+    
+    /**
+     * 轧差结算：付款行向收款行划付一个清算窗口内的净额，以settlementId（窗口ID加银行对）为幂等键
+     */
+    CompletableFuture<Boolean> settle(String settlementId, String payerBankCode, String payeeBankCode,
+                                      BigDecimal netAmount, int transferCount);
+    
+    /**
+     * 按幂等键查询请求状态，只查询不提交；bankCode为请求路由到的收款行
+     */
+    CompletableFuture<Status> inquire(String bankCode, String requestId);
+    
+    /**
+     * 查询结果
+     */
+    enum Status {
+        /**
+         * 清算成功
+         */
+        SUCCESS,
+        /**
+         * 清算失败
+         */
+        FAILED,
+        /**
+         * 已受理，处理中
+         */
+        PROCESSING,
+        /**
+         * 清算机构没有收到该请求，可以用同一幂等键重新提交
+         */
+        NOT_FOUND
+    }
+}
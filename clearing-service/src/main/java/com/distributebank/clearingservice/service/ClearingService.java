@@ -3,15 +3,17 @@ package com.distributebank.clearingservice.service;
 import com.distributebank.common.event.TransferEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 清算服务业务逻辑类
- * 模拟银联或SWIFT清算机构，处理跨行转账清算
+ * 模拟银联或SWIFT清算机构，处理跨行转账清算；
+ * 清算请求异步提交到清算通道（开启轧差模式时加入轧差窗口），结果到达时发布清算成功/失败事件
  */
 @Service
 @RequiredArgsConstructor
@@ -19,70 +21,59 @@ import java.util.Random;
 public class ClearingService {
     
     private final KafkaTemplate<String, TransferEvent> kafkaTemplate;
+    private final ClearingGateway clearingGateway;
+    private final ObjectProvider<NettingEngine> nettingEngine;
     
     private static final String TRANSFER_TOPIC = "transfer-events";
-    private static final Random random = new Random();
     
     /**
-     * 处理清算逻辑（供事件处理器调用）
+     * 提交清算（供事件处理器调用），不阻塞调用线程；
+     * 返回的Future在清算结果到达时以待发布的清算成功/失败事件完成，清算异常按失败处理
      */
-    public void processClearing(TransferEvent event) {
+    public CompletableFuture<TransferEvent> processClearing(TransferEvent event) {
         log.info("开始清算处理: {}", event.getTransactionId());
         
+        CompletableFuture<Boolean> clearing;
         try {
-            // 模拟清算处理时间（1-3秒）
-            Thread.sleep(1000 + random.nextInt(2000));
-            
-            // 模拟清算成功率（95%成功，5%失败）
-            boolean clearingSuccess = random.nextDouble() > 0.05;
-            
-            if (clearingSuccess) {
-                // 清算成功
-                TransferEvent successEvent = TransferEvent.builder()
-                        .transactionId(event.getTransactionId())
-                        .fromAccountId(event.getFromAccountId())
-                        .toAccountId(event.getToAccountId())
-                        .amount(event.getAmount())
-                        .fromBalanceAfter(event.getFromBalanceAfter())
-                        .eventType(TransferEvent.EventType.CLEARING_SUCCESS)
-                        .timestamp(LocalDateTime.now())
-                        .build();
-                
-                kafkaTemplate.send(TRANSFER_TOPIC, event.getTransactionId(), successEvent);
+            NettingEngine netting = nettingEngine.getIfAvailable();
+            clearing = netting != null ? netting.add(event) : clearingGateway.submit(event);
+        } catch (Exception e) {
+            clearing = CompletableFuture.failedFuture(e);
+        }
+        
+        return clearing.handle((success, e) -> {
+            if (e != null) {
+                log.error("清算处理异常: {}", event.getTransactionId(), e);
+                success = false;
+            }
+            if (success) {
                 log.info("清算成功: {}", event.getTransactionId());
             } else {
-                // 清算失败
-                TransferEvent failedEvent = TransferEvent.builder()
-                        .transactionId(event.getTransactionId())
-                        .fromAccountId(event.getFromAccountId())
-                        .toAccountId(event.getToAccountId())
-                        .amount(event.getAmount())
-                        .fromBalanceAfter(event.getFromBalanceAfter())
-                        .eventType(TransferEvent.EventType.CLEARING_FAILED)
-                        .timestamp(LocalDateTime.now())
-                        .build();
-                
-                kafkaTemplate.send(TRANSFER_TOPIC, event.getTransactionId(), failedEvent);
                 log.error("清算失败: {}", event.getTransactionId());
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.error("清算处理被中断", e);
-        } catch (Exception e) {
-            log.error("清算处理异常", e);
-            
-            // 发送清算失败事件
-            TransferEvent failedEvent = TransferEvent.builder()
-                    .transactionId(event.getTransactionId())
-                    .fromAccountId(event.getFromAccountId())
-                    .toAccountId(event.getToAccountId())
-                    .amount(event.getAmount())
-                    .fromBalanceAfter(event.getFromBalanceAfter())
-                    .eventType(TransferEvent.EventType.CLEARING_FAILED)
-                    .timestamp(LocalDateTime.now())
-                    .build();
-            
-            kafkaTemplate.send(TRANSFER_TOPIC, event.getTransactionId(), failedEvent);
-        }
+            return resultEvent(event, success
+                    ? TransferEvent.EventType.CLEARING_SUCCESS
+                    : TransferEvent.EventType.CLEARING_FAILED);
+        });
+    }
+    
+    /**
+     * 发布清算结果事件，返回的Future在broker确认后完成；发送失败时由调用方重发，不重新清算
+     */
+    public CompletableFuture<Void> publishResult(TransferEvent resultEvent) {
+        return kafkaTemplate.send(TRANSFER_TOPIC, resultEvent.getTransactionId(), resultEvent)
+                .thenApply(sendResult -> null);
+    }
+    
+    private TransferEvent resultEvent(TransferEvent event, TransferEvent.EventType eventType) {
+        return TransferEvent.builder()
+                .transactionId(event.getTransactionId())
+                .fromAccountId(event.getFromAccountId())
+                .toAccountId(event.getToAccountId())
+                .amount(event.getAmount())
+                .fromBalanceAfter(event.getFromBalanceAfter())
+                .eventType(eventType)
+                .timestamp(LocalDateTime.now())
+                .build();
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.distributebank.clearingservice.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 时延直方图
+ * 固定的对数分桶（1ms到60s，每个数量级3个桶），记录无锁，分位数取所在桶的上界
+ */
+public class LatencyHistogram {
+    
+    private static final long[] BOUNDS_MS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 60000, Long.MAX_VALUE
+    };
+    
+    private final LongAdder[] counts = new LongAdder[BOUNDS_MS.length];
+    private final LongAdder totalMs = new LongAdder();
+    private final AtomicLong maxMs = new AtomicLong();
+    
+    public LatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+    
+    public void record(long latencyMs) {
+        int bucket = 0;
+        while (latencyMs > BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        counts[bucket].increment();
+        totalMs.add(latencyMs);
+        maxMs.accumulateAndGet(latencyMs, Math::max);
+    }
+    
+    /**
+     * 当前快照的统计摘要
+     */
+    public Summary summary() {
+        long[] snapshot = new long[counts.length];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            snapshot[i] = counts[i].sum();
+            count += snapshot[i];
+        }
+        long max = maxMs.get();
+        return new Summary(
+                count,
+                count == 0 ? 0 : (double) totalMs.sum() / count,
+                percentile(snapshot, count, 0.50, max),
+                percentile(snapshot, count, 0.99, max),
+                percentile(snapshot, count, 0.999, max),
+                max
+        );
+    }
+    
+    private long percentile(long[] snapshot, long count, double quantile, long max) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS_MS[i], max);
+            }
+        }
+        return max;
+    }
+    
+    /**
+     * 直方图摘要
+     */
+    public static class Summary {
+        private long count;
+        private double meanMs;
+        private long p50Ms;
+        private long p99Ms;
+        private long p999Ms;
+        private long maxMs;
+        
+        public Summary(long count, double meanMs, long p50Ms, long p99Ms, long p999Ms, long maxMs) {
+            this.count = count;
+            this.meanMs = meanMs;
+            this.p50Ms = p50Ms;
+            this.p99Ms = p99Ms;
+            this.p999Ms = p999Ms;
+            this.maxMs = maxMs;
+        }
+        
+        // getters
+        public long getCount() { return count; }
+        public double getMeanMs() { return meanMs; }
+        public long getP50Ms() { return p50Ms; }
+        public long getP99Ms() { return p99Ms; }
+        public long getP999Ms() { return p999Ms; }
+        public long getMaxMs() { return maxMs; }
+    }
+}
\ No newline at end of file
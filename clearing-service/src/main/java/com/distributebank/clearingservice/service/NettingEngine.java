@@ -0,0 +1,258 @@
+package com.distributebank.clearingservice.service;
+
+import com.distributebank.common.event.TransferEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 轧差清算引擎
+ * 转账按时间或笔数划分清算窗口，窗口关闭时按银行对（bank_code两两组合）计算净额，
+ * 每个银行对只向清算通道提交一笔净额结算（以窗口ID加银行对为幂等键，超时查询和对冲不会重复划付），
+ * 结算结果再回填到窗口内该银行对的每笔转账；
+ * 同行转账无需跨行清算直接成功，双向完全抵消的银行对不提交结算直接成功
+ */
+@Component
+@ConditionalOnProperty(name = "clearing.netting.enabled", havingValue = "true")
+@Slf4j
+public class NettingEngine {
+    
+    private final ClearingGateway clearingGateway;
+    private final BankCodeResolver bankCodeResolver;
+    private final int maxTransfers;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private Window window = new Window();
+    
+    private final AtomicLong windowsClosed = new AtomicLong();
+    private final AtomicLong transfersNetted = new AtomicLong();
+    private final AtomicLong settlementsSubmitted = new AtomicLong();
+    private final AtomicLong transfersOffset = new AtomicLong();
+    
+    public NettingEngine(ClearingGateway clearingGateway, BankCodeResolver bankCodeResolver,
+                         @Value("${clearing.netting.max-transfers:1000}") int maxTransfers) {
+        this.clearingGateway = clearingGateway;
+        this.bankCodeResolver = bankCodeResolver;
+        this.maxTransfers = maxTransfers;
+    }
+    
+    /**
+     * 加入当前清算窗口，返回的Future在所属银行对结算完成后完成
+     */
+    public CompletableFuture<Boolean> add(TransferEvent event) {
+        PendingTransfer pending = new PendingTransfer(event);
+        Window full = null;
+        lock.lock();
+        try {
+            window.transfers.add(pending);
+            if (window.transfers.size() >= maxTransfers) {
+                full = swapWindow();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            settle(full);
+        }
+        return pending.result;
+    }
+    
+    /**
+     * 按时间关闭窗口
+     */
+    @Scheduled(fixedDelayString = "${clearing.netting.window-ms:1000}")
+    public void closeWindow() {
+        Window closed;
+        lock.lock();
+        try {
+            if (window.transfers.isEmpty()) {
+                return;
+            }
+            closed = swapWindow();
+        } finally {
+            lock.unlock();
+        }
+        settle(closed);
+    }
+    
+    private Window swapWindow() {
+        Window closed = window;
+        window = new Window();
+        return closed;
+    }
+    
+    /**
+     * 结算一个已关闭的窗口；结算过程中的任何异常都不能逃逸（定时任务吞掉异常后Future永远不会完成），
+     * 尚未交给清算通道的转账一律异常完成，由调用方按清算失败处理并释放在途窗口名额
+     */
+    private void settle(Window closed) {
+        List<PendingTransfer> transfers = closed.transfers;
+        Throwable cause = null;
+        try {
+            doSettle(closed.id, transfers);
+        } catch (Throwable e) {
+            cause = e;
+            log.error("清算窗口结算异常: 转账{}笔", transfers.size(), e);
+        } finally {
+            Throwable failure = cause != null ? cause : new IllegalStateException("清算窗口结算中断");
+            for (PendingTransfer pending : transfers) {
+                if (!pending.submitted) {
+                    pending.result.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 计算窗口内各银行对的净额并提交结算
+     */
+    private void doSettle(String windowId, List<PendingTransfer> transfers) {
+        windowsClosed.incrementAndGet();
+        transfersNetted.addAndGet(transfers.size());
+        try {
+            List<String> accountIds = new ArrayList<>(transfers.size() * 2);
+            for (PendingTransfer pending : transfers) {
+                accountIds.add(pending.event.getFromAccountId());
+                accountIds.add(pending.event.getToAccountId());
+            }
+            bankCodeResolver.preload(accountIds);
+        } catch (Exception e) {
+            log.error("查询账户银行代码失败，本窗口{}笔清算失败", transfers.size(), e);
+            transfers.forEach(pending -> pending.result.complete(false));
+            return;
+        }
+        
+        // 银行对按字典序较小的一方在前，净额为正表示first向second付款
+        Map<String, BankPair> pairs = new TreeMap<>();
+        for (PendingTransfer pending : transfers) {
+            String fromBank = bankCodeResolver.bankCodeOf(pending.event.getFromAccountId());
+            String toBank = bankCodeResolver.bankCodeOf(pending.event.getToAccountId());
+            if (fromBank == null || toBank == null) {
+                log.error("账户银行代码不存在，清算失败: {}", pending.event.getTransactionId());
+                pending.result.complete(false);
+                continue;
+            }
+            if (fromBank.equals(toBank)) {
+                pending.result.complete(true);
+                continue;
+            }
+            boolean forward = fromBank.compareTo(toBank) < 0;
+            String first = forward ? fromBank : toBank;
+            String second = forward ? toBank : fromBank;
+            BankPair pair = pairs.computeIfAbsent(first + "|" + second, key -> new BankPair(first, second));
+            pair.net = forward ? pair.net.add(pending.event.getAmount()) : pair.net.subtract(pending.event.getAmount());
+            pair.transfers.add(pending);
+        }
+        
+        for (BankPair pair : pairs.values()) {
+            int signum = pair.net.signum();
+            if (signum == 0) {
+                transfersOffset.addAndGet(pair.transfers.size());
+                pair.complete(true);
+                continue;
+            }
+            String payer = signum > 0 ? pair.first : pair.second;
+            String payee = signum > 0 ? pair.second : pair.first;
+            String settlementId = windowId + ":" + payer + "->" + payee;
+            settlementsSubmitted.incrementAndGet();
+            CompletableFuture<Boolean> settlement;
+            try {
+                settlement = clearingGateway.settle(settlementId, payer, payee, pair.net.abs(), pair.transfers.size());
+            } catch (Exception e) {
+                settlement = CompletableFuture.failedFuture(e);
+            }
+            pair.transfers.forEach(pending -> pending.submitted = true);
+            settlement.whenComplete((success, e) -> {
+                if (e != null) {
+                    log.error("轧差结算异常: {} {} -> {}", settlementId, payer, payee, e);
+                }
+                pair.complete(e == null && Boolean.TRUE.equals(success));
+            });
+        }
+        log.info("清算窗口关闭: {} 转账{}笔, 银行对{}个", windowId, transfers.size(), pairs.size());
+    }
+    
+    /**
+     * 获取轧差统计
+     */
+    public NettingStats getStats() {
+        return new NettingStats(
+                windowsClosed.get(),
+                transfersNetted.get(),
+                settlementsSubmitted.get(),
+                transfersOffset.get()
+        );
+    }
+    
+    /**
+     * 清算窗口，ID全局唯一，作为窗口内各笔净额结算幂等键的前缀
+     */
+    private static class Window {
+        private final String id = UUID.randomUUID().toString();
+        private final List<PendingTransfer> transfers = new ArrayList<>();
+    }
+    
+    private static class PendingTransfer {
+        private final TransferEvent event;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        /**
+         * 已交给清算通道，结果由结算回调完成
+         */
+        private boolean submitted;
+        
+        PendingTransfer(TransferEvent event) {
+            this.event = event;
+        }
+    }
+    
+    private static class BankPair {
+        private final String first;
+        private final String second;
+        private BigDecimal net = BigDecimal.ZERO;
+        private final List<PendingTransfer> transfers = new ArrayList<>();
+        
+        BankPair(String first, String second) {
+            this.first = first;
+            this.second = second;
+        }
+        
+        void complete(boolean success) {
+            transfers.forEach(pending -> pending.result.complete(success));
+        }
+    }
+    
+    /**
+     * 轧差统计类
+     */
+    public static class NettingStats {
+        private long windowsClosed;
+        private long transfersNetted;
+        private long settlementsSubmitted;
+        private long transfersOffset;
+        
+        public NettingStats(long windowsClosed, long transfersNetted, long settlementsSubmitted, long transfersOffset) {
+            this.windowsClosed = windowsClosed;
+            this.transfersNetted = transfersNetted;
+            this.settlementsSubmitted = settlementsSubmitted;
+            this.transfersOffset = transfersOffset;
+        }
+        
+        // getters
+        public long getWindowsClosed() { return windowsClosed; }
+        public long getTransfersNetted() { return transfersNetted; }
+        public long getSettlementsSubmitted() { return settlementsSubmitted; }
+        public long getTransfersOffset() { return transfersOffset; }
+    }
+}
\ No newline at end of file
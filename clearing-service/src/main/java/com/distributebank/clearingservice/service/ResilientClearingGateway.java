@@ -0,0 +1,370 @@
+package com.distributebank.clearingservice.service;
+
+import com.distributebank.clearingservice.config.ClearingGatewayProperties;
+import com.distributebank.common.event.TransferEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 带保护的清算通道
+ * 包装实际的清算通道，按收款行隔离：每个银行独立的隔离舱（在途上限）、超时、熔断器和时延直方图，
+ * 可选对冲请求降低长尾时延；被隔离舱或熔断器拒绝（请求未发出）、异常的请求按清算失败返回，不抛异常；
+ * 超时的请求结果未知，按幂等键查询直到得到明确结果，不按失败返回
+ */
+@Slf4j
+public class ResilientClearingGateway implements ClearingGateway {
+    
+    private static final String UNKNOWN_BANK = "UNKNOWN";
+    
+    private final ClearingGateway delegate;
+    private final BankCodeResolver bankCodeResolver;
+    private final ClearingGatewayProperties properties;
+    private final Map<String, BankChannel> channels = new ConcurrentHashMap<>();
+    private final LatencyHistogram overallLatency = new LatencyHistogram();
+    
+    public ResilientClearingGateway(ClearingGateway delegate, BankCodeResolver bankCodeResolver,
+                                    ClearingGatewayProperties properties) {
+        this.delegate = delegate;
+        this.bankCodeResolver = bankCodeResolver;
+        this.properties = properties;
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> submit(TransferEvent event) {
+        String bankCode;
+        try {
+            bankCode = bankCodeResolver.bankCodeOf(event.getToAccountId());
+        } catch (Exception e) {
+            log.error("查询收款行失败: {}", event.getTransactionId(), e);
+            return CompletableFuture.completedFuture(false);
+        }
+        return call(bankCode, event.getTransactionId(), () -> delegate.submit(event));
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> settle(String settlementId, String payerBankCode, String payeeBankCode,
+                                             BigDecimal netAmount, int transferCount) {
+        return call(payeeBankCode, settlementId,
+                () -> delegate.settle(settlementId, payerBankCode, payeeBankCode, netAmount, transferCount));
+    }
+    
+    @Override
+    public CompletableFuture<Status> inquire(String bankCode, String requestId) {
+        return delegate.inquire(bankCode, requestId);
+    }
+    
+    private CompletableFuture<Boolean> call(String bankCode, String requestId,
+                                            Supplier<CompletableFuture<Boolean>> request) {
+        BankChannel channel = channels.computeIfAbsent(bankCode != null ? bankCode : UNKNOWN_BANK,
+                code -> new BankChannel(properties.getBulkheadSize()));
+        if (!channel.bulkhead.tryAcquire()) {
+            channel.rejected.increment();
+            return CompletableFuture.completedFuture(false);
+        }
+        if (!channel.allowRequest()) {
+            channel.bulkhead.release();
+            channel.shortCircuited.increment();
+            return CompletableFuture.completedFuture(false);
+        }
+        
+        Attempt attempt = new Attempt(bankCode, requestId, channel, request);
+        CompletableFuture<Boolean> response = properties.getHedge().isEnabled()
+                ? hedged(channel, request)
+                : invoke(request);
+        awaitOutcome(attempt, response, 0);
+        return attempt.outcome;
+    }
+    
+    /**
+     * 等待清算结果，得到明确结果后释放隔离舱名额；
+     * 超时表示结果未知（请求可能已被清算机构受理），不能按失败处理（失败会触发退款），转入按幂等键查询
+     */
+    private void awaitOutcome(Attempt attempt, CompletableFuture<Boolean> response, int inquiries) {
+        BankChannel channel = attempt.channel;
+        response.orTimeout(properties.getTimeoutMs(), TimeUnit.MILLISECONDS).whenComplete((success, e) -> {
+            if (e != null && unwrap(e) instanceof TimeoutException) {
+                channel.timeouts.increment();
+                channel.onFailure(properties.getCircuitBreaker());
+                log.warn("清算结果未知（{}毫秒未返回），转入查询: {} {}",
+                        properties.getTimeoutMs(), attempt.bankCode, attempt.requestId);
+                scheduleInquiry(attempt, inquiries);
+                return;
+            }
+            if (e != null) {
+                channel.bulkhead.release();
+                channel.errors.increment();
+                log.warn("清算通道调用异常: {}", attempt.bankCode, e);
+                channel.onFailure(properties.getCircuitBreaker());
+                attempt.outcome.complete(false);
+                return;
+            }
+            channel.onSuccess();
+            finish(attempt, Boolean.TRUE.equals(success));
+        });
+    }
+    
+    /**
+     * 按退避间隔查询请求状态：处理中或查询本身超时/异常时继续查询；
+     * 清算机构未收到请求时以同一幂等键重新提交（不会重复受理），直到得到明确的成功或失败
+     */
+    private void scheduleInquiry(Attempt attempt, int inquiries) {
+        long backoff = Math.min(properties.getInquiry().getMaxBackoffMs(),
+                properties.getInquiry().getBackoffMs() << Math.min(inquiries, 10));
+        CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS).execute(() -> {
+            BankChannel channel = attempt.channel;
+            channel.inquiries.increment();
+            CompletableFuture<Status> answer;
+            try {
+                answer = delegate.inquire(attempt.bankCode, attempt.requestId);
+            } catch (Exception e) {
+                answer = CompletableFuture.failedFuture(e);
+            }
+            answer.orTimeout(properties.getTimeoutMs(), TimeUnit.MILLISECONDS).whenComplete((status, e) -> {
+                if (e != null || status == null || status == Status.PROCESSING) {
+                    if (e != null) {
+                        log.warn("清算结果查询失败，稍后重试: {} {}", attempt.bankCode, attempt.requestId, e);
+                    }
+                    scheduleInquiry(attempt, inquiries + 1);
+                } else if (status == Status.NOT_FOUND) {
+                    channel.resubmissions.increment();
+                    log.warn("清算机构未收到请求，以同一幂等键重新提交: {} {}", attempt.bankCode, attempt.requestId);
+                    awaitOutcome(attempt, invoke(attempt.request), inquiries + 1);
+                } else {
+                    finish(attempt, status == Status.SUCCESS);
+                }
+            });
+        });
+    }
+    
+    private void finish(Attempt attempt, boolean success) {
+        attempt.channel.bulkhead.release();
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - attempt.start);
+        attempt.channel.latency.record(latencyMs);
+        overallLatency.record(latencyMs);
+        attempt.outcome.complete(success);
+    }
+    
+    /**
+     * 对冲请求：首个请求超过delayMs未返回且隔离舱有余量时以同一幂等键再发一次（清算机构只受理一次），
+     * 先返回者为准，全部异常才异常
+     */
+    private CompletableFuture<Boolean> hedged(BankChannel channel, Supplier<CompletableFuture<Boolean>> request) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        invoke(request).whenComplete((success, e) -> completeAttempt(result, outstanding, success, e));
+        
+        CompletableFuture.delayedExecutor(properties.getHedge().getDelayMs(), TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.isDone() || !channel.bulkhead.tryAcquire()) {
+                return;
+            }
+            channel.hedges.increment();
+            outstanding.incrementAndGet();
+            invoke(request).whenComplete((success, e) -> {
+                channel.bulkhead.release();
+                completeAttempt(result, outstanding, success, e);
+            });
+        });
+        return result;
+    }
+    
+    private void completeAttempt(CompletableFuture<Boolean> result, AtomicInteger outstanding, Boolean success,
+                                 Throwable e) {
+        boolean last = outstanding.decrementAndGet() == 0;
+        if (e == null) {
+            result.complete(success);
+        } else if (last) {
+            result.completeExceptionally(e);
+        }
+    }
+    
+    private CompletableFuture<Boolean> invoke(Supplier<CompletableFuture<Boolean>> request) {
+        try {
+            return request.get();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    private Throwable unwrap(Throwable e) {
+        return e.getCause() != null && e instanceof CompletionException ? e.getCause() : e;
+    }
+    
+    /**
+     * 获取各银行通道统计
+     */
+    public GatewayStats getStats() {
+        Map<String, ChannelStats> banks = new TreeMap<>();
+        channels.forEach((bankCode, channel) -> banks.put(bankCode, new ChannelStats(
+                channel.state(),
+                properties.getBulkheadSize() - channel.bulkhead.availablePermits(),
+                channel.rejected.sum(),
+                channel.shortCircuited.sum(),
+                channel.timeouts.sum(),
+                channel.errors.sum(),
+                channel.hedges.sum(),
+                channel.inquiries.sum(),
+                channel.resubmissions.sum(),
+                channel.latency.summary()
+        )));
+        return new GatewayStats(overallLatency.summary(), banks);
+    }
+    
+    /**
+     * 一次带保护的调用：结果未知期间保持隔离舱名额，得到明确结果后完成outcome
+     */
+    private static class Attempt {
+        private final String bankCode;
+        private final String requestId;
+        private final BankChannel channel;
+        private final Supplier<CompletableFuture<Boolean>> request;
+        private final long start = System.nanoTime();
+        private final CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+        
+        Attempt(String bankCode, String requestId, BankChannel channel, Supplier<CompletableFuture<Boolean>> request) {
+            this.bankCode = bankCode;
+            this.requestId = requestId;
+            this.channel = channel;
+            this.request = request;
+        }
+    }
+    
+    /**
+     * 单个银行的通道状态
+     */
+    private static class BankChannel {
+        private final Semaphore bulkhead;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder shortCircuited = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder inquiries = new LongAdder();
+        private final LongAdder resubmissions = new LongAdder();
+        
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicBoolean probeInFlight = new AtomicBoolean();
+        
+        /**
+         * 熔断截止时间，0表示闭合；过了截止时间为半开，只放行一个探测请求
+         */
+        private volatile long openUntil;
+        
+        BankChannel(int bulkheadSize) {
+            this.bulkhead = new Semaphore(bulkheadSize);
+        }
+        
+        boolean allowRequest() {
+            long until = openUntil;
+            if (until == 0) {
+                return true;
+            }
+            if (System.currentTimeMillis() < until) {
+                return false;
+            }
+            return probeInFlight.compareAndSet(false, true);
+        }
+        
+        void onSuccess() {
+            consecutiveFailures.set(0);
+            if (openUntil != 0) {
+                openUntil = 0;
+                probeInFlight.set(false);
+            }
+        }
+        
+        void onFailure(ClearingGatewayProperties.CircuitBreaker config) {
+            if (openUntil != 0) {
+                // 半开探测失败，重新熔断
+                openUntil = System.currentTimeMillis() + config.getOpenMs();
+                probeInFlight.set(false);
+                return;
+            }
+            if (consecutiveFailures.incrementAndGet() >= config.getFailureThreshold()) {
+                consecutiveFailures.set(0);
+                openUntil = System.currentTimeMillis() + config.getOpenMs();
+            }
+        }
+        
+        String state() {
+            long until = openUntil;
+            if (until == 0) {
+                return "CLOSED";
+            }
+            return System.currentTimeMillis() < until ? "OPEN" : "HALF_OPEN";
+        }
+    }
+    
+    /**
+     * 清算通道统计类
+     */
+    public static class GatewayStats {
+        private LatencyHistogram.Summary overallLatency;
+        private Map<String, ChannelStats> banks;
+        
+        public GatewayStats(LatencyHistogram.Summary overallLatency, Map<String, ChannelStats> banks) {
+            this.overallLatency = overallLatency;
+            this.banks = banks;
+        }
+        
+        // getters
+        public LatencyHistogram.Summary getOverallLatency() { return overallLatency; }
+        public Map<String, ChannelStats> getBanks() { return banks; }
+    }
+    
+    /**
+     * 单个银行通道统计类
+     */
+    public static class ChannelStats {
+        private String circuitState;
+        private int inFlight;
+        private long rejected;
+        private long shortCircuited;
+        private long timeouts;
+        private long errors;
+        private long hedges;
+        private long inquiries;
+        private long resubmissions;
+        private LatencyHistogram.Summary latency;
+        
+        public ChannelStats(String circuitState, int inFlight, long rejected, long shortCircuited, long timeouts,
+                            long errors, long hedges, long inquiries, long resubmissions,
+                            LatencyHistogram.Summary latency) {
+            this.circuitState = circuitState;
+            this.inFlight = inFlight;
+            this.rejected = rejected;
+            this.shortCircuited = shortCircuited;
+            this.timeouts = timeouts;
+            this.errors = errors;
+            this.hedges = hedges;
+            this.inquiries = inquiries;
+            this.resubmissions = resubmissions;
+            this.latency = latency;
+        }
+        
+        // getters
+        public String getCircuitState() { return circuitState; }
+        public int getInFlight() { return inFlight; }
+        public long getRejected() { return rejected; }
+        public long getShortCircuited() { return shortCircuited; }
+        public long getTimeouts() { return timeouts; }
+        public long getErrors() { return errors; }
+        public long getHedges() { return hedges; }
+        public long getInquiries() { return inquiries; }
+        public long getResubmissions() { return resubmissions; }
+        public LatencyHistogram.Summary getLatency() { return latency; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.distributebank.clearingservice.service;
+
+import com.distributebank.clearingservice.config.ClearingGatewayProperties;
+import com.distributebank.common.event.TransferEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟清算通道
+ * 模拟银联或SWIFT清算机构：按收款行的配置生成时延（均匀或对数正态分布，叠加长尾毛刺）、
+ * 清算失败和无响应，请求提交后由定时器在时延到达时完成，不占用调用线程。
+ * 按幂等键记录已受理的请求：重复提交返回首次受理的结果，不重新决定成败；
+ * 无响应分为请求丢失（未受理，查询返回NOT_FOUND）和应答丢失（已受理，结果照常产生，只能查询得到）
+ */
+@Slf4j
+public class SimulatedClearingGateway implements ClearingGateway {
+    
+    private final ClearingGatewayProperties.Simulator simulator;
+    private final BankCodeResolver bankCodeResolver;
+    
+    /**
+     * 幂等键 -> 已受理请求的结果，结果产生后保留recordRetentionMs
+     */
+    private final Map<String, CompletableFuture<Boolean>> accepted = new ConcurrentHashMap<>();
+    
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "clearing-gateway-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public SimulatedClearingGateway(ClearingGatewayProperties.Simulator simulator, BankCodeResolver bankCodeResolver) {
+        this.simulator = simulator;
+        this.bankCodeResolver = bankCodeResolver;
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> submit(TransferEvent event) {
+        return simulate(event.getTransactionId(), simulator.profileOf(bankCodeResolver.bankCodeOf(event.getToAccountId())));
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> settle(String settlementId, String payerBankCode, String payeeBankCode,
+                                             BigDecimal netAmount, int transferCount) {
+        log.debug("提交轧差结算: {} {} -> {} 净额{} 涉及{}笔", settlementId, payerBankCode, payeeBankCode,
+                netAmount, transferCount);
+        return simulate(settlementId, simulator.profileOf(payeeBankCode));
+    }
+    
+    @Override
+    public CompletableFuture<Status> inquire(String bankCode, String requestId) {
+        ClearingGatewayProperties.BankProfile profile = simulator.profileOf(bankCode);
+        CompletableFuture<Status> answer = new CompletableFuture<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < profile.getTimeoutRate()) {
+            // 查询本身也可能丢失，由调用方超时后再次查询
+            return answer;
+        }
+        timer.schedule(() -> {
+            CompletableFuture<Boolean> result = accepted.get(requestId);
+            if (result == null) {
+                answer.complete(Status.NOT_FOUND);
+            } else if (!result.isDone()) {
+                answer.complete(Status.PROCESSING);
+            } else {
+                answer.complete(result.join() ? Status.SUCCESS : Status.FAILED);
+            }
+        }, latencyOf(profile, random), TimeUnit.MILLISECONDS);
+        return answer;
+    }
+    
+    private CompletableFuture<Boolean> simulate(String requestId, ClearingGatewayProperties.BankProfile profile) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < profile.getTimeoutRate() / 2) {
+            // 请求丢失，未受理，永不完成，由调用方超时后查询
+            return new CompletableFuture<>();
+        }
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = accepted.putIfAbsent(requestId, created);
+        if (existing != null) {
+            // 重复提交：返回首次受理的结果
+            return existing.copy();
+        }
+        boolean success = random.nextDouble() >= profile.getFailureRate();
+        timer.schedule(() -> {
+            created.complete(success);
+            timer.schedule(() -> accepted.remove(requestId, created),
+                    simulator.getRecordRetentionMs(), TimeUnit.MILLISECONDS);
+        }, latencyOf(profile, random), TimeUnit.MILLISECONDS);
+        if (random.nextDouble() < profile.getTimeoutRate() / 2) {
+            // 应答丢失：已受理，结果只能查询得到
+            return new CompletableFuture<>();
+        }
+        return created.copy();
+    }
+    
+    private long latencyOf(ClearingGatewayProperties.BankProfile profile, ThreadLocalRandom random) {
+        long latency;
+        if ("lognormal".equalsIgnoreCase(profile.getDistribution())) {
+            latency = Math.round(profile.getMedianLatencyMs() * Math.exp(profile.getSigma() * random.nextGaussian()));
+        } else {
+            long span = Math.max(1, profile.getMaxLatencyMs() - profile.getMinLatencyMs());
+            latency = profile.getMinLatencyMs() + random.nextLong(span);
+        }
+        if (random.nextDouble() < profile.getSpikeRate()) {
+            latency += profile.getSpikeLatencyMs();
+        }
+        return Math.max(0, latency);
+    }
+    
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
\ No newline at end of file
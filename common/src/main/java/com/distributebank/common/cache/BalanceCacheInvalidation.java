@@ -0,0 +1,56 @@
+package com.distributebank.common.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 余额缓存失效广播协议
+ * 任何服务修改了account:balance-minor:键后，都通过该Redis频道通知account-service各实例清理本地近端缓存
+ * 消息格式：来源实例ID|账户ID[,账户ID...]
+ */
+public final class BalanceCacheInvalidation {
+    
+    /**
+     * 失效广播频道
+     */
+    public static final String CHANNEL = "account:balance:invalidate";
+    
+    private static final char SEPARATOR = '|';
+    
+    private static final String ACCOUNT_SEPARATOR = ",";
+    
+    private BalanceCacheInvalidation() {
+    }
+    
+    /**
+     * 编码失效消息
+     */
+    public static String encode(String origin, String accountId) {
+        return origin + SEPARATOR + accountId;
+    }
+    
+    /**
+     * 编码批量失效消息，一条消息携带多个账户
+     */
+    public static String encode(String origin, Collection<String> accountIds) {
+        return origin + SEPARATOR + String.join(ACCOUNT_SEPARATOR, accountIds);
+    }
+    
+    /**
+     * 解析来源实例ID，旧格式消息返回空字符串
+     */
+    public static String originOf(String message) {
+        int index = message.indexOf(SEPARATOR);
+        return index < 0 ? "" : message.substring(0, index);
+    }
+    
+    /**
+     * 解析账户ID列表
+     */
+    public static List<String> accountIdsOf(String message) {
+        int index = message.indexOf(SEPARATOR);
+        String accountIds = index < 0 ? message : message.substring(index + 1);
+        return Arrays.asList(accountIds.split(ACCOUNT_SEPARATOR));
+    }
+}
\ No newline at end of file
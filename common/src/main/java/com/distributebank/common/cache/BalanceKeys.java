@@ -0,0 +1,43 @@
+package com.distributebank.common.cache;
+
+/**
+ * 账户余额的Redis键约定
+ * account:balance-minor:{accountId} 保存以分为单位的整数余额（MoneyCodec编码）；
+ * 旧版本的十进制余额字符串保存在 account:balance:{accountId}，只由格式迁移读取。
+ * 两种格式用不同的键前缀区分，读取方不根据值的内容推断格式；
+ * account:balance-version:{accountId} 保存余额键对应的版本号，与余额键同一TTL
+ */
+public final class BalanceKeys {
+    
+    /**
+     * 分值整数余额键前缀
+     */
+    public static final String PREFIX = "account:balance-minor:";
+    
+    /**
+     * 旧格式（十进制字符串）余额键前缀
+     */
+    public static final String LEGACY_PREFIX = "account:balance:";
+    
+    /**
+     * 余额版本号键前缀
+     */
+    public static final String VERSION_PREFIX = "account:balance-version:";
+    
+    private BalanceKeys() {
+    }
+    
+    /**
+     * 账户余额键
+     */
+    public static String balanceKey(String accountId) {
+        return PREFIX + accountId;
+    }
+    
+    /**
+     * 账户余额版本号键
+     */
+    public static String versionKey(String accountId) {
+        return VERSION_PREFIX + accountId;
+    }
+}
@@ -0,0 +1,49 @@
+package com.distributebank.common.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 热点账户分片余额的Redis键约定
+ * account:shards:{accountId} 保存分片数，存在即表示该账户已开启热点模式；
+ * account:balance:{accountId}:shard:{n} 保存第n个分片的余额（分值整数）；
+ * 开启热点模式提交后向 account:shards:changed 频道发布账户ID，各实例据此失效本地分片数缓存
+ */
+public final class BalanceShardKeys {
+    
+    /**
+     * 热点模式变更通知频道，消息体为账户ID
+     */
+    public static final String CHANNEL = "account:shards:changed";
+    
+    private static final String SHARD_COUNT_PREFIX = "account:shards:";
+    private static final String ACCOUNT_BALANCE_PREFIX = "account:balance:";
+    
+    private BalanceShardKeys() {
+    }
+    
+    /**
+     * 分片数标记键
+     */
+    public static String shardCountKey(String accountId) {
+        return SHARD_COUNT_PREFIX + accountId;
+    }
+    
+    /**
+     * 分片余额键
+     */
+    public static String shardKey(String accountId, int shardNo) {
+        return ACCOUNT_BALANCE_PREFIX + accountId + ":shard:" + shardNo;
+    }
+    
+    /**
+     * 全部分片余额键，按分片序号排列
+     */
+    public static List<String> shardKeys(String accountId, int shardCount) {
+        List<String> keys = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            keys.add(shardKey(accountId, i));
+        }
+        return keys;
+    }
+}
\ No newline at end of file
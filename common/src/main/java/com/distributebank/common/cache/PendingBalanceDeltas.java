@@ -0,0 +1,140 @@
+package com.distributebank.common.cache;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis侧尚未落库的余额变动标记
+ * account-service在Redis中扣款/退回后，账户数据库行要等账本（或余额变动日志回写器）入账后才反映这笔变动，
+ * 期间账本发布的余额变更事件（例如一笔收款）携带的数据库余额不含这笔变动，按版本写入会覆盖掉Redis中的扣款。
+ * account:balance-pending:{accountId} 是一个哈希，字段为交易ID（退回为 r:交易ID），值为分值变动；
+ * 哈希非空时版本化写入不覆盖余额，只在 account:balance-stale:{accountId} 留下"有事件被推迟"标记。
+ * 数据库入账的一方提交后清除对应字段，哈希清空且有推迟标记时删除余额键和版本键，下次读取按数据库版本重新加载。
+ * 标记与数据库行版本号互不相关，Redis侧变动不改动版本号
+ */
+public final class PendingBalanceDeltas {
+    
+    private static final String PENDING_PREFIX = "account:balance-pending:";
+    private static final String STALE_PREFIX = "account:balance-stale:";
+    
+    /**
+     * 退回变动的字段前缀（只在余额变动日志模式下登记，与扣款字段分别由回写器清除）
+     */
+    public static final String REFUND_FIELD_PREFIX = "r:";
+    
+    /**
+     * 标记过期秒数：数据库入账方在提交后、清除前崩溃时，最长在该时长后恢复版本化写入
+     */
+    public static final long TTL_SECONDS = 3600;
+    
+    // 供扣款/退回脚本拼接的Lua函数
+    // pending_add：登记一笔未落库的变动并刷新过期时间
+    // pending_settle：清除一笔变动，哈希清空且有推迟标记时删除余额键和版本键，返回1表示已删除
+    public static final String LUA_FUNCTIONS =
+        "local function pending_add(pendingKey, field, delta)\n" +
+        "    redis.call('HSET', pendingKey, field, delta)\n" +
+        "    redis.call('EXPIRE', pendingKey, " + TTL_SECONDS + ")\n" +
+        "end\n" +
+        "local function pending_settle(pendingKey, field, balanceKey, versionKey, staleKey)\n" +
+        "    redis.call('HDEL', pendingKey, field)\n" +
+        "    if redis.call('EXISTS', pendingKey) == 0 and redis.call('DEL', staleKey) == 1 then\n" +
+        "        redis.call('DEL', balanceKey, versionKey)\n" +
+        "        return 1\n" +
+        "    end\n" +
+        "    return 0\n" +
+        "end\n";
+    
+    // KEYS按(余额key, 版本key, 未落库标记key, 推迟标记key)四个一组，ARGV按账户依次为(字段数, 字段1, 字段2, ...)
+    // 返回每个账户是否删除了余额键：1-已删除，0-保留
+    private static final String SETTLE_SCRIPT = LUA_FUNCTIONS +
+        "local results = {}\n" +
+        "local arg = 1\n" +
+        "for i = 1, #KEYS / 4 do\n" +
+        "    local dropped = 0\n" +
+        "    local count = tonumber(ARGV[arg])\n" +
+        "    for j = 1, count do\n" +
+        "        if pending_settle(KEYS[i * 4 - 1], ARGV[arg + j], KEYS[i * 4 - 3], KEYS[i * 4 - 2], KEYS[i * 4]) == 1 then\n" +
+        "            dropped = 1\n" +
+        "        end\n" +
+        "    end\n" +
+        "    arg = arg + count + 1\n" +
+        "    results[i] = dropped\n" +
+        "end\n" +
+        "return results";
+    
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> SETTLE = new DefaultRedisScript<>(SETTLE_SCRIPT, List.class);
+    
+    private PendingBalanceDeltas() {
+    }
+    
+    /**
+     * 未落库变动标记键
+     */
+    public static String pendingKey(String accountId) {
+        return PENDING_PREFIX + accountId;
+    }
+    
+    /**
+     * 推迟写入标记键
+     */
+    public static String staleKey(String accountId) {
+        return STALE_PREFIX + accountId;
+    }
+    
+    /**
+     * 退回变动的字段名
+     */
+    public static String refundField(String transactionId) {
+        return REFUND_FIELD_PREFIX + transactionId;
+    }
+    
+    /**
+     * 追加退回脚本需要的(未落库标记key, 版本key, 推迟标记key)
+     */
+    public static void appendRefundKeys(List<String> keys, String accountId) {
+        keys.add(pendingKey(accountId));
+        keys.add(BalanceKeys.versionKey(accountId));
+        keys.add(staleKey(accountId));
+    }
+    
+    /**
+     * 数据库入账提交后清除对应的未落库变动（账户ID -> 字段列表），可重复调用；
+     * 删除了余额键的账户通过失效频道通知各实例清理近端缓存，返回这些账户
+     */
+    public static List<String> settle(RedisTemplate<String, String> redisTemplate,
+                                      Map<String, List<String>> fieldsByAccount, String origin) {
+        if (fieldsByAccount.isEmpty()) {
+            return List.of();
+        }
+        List<String> accountIds = new ArrayList<>(fieldsByAccount.keySet());
+        List<String> keys = new ArrayList<>(accountIds.size() * 4);
+        List<Object> args = new ArrayList<>();
+        for (String accountId : accountIds) {
+            List<String> fields = fieldsByAccount.get(accountId);
+            keys.add(BalanceKeys.balanceKey(accountId));
+            keys.add(BalanceKeys.versionKey(accountId));
+            keys.add(pendingKey(accountId));
+            keys.add(staleKey(accountId));
+            args.add(Integer.toString(fields.size()));
+            args.addAll(fields);
+        }
+    
+        List<?> results = redisTemplate.execute(SETTLE, keys, args.toArray());
+        List<String> dropped = new ArrayList<>();
+        for (int i = 0; i < accountIds.size(); i++) {
+            if (results != null && ((Number) results.get(i)).longValue() == 1) {
+                dropped.add(accountIds.get(i));
+            }
+        }
+        if (!dropped.isEmpty()) {
+            redisTemplate.convertAndSend(BalanceCacheInvalidation.CHANNEL,
+                    BalanceCacheInvalidation.encode(origin, dropped));
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,42 @@
+package com.distributebank.common.cache;
+
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 源账户数据库扣款的执行方
+ * ledger-service（ledger.source-debit.enabled=true）和account-service余额变动日志回写（account.journal.enabled=true）
+ * 只能开启其中一个，否则源账户被扣两次或一次都不扣。两个服务启动时都向同一个Redis键声明自己期望的执行方，
+ * 与已声明的值不一致时启动失败；切换模式时先停止两个服务并删除该键
+ */
+public final class SourceDebitMode {
+    
+    public static final String KEY = "ledger:source-debit-mode";
+    
+    /**
+     * 账本在清算成功后扣减accounts.balance
+     */
+    public static final String LEDGER = "ledger";
+    
+    /**
+     * account-service扣款时写入变动日志，由回写器扣减accounts.balance
+     */
+    public static final String ACCOUNT_JOURNAL = "account-journal";
+    
+    private SourceDebitMode() {
+    }
+    
+    /**
+     * 声明本服务期望的执行方，与另一服务已声明的不一致时抛出异常
+     */
+    public static void verify(RedisTemplate<String, String> redisTemplate, String expected, String service) {
+        if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(KEY, expected))) {
+            return;
+        }
+        String declared = redisTemplate.opsForValue().get(KEY);
+        if (!expected.equals(declared)) {
+            throw new RuntimeException(service + "的源账户扣款配置(" + expected + ")与已声明的(" + declared
+                    + ")不一致：account.journal.enabled=true时ledger.source-debit.enabled必须为false，反之亦然；"
+                    + "确认两个服务配置一致后删除Redis键" + KEY + "再启动");
+        }
+    }
+}
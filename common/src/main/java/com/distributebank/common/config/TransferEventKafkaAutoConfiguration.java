@@ -0,0 +1,81 @@
+package com.distributebank.common.config;
+
+import com.distributebank.common.kafka.TransferEventHeaderInterceptor;
+import com.distributebank.common.kafka.TransferEventTopics;
+import com.distributebank.common.kafka.TransferEventTypeFilteringDeserializer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaConsumerFactoryCustomizer;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 转账事件Kafka自动配置
+ * 生产者统一写入事件类型/结构版本消息头，消费者先看消息头再决定是否反序列化，
+ * 被跳过的记录（值为null）由过滤策略丢弃，不进入监听器
+ */
+@AutoConfiguration
+@ConditionalOnClass(KafkaTemplate.class)
+public class TransferEventKafkaAutoConfiguration {
+    
+    @Bean
+    public TransferEventTopics transferEventTopics(
+            @Value("${transfer.events.split-by-type:false}") boolean splitByType) {
+        return new TransferEventTopics(splitByType);
+    }
+    
+    @Bean
+    public DefaultKafkaProducerFactoryCustomizer transferEventHeaderProducerCustomizer(TransferEventTopics topics) {
+        return factory -> {
+            List<Object> interceptors = new ArrayList<>();
+            Object existing = factory.getConfigurationProperties().get(ProducerConfig.INTERCEPTOR_CLASSES_CONFIG);
+            if (existing instanceof Collection<?> configured) {
+                interceptors.addAll(configured);
+            } else if (existing != null && !existing.toString().isBlank()) {
+                interceptors.add(existing);
+            }
+            interceptors.add(TransferEventHeaderInterceptor.class);
+            
+            Map<String, Object> updates = new HashMap<>();
+            updates.put(ProducerConfig.INTERCEPTOR_CLASSES_CONFIG, interceptors);
+            updates.put(TransferEventHeaderInterceptor.SPLIT_BY_TYPE_CONFIG, topics.isSplitByType());
+            factory.updateConfigs(updates);
+        };
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "transfer.events.header-filter.enabled", havingValue = "true", matchIfMissing = true)
+    public DefaultKafkaConsumerFactoryCustomizer transferEventHeaderFilterConsumerCustomizer() {
+        return factory -> {
+            Object delegate = factory.getConfigurationProperties().get(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG);
+            if (factory.getValueDeserializer() != null || delegate == null
+                    || TransferEventTypeFilteringDeserializer.class.equals(delegate)) {
+                return;
+            }
+            factory.updateConfigs(Map.of(
+                    ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, TransferEventTypeFilteringDeserializer.class,
+                    TransferEventTypeFilteringDeserializer.DELEGATE_CONFIG, delegate));
+        };
+    }
+    
+    /**
+     * 丢弃反序列化阶段被跳过的记录；需要手动确认的容器要同时开启ackDiscarded
+     */
+    @Bean
+    @ConditionalOnProperty(name = "transfer.events.header-filter.enabled", havingValue = "true", matchIfMissing = true)
+    public RecordFilterStrategy<Object, Object> skippedTransferEventFilter() {
+        return record -> record.value() == null;
+    }
+}
\ No newline at end of file
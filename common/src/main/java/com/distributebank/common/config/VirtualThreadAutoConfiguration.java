@@ -0,0 +1,24 @@
+package com.distributebank.common.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * 虚拟线程执行模式自动配置
+ * 开启 spring.threads.virtual.enabled 时（virtual-threads profile）为各服务注册虚拟线程固定监控
+ */
+@AutoConfiguration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadAutoConfiguration {
+    
+    @Bean
+    @ConditionalOnProperty(name = "virtual-threads.pinning.enabled", havingValue = "true", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${virtual-threads.pinning.threshold-ms:20}") long thresholdMs) {
+        return new VirtualThreadPinningMonitor(thresholdMs);
+    }
+}
\ No newline at end of file
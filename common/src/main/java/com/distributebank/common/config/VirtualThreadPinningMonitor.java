@@ -0,0 +1,84 @@
+package com.distributebank.common.config;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 虚拟线程固定监控
+ * 进程内订阅JFR的jdk.VirtualThreadPinned事件：虚拟线程在synchronized块或本地方法中阻塞时无法卸载，
+ * 会占住载体线程，超过阈值的事件记录告警日志和栈顶调用，用于定位需要改为ReentrantLock的同步块。
+ * 与JVM参数 -Djdk.tracePinnedThreads=short 互补，后者只输出到标准输出
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+    
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+    
+    private final long thresholdMs;
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private volatile RecordingStream stream;
+    
+    public VirtualThreadPinningMonitor(long thresholdMs) {
+        this.thresholdMs = thresholdMs;
+    }
+    
+    @Override
+    public void start() {
+        RecordingStream recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::onPinned);
+        recording.startAsync();
+        stream = recording;
+        log.info("虚拟线程固定监控已启动，阈值{}ms", thresholdMs);
+    }
+    
+    private void onPinned(RecordedEvent event) {
+        pinnedCount.incrementAndGet();
+        log.warn("虚拟线程被固定{}ms，线程{}:\n{}", event.getDuration().toMillis(),
+                event.getThread() != null ? event.getThread().getJavaName() : "unknown",
+                formatStack(event.getStackTrace()));
+    }
+    
+    private String formatStack(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "    (无调用栈)";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        return frames.stream()
+                .limit(LOGGED_FRAMES)
+                .map(frame -> "    at " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+    
+    @Override
+    public void stop() {
+        RecordingStream recording = stream;
+        if (recording != null) {
+            recording.close();
+            stream = null;
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return stream != null;
+    }
+    
+    /**
+     * 启动以来记录到的固定事件数
+     */
+    public long getPinnedCount() {
+        return pinnedCount.get();
+    }
+}
\ No newline at end of file
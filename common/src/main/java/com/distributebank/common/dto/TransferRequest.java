@@ -8,6 +8,7 @@ import lombok.Builder;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import java.math.BigDecimal;
 
 /**
@@ -37,6 +38,7 @@ public class TransferRequest {
      */
     @NotNull(message = "转账金额不能为空")
     @DecimalMin(value = "0.01", message = "转账金额必须大于0")
+    @Digits(integer = 17, fraction = 2, message = "转账金额最多两位小数")
     private BigDecimal amount;
     
     /**
@@ -0,0 +1,45 @@
+package com.distributebank.common.event;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.math.BigDecimal;
+
+/**
+ * 余额变更事件
+ * 数据库余额提交后发布，携带新余额和账户行版本号，account-service按版本号比较后写入Redis，
+ * 只接受比缓存更新的版本，代替删除缓存后回源加载
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceChangedEvent {
+    
+    /**
+     * 余额变更事件主题，按账户ID作为消息键保证同一账户有序
+     */
+    public static final String TOPIC = "balance-changed-events";
+    
+    /**
+     * 账户ID
+     */
+    private String accountId;
+    
+    /**
+     * 变更后的数据库余额
+     */
+    private BigDecimal balance;
+    
+    /**
+     * 账户行版本号（accounts.version）
+     */
+    private Long version;
+    
+    /**
+     * 发布方服务名
+     */
+    private String source;
+}
\ No newline at end of file
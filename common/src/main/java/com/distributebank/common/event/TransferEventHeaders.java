@@ -0,0 +1,52 @@
+package com.distributebank.common.event;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 转账事件消息头
+ * 生产者把事件类型和结构版本写入Kafka消息头，消费者不用反序列化消息体就能判断是否需要处理
+ */
+public final class TransferEventHeaders {
+    
+    /**
+     * 事件类型消息头，值为EventType枚举名
+     */
+    public static final String EVENT_TYPE = "x-event-type";
+    
+    /**
+     * 事件结构版本消息头
+     */
+    public static final String SCHEMA_VERSION = "x-schema-version";
+    
+    /**
+     * 当前事件结构版本
+     */
+    public static final int CURRENT_SCHEMA_VERSION = 1;
+    
+    private TransferEventHeaders() {
+    }
+    
+    /**
+     * 写入事件类型和结构版本（覆盖已有值）
+     */
+    public static void stamp(Headers headers, TransferEvent.EventType eventType) {
+        headers.remove(EVENT_TYPE);
+        headers.remove(SCHEMA_VERSION);
+        headers.add(EVENT_TYPE, eventType.name().getBytes(StandardCharsets.UTF_8));
+        headers.add(SCHEMA_VERSION, String.valueOf(CURRENT_SCHEMA_VERSION).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * 读取事件类型，没有该消息头（旧消息）时返回null
+     */
+    public static String eventTypeOf(Headers headers) {
+        if (headers == null) {
+            return null;
+        }
+        Header header = headers.lastHeader(EVENT_TYPE);
+        return header != null && header.value() != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+}
\ No newline at end of file
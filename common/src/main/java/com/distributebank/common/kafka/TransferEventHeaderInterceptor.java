@@ -0,0 +1,50 @@
+package com.distributebank.common.kafka;
+
+import com.distributebank.common.event.TransferEvent;
+import com.distributebank.common.event.TransferEventHeaders;
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.Map;
+
+/**
+ * 转账事件生产者拦截器
+ * 发送前为TransferEvent写入事件类型和结构版本消息头；开启按类型拆分时把 transfer-events 上的事件改投到对应类型的主题
+ */
+public class TransferEventHeaderInterceptor implements ProducerInterceptor<Object, Object> {
+    
+    /**
+     * 是否按事件类型拆分主题（生产者配置项）
+     */
+    public static final String SPLIT_BY_TYPE_CONFIG = "transfer.events.split-by-type";
+    
+    private boolean splitByType;
+    
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object value = configs.get(SPLIT_BY_TYPE_CONFIG);
+        splitByType = value != null && Boolean.parseBoolean(value.toString());
+    }
+    
+    @Override
+    public ProducerRecord<Object, Object> onSend(ProducerRecord<Object, Object> record) {
+        if (!(record.value() instanceof TransferEvent event) || event.getEventType() == null) {
+            return record;
+        }
+        TransferEventHeaders.stamp(record.headers(), event.getEventType());
+        if (splitByType && TransferEventTopics.BASE_TOPIC.equals(record.topic())) {
+            return new ProducerRecord<>(TransferEventTopics.topicOf(event.getEventType()), record.partition(),
+                    record.timestamp(), record.key(), record.value(), record.headers());
+        }
+        return record;
+    }
+    
+    @Override
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+    }
+    
+    @Override
+    public void close() {
+    }
+}
\ No newline at end of file
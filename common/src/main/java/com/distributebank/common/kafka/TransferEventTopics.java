@@ -0,0 +1,57 @@
+package com.distributebank.common.kafka;
+
+import com.distributebank.common.event.TransferEvent;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 转账事件主题路由
+ * 默认所有事件共用 transfer-events 主题；开启按类型拆分后每种事件写入独立主题（transfer-events.clearing-success 等），
+ * 监听器通过 #{@transferEventTopics.topicsFor('...')} 订阅自己关心的主题
+ */
+public class TransferEventTopics {
+    
+    public static final String BASE_TOPIC = "transfer-events";
+    
+    private final boolean splitByType;
+    
+    public TransferEventTopics(boolean splitByType) {
+        this.splitByType = splitByType;
+    }
+    
+    public boolean isSplitByType() {
+        return splitByType;
+    }
+    
+    /**
+     * 按类型拆分后的主题名
+     */
+    public static String topicOf(TransferEvent.EventType eventType) {
+        return BASE_TOPIC + "." + eventType.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+    
+    /**
+     * 是否为转账事件主题（共用主题或按类型拆分后的任一主题）
+     */
+    public static boolean isTransferEventTopic(String topic) {
+        return BASE_TOPIC.equals(topic) || topic.startsWith(BASE_TOPIC + ".");
+    }
+    
+    /**
+     * 订阅指定事件类型需要的主题，不传类型表示全部事件
+     */
+    public String[] topicsFor(String... eventTypes) {
+        if (!splitByType) {
+            return new String[] {BASE_TOPIC};
+        }
+        if (eventTypes.length == 0) {
+            return Arrays.stream(TransferEvent.EventType.values())
+                    .map(TransferEventTopics::topicOf)
+                    .toArray(String[]::new);
+        }
+        return Arrays.stream(eventTypes)
+                .map(type -> topicOf(TransferEvent.EventType.valueOf(type)))
+                .toArray(String[]::new);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.distributebank.common.kafka;
+
+import com.distributebank.common.event.TransferEventHeaders;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 按事件类型消息头过滤的值反序列化器
+ * 包装实际的反序列化器（JsonDeserializer），消息头中的事件类型不在本监听器关心的范围内时直接返回null，
+ * 不解析消息体；返回null的记录由容器的过滤策略丢弃。没有类型消息头的旧消息照常反序列化
+ */
+public class TransferEventTypeFilteringDeserializer implements Deserializer<Object> {
+    
+    /**
+     * 实际的值反序列化器类
+     */
+    public static final String DELEGATE_CONFIG = "transfer.events.delegate.value.deserializer";
+    
+    /**
+     * 需要反序列化的事件类型，逗号分隔，不配置表示全部；可以在 @KafkaListener 的 properties 中按监听器覆盖
+     */
+    public static final String ACCEPTED_TYPES_CONFIG = "transfer.events.accepted-types";
+    
+    private Deserializer<Object> delegate;
+    private Set<String> acceptedTypes = Set.of();
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object delegateConfig = configs.get(DELEGATE_CONFIG);
+        if (delegateConfig == null) {
+            throw new KafkaException("未配置实际的反序列化器: " + DELEGATE_CONFIG);
+        }
+        try {
+            if (delegateConfig instanceof Class<?> delegateClass) {
+                delegate = (Deserializer<Object>) Utils.newInstance(delegateClass);
+            } else {
+                delegate = Utils.newInstance(delegateConfig.toString().trim(), Deserializer.class);
+            }
+        } catch (ClassNotFoundException e) {
+            throw new KafkaException("反序列化器类不存在: " + delegateConfig, e);
+        }
+        delegate.configure(configs, isKey);
+        acceptedTypes = parseTypes(configs.get(ACCEPTED_TYPES_CONFIG));
+    }
+    
+    private Set<String> parseTypes(Object value) {
+        if (value == null) {
+            return Set.of();
+        }
+        if (value instanceof Collection<?> types) {
+            return types.stream().map(type -> type.toString().trim()).collect(Collectors.toUnmodifiableSet());
+        }
+        return Arrays.stream(value.toString().split(","))
+                .map(String::trim)
+                .filter(type -> !type.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+    
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return delegate.deserialize(topic, data);
+    }
+    
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (!acceptedTypes.isEmpty()) {
+            String eventType = TransferEventHeaders.eventTypeOf(headers);
+            if (eventType != null && !acceptedTypes.contains(eventType)) {
+                return null;
+            }
+        }
+        return delegate.deserialize(topic, headers, data);
+    }
+    
+    @Override
+    public void close() {
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package com.distributebank.common.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 热点账户余额分片实体类
+ * 开启热点模式的账户余额拆分为多个分片行，扣款和收款分散到不同分片，账户余额为各分片之和
+ */
+@Entity
+@Table(name = "account_balance_shards",
+       uniqueConstraints = @UniqueConstraint(name = "uk_account_shard", columnNames = {"account_id", "shard_no"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccountBalanceShard {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * 账户ID
+     */
+    @Column(name = "account_id", nullable = false)
+    private String accountId;
+    
+    /**
+     * 分片序号，从0开始
+     */
+    @Column(name = "shard_no", nullable = false)
+    private Integer shardNo;
+    
+    /**
+     * 分片余额
+     */
+    @Column(name = "balance", precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance;
+    
+    /**
+     * 乐观锁版本号
+     */
+    @Version
+    @Column(name = "version")
+    private Long version;
+    
+    /**
+     * 创建时间
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    /**
+     * 更新时间
+     */
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.distributebank.common.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+/**
+ * 事务发件箱实体类
+ * 与业务数据在同一个数据库事务内写入，由投递器异步批量发送到Kafka
+ */
+@Entity
+@Table(name = "transfer_outbox", indexes = @Index(name = "idx_status_id", columnList = "status, id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * 目标主题
+     */
+    @Column(name = "topic", nullable = false)
+    private String topic;
+    
+    /**
+     * 消息键（交易ID）
+     */
+    @Column(name = "event_key", nullable = false)
+    private String eventKey;
+    
+    /**
+     * 事件内容（JSON）
+     */
+    @Lob
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+    
+    /**
+     * 投递状态：NEW-待发送，SENDING-已被投递器领取，SENT-已发送，FAILED-超过最大发送次数（死信，需人工处理）
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private OutboxStatus status;
+    
+    /**
+     * 发送失败次数
+     */
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+    
+    /**
+     * 领取时间，领取后长时间未完成（投递器崩溃）的记录会被放回待发送
+     */
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+    
+    /**
+     * 最近一次发送失败原因
+     */
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+    
+    /**
+     * 创建时间
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    /**
+     * 发送时间
+     */
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+    
+    /**
+     * 投递状态枚举
+     */
+    public enum OutboxStatus {
+        NEW, SENDING, SENT, FAILED
+    }
+}
\ No newline at end of file
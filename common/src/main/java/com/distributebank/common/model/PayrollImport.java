@@ -0,0 +1,118 @@
+package com.distributebank.common.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 代发工资文件导入实体类
+ * 记录一次文件导入的进度，每处理完一个分块推进一次检查点，失败后重新上传同一文件从检查点继续
+ */
+@Entity
+@Table(name = "payroll_imports")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayrollImport {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * 导入批次ID
+     */
+    @Column(name = "import_id", unique = true, nullable = false)
+    private String importId;
+    
+    /**
+     * 付款账户ID
+     */
+    @Column(name = "from_account_id", nullable = false)
+    private String fromAccountId;
+    
+    /**
+     * 文件格式：csv、ndjson
+     */
+    @Column(name = "format", nullable = false)
+    private String format;
+    
+    /**
+     * 导入状态：PROCESSING-处理中，COMPLETED-已完成，FAILED-失败（可续传）
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ImportStatus status;
+    
+    /**
+     * 生成交易ID使用的时间戳（毫秒），续传时保持不变，保证同一行生成相同的交易ID
+     */
+    @Column(name = "id_timestamp", nullable = false)
+    private Long idTimestamp;
+    
+    /**
+     * 检查点：已入库并发送事件的最后一行行号
+     */
+    @Column(name = "checkpoint_row", nullable = false)
+    private Long checkpointRow;
+    
+    /**
+     * 已受理行数
+     */
+    @Column(name = "accepted_rows", nullable = false)
+    private Long acceptedRows;
+    
+    /**
+     * 校验未通过行数
+     */
+    @Column(name = "rejected_rows", nullable = false)
+    private Long rejectedRows;
+    
+    /**
+     * 已受理总金额
+     */
+    @Column(name = "total_amount", precision = 19, scale = 2, nullable = false)
+    private BigDecimal totalAmount;
+    
+    /**
+     * 错误信息
+     */
+    @Column(name = "error_message", length = 500)
+    private String errorMessage;
+    
+    /**
+     * 创建时间
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    /**
+     * 更新时间
+     */
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    /**
+     * 导入状态枚举
+     */
+    public enum ImportStatus {
+        PROCESSING, COMPLETED, FAILED
+    }
+}
\ No newline at end of file
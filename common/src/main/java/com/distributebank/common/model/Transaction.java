@@ -14,7 +14,11 @@ import java.time.LocalDateTime;
  * 记录所有转账交易的详细信息
  */
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions",
+       indexes = {
+               @Index(name = "idx_from_account_created", columnList = "from_account_id, created_at, id"),
+               @Index(name = "idx_to_account_created", columnList = "to_account_id, created_at, id")
+       })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,56 @@
+package com.distributebank.common.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 金额定点编解码工具
+ * 金额统一以"分"为单位的long整数存储在Redis中（如 1234.56 -> "123456"），
+ * Lua脚本可直接用DECRBY/INCRBY做整数运算，避免浮点误差和重复解析BigDecimal
+ */
+public final class MoneyCodec {
+    
+    /**
+     * 金额小数位数（分）
+     */
+    public static final int SCALE = 2;
+    
+    private MoneyCodec() {
+    }
+    
+    /**
+     * 金额转换为分，超过两位小数时抛出ArithmeticException
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+    
+    /**
+     * 分转换为金额
+     */
+    public static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+    
+    /**
+     * 金额编码为Redis存储格式
+     */
+    public static String encode(BigDecimal amount) {
+        return Long.toString(toMinorUnits(amount));
+    }
+    
+    /**
+     * Redis存储格式解码为金额
+     */
+    public static BigDecimal decode(String value) {
+        return fromMinorUnits(Long.parseLong(value));
+    }
+    
+    /**
+     * 解析旧格式的十进制金额字符串（BigDecimal.toString或Lua tostring的结果），四舍五入到分
+     * 仅用于存量数据迁移
+     */
+    public static long parseLegacy(String value) {
+        return new BigDecimal(value).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,145 @@
+package com.distributebank.common.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 交易ID生成器（Snowflake）
+ * 64位ID = 41位毫秒时间戳（自2024-01-01起）| 10位工作节点ID | 12位毫秒内序号，
+ * 时间戳和序号打包在一个AtomicLong中用CAS推进，无锁；
+ * 时钟回拨或同一毫秒序号用尽时沿用/借用逻辑时间继续递增，保证ID单调不重复。
+ * 字符串形式为 "TXN" + 13位Crockford Base32，定长且字典序与时间顺序一致。
+ * 工作节点ID来自租约时传入租约有效性检查，租约失效（可能已被其他实例占用）后拒绝生成
+ */
+public final class TransactionIdGenerator {
+    
+    public static final String PREFIX = "TXN";
+    
+    /**
+     * 自定义纪元：2024-01-01T00:00:00Z
+     */
+    public static final long EPOCH_MS = 1704067200000L;
+    
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_BITS + SEQUENCE_BITS;
+    
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+    private static final int[] DECODE = new int[128];
+    
+    static {
+        Arrays.fill(DECODE, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = i;
+        }
+    }
+    
+    private final long workerBits;
+    private final BooleanSupplier workerIdValid;
+    
+    /**
+     * 打包状态：(相对纪元的逻辑时间戳 << 12) | 序号
+     */
+    private final AtomicLong state = new AtomicLong();
+    
+    /**
+     * 时钟回拨或序号用尽而借用逻辑时间的次数
+     */
+    private final AtomicLong clockBorrowCount = new AtomicLong();
+    
+    public TransactionIdGenerator(int workerId) {
+        this(workerId, () -> true);
+    }
+    
+    public TransactionIdGenerator(int workerId, BooleanSupplier workerIdValid) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("工作节点ID必须在0到" + MAX_WORKER_ID + "之间: " + workerId);
+        }
+        this.workerBits = (long) workerId << SEQUENCE_BITS;
+        this.workerIdValid = workerIdValid;
+    }
+    
+    /**
+     * 生成下一个64位ID
+     */
+    public long nextLong() {
+        if (!workerIdValid.getAsBoolean()) {
+            throw new IllegalStateException("交易ID工作节点租约已失效，拒绝生成ID");
+        }
+        while (true) {
+            long current = state.get();
+            long lastTimestamp = current >>> SEQUENCE_BITS;
+            long now = System.currentTimeMillis() - EPOCH_MS;
+            
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else if ((current & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                // 同一毫秒或时钟回拨：在逻辑时间上递增序号
+                next = current + 1;
+            } else {
+                // 序号用尽：借用下一毫秒
+                next = (lastTimestamp + 1) << SEQUENCE_BITS;
+            }
+            
+            if (state.compareAndSet(current, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                if (timestamp > now) {
+                    clockBorrowCount.incrementAndGet();
+                }
+                return (timestamp << TIMESTAMP_SHIFT) | workerBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+    
+    /**
+     * 生成下一个交易ID字符串
+     */
+    public String nextId() {
+        return PREFIX + encode(nextLong());
+    }
+    
+    /**
+     * 借用逻辑时间的次数（持续增长说明时钟回拨或单节点每毫秒超过4096个ID）
+     */
+    public long getClockBorrowCount() {
+        return clockBorrowCount.get();
+    }
+    
+    /**
+     * 64位ID编码为13位Crockford Base32
+     */
+    public static String encode(long id) {
+        char[] chars = new char[ENCODED_LENGTH];
+        long value = id;
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * 解析交易ID中的创建时间（毫秒时间戳），不是本生成器格式时返回null
+     */
+    public static Long timestampOf(String transactionId) {
+        if (transactionId == null || transactionId.length() != PREFIX.length() + ENCODED_LENGTH
+                || !transactionId.startsWith(PREFIX)) {
+            return null;
+        }
+        long value = 0;
+        for (int i = PREFIX.length(); i < transactionId.length(); i++) {
+            char c = transactionId.charAt(i);
+            int digit = c < 128 ? DECODE[c] : -1;
+            if (digit < 0) {
+                return null;
+            }
+            value = (value << 5) | digit;
+        }
+        return (value >>> TIMESTAMP_SHIFT) + EPOCH_MS;
+    }
+}
\ No newline at end of file
@@ -34,12 +34,103 @@ CREATE TABLE IF NOT EXISTS transactions (
     created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     INDEX idx_transaction_id (transaction_id),
-    INDEX idx_from_account (from_account_id),
-    INDEX idx_to_account (to_account_id),
+    INDEX idx_from_account_created (from_account_id, created_at, id),
+    INDEX idx_to_account_created (to_account_id, created_at, id),
     INDEX idx_status (status),
     INDEX idx_created_at (created_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='交易流水表';
 
+-- 创建热点账户余额分片表
+CREATE TABLE IF NOT EXISTS account_balance_shards (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    account_id VARCHAR(50) NOT NULL COMMENT '账户ID',
+    shard_no INT NOT NULL COMMENT '分片序号',
+    balance DECIMAL(19,2) NOT NULL DEFAULT 0.00 COMMENT '分片余额',
+    version BIGINT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    UNIQUE KEY uk_account_shard (account_id, shard_no)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='热点账户余额分片表';
+
+-- 创建余额变动日志回写游标表
+CREATE TABLE IF NOT EXISTS balance_journal_cursor (
+    journal VARCHAR(64) PRIMARY KEY COMMENT '变动日志Stream键',
+    last_id VARCHAR(32) NOT NULL DEFAULT '0-0' COMMENT '已回写的最后一条记录ID',
+    applied_entries BIGINT NOT NULL DEFAULT 0 COMMENT '累计回写记录数',
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='余额变动日志回写游标表';
+
+-- 创建代发工资文件导入表
+CREATE TABLE IF NOT EXISTS payroll_imports (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    import_id VARCHAR(50) UNIQUE NOT NULL COMMENT '导入批次ID',
+    from_account_id VARCHAR(50) NOT NULL COMMENT '付款账户ID',
+    format VARCHAR(20) NOT NULL COMMENT '文件格式',
+    status VARCHAR(20) NOT NULL COMMENT '导入状态',
+    id_timestamp BIGINT NOT NULL COMMENT '生成交易ID使用的时间戳',
+    checkpoint_row BIGINT NOT NULL DEFAULT 0 COMMENT '检查点行号',
+    accepted_rows BIGINT NOT NULL DEFAULT 0 COMMENT '已受理行数',
+    rejected_rows BIGINT NOT NULL DEFAULT 0 COMMENT '校验未通过行数',
+    total_amount DECIMAL(19,2) NOT NULL DEFAULT 0.00 COMMENT '已受理总金额',
+    error_message VARCHAR(500) COMMENT '错误信息',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='代发工资文件导入表';
+
+-- 创建代发工资文件校验错误表
+CREATE TABLE IF NOT EXISTS payroll_import_errors (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    import_id VARCHAR(50) NOT NULL COMMENT '导入批次ID',
+    row_no BIGINT NOT NULL COMMENT '文件行号',
+    reason VARCHAR(255) NOT NULL COMMENT '错误原因',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    UNIQUE KEY uk_import_row (import_id, row_no)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='代发工资文件校验错误表';
+
+-- 创建转账事件发件箱表
+CREATE TABLE IF NOT EXISTS transfer_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    topic VARCHAR(100) NOT NULL COMMENT '目标主题',
+    event_key VARCHAR(100) NOT NULL COMMENT '消息键',
+    payload TEXT NOT NULL COMMENT '事件内容',
+    status VARCHAR(20) NOT NULL DEFAULT 'NEW' COMMENT '投递状态',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '发送失败次数',
+    claimed_at DATETIME COMMENT '领取时间',
+    last_error VARCHAR(500) COMMENT '最近一次发送失败原因',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    sent_at DATETIME COMMENT '发送时间',
+    INDEX idx_status_id (status, id),
+    INDEX idx_sent_at (sent_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='转账事件发件箱表';
+
+-- 创建复式记账分录表
+CREATE TABLE IF NOT EXISTS ledger_entries (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    transaction_id VARCHAR(100) NOT NULL COMMENT '交易ID',
+    account_id VARCHAR(50) NOT NULL COMMENT '账户ID',
+    direction VARCHAR(10) NOT NULL COMMENT '借贷方向：DEBIT-转出，CREDIT-转入',
+    amount DECIMAL(19,2) NOT NULL COMMENT '金额',
+    created_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '入账时间',
+    UNIQUE KEY uk_transaction_direction (transaction_id, direction),
+    INDEX idx_account_entry (account_id, id),
+    INDEX idx_created_at (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='复式记账分录表';
+
+-- 创建账户余额快照表
+CREATE TABLE IF NOT EXISTS ledger_balance_snapshots (
+    account_id VARCHAR(50) PRIMARY KEY COMMENT '账户ID',
+    balance DECIMAL(19,2) NOT NULL COMMENT '快照余额',
+    last_entry_id BIGINT NOT NULL DEFAULT 0 COMMENT '快照包含的最后一条分录ID',
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='账户余额快照表';
+
+-- 创建余额快照物化游标表
+CREATE TABLE IF NOT EXISTS ledger_snapshot_cursor (
+    name VARCHAR(64) PRIMARY KEY COMMENT '游标名称',
+    last_entry_id BIGINT NOT NULL DEFAULT 0 COMMENT '已物化的最后一条分录ID',
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='余额快照物化游标表';
+
 -- 插入测试账户数据
 INSERT INTO accounts (account_id, account_name, bank_code, balance, status, version) VALUES
 ('ACC001', '张三账户', 'BANK001', 10000.00, 'ACTIVE', 0),
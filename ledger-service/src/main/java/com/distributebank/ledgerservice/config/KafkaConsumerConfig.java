@@ -0,0 +1,32 @@
+package com.distributebank.ledgerservice.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+/**
+ * Kafka消费配置
+ * 邮箱记账模式下记录在组提交成功后才确认，确认顺序与消费顺序无关（asyncAcks），
+ * 容器只提交到最小的连续已确认偏移量，未提交的转账在重启或再均衡后会被重新消费
+ */
+@Configuration
+@ConditionalOnProperty(name = "ledger.mailbox.enabled", havingValue = "true")
+public class KafkaConsumerConfig {
+    
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> ledgerMailboxListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        // 按事件类型消息头跳过的记录也要确认，否则会卡住偏移量提交
+        factory.setAckDiscarded(true);
+        return factory;
+    }
+}
\ No newline at end of file
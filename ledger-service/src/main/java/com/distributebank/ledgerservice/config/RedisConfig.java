@@ -0,0 +1,26 @@
+package com.distributebank.ledgerservice.config;
+
+import com.distributebank.common.cache.BalanceShardKeys;
+import com.distributebank.ledgerservice.service.HotAccountLedger;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Redis配置
+ * 订阅热点模式变更频道，失效本地分片数缓存
+ */
+@Configuration
+public class RedisConfig {
+    
+    @Bean
+    public RedisMessageListenerContainer shardChangeListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                      HotAccountLedger hotAccountLedger) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(hotAccountLedger, new ChannelTopic(BalanceShardKeys.CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,60 @@
+package com.distributebank.ledgerservice.controller;
+
+import com.distributebank.common.dto.Result;
+import com.distributebank.ledgerservice.service.JournalLedger;
+import com.distributebank.ledgerservice.service.LedgerService;
+import com.distributebank.ledgerservice.service.MailboxLedger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+
+/**
+ * 账本查询控制器
+ */
+@RestController
+@RequestMapping("/api/ledger")
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerController {
+    
+    private final LedgerService ledgerService;
+    private final ObjectProvider<JournalLedger> journalLedger;
+    private final ObjectProvider<MailboxLedger> mailboxLedger;
+    
+    /**
+     * 查询账本余额（日志模式下为快照加分录尾部）
+     * GET /api/ledger/balance/{accountId}
+     */
+    @GetMapping("/balance/{accountId}")
+    public Result<BigDecimal> getBalance(@PathVariable String accountId) {
+        try {
+            return Result.success(ledgerService.getAccountBalance(accountId));
+        } catch (Exception e) {
+            log.error("查询账本余额失败", e);
+            return Result.error(500, "查询账本余额失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 查询记账日志统计（未开启日志模式时返回空）
+     * GET /api/ledger/journal/stats
+     */
+    @GetMapping("/journal/stats")
+    public Result<JournalLedger.JournalStats> getJournalStats() {
+        JournalLedger journal = journalLedger.getIfAvailable();
+        return journal != null ? Result.success(journal.getStats()) : Result.success("记账日志模式未开启", null);
+    }
+    
+    /**
+     * 查询邮箱记账统计：邮箱深度、待提交笔数、组提交大小和耗时（未开启邮箱模式时返回空）
+     * GET /api/ledger/mailbox/stats
+     */
+    @GetMapping("/mailbox/stats")
+    public Result<MailboxLedger.MailboxLedgerStats> getMailboxStats() {
+        MailboxLedger ledger = mailboxLedger.getIfAvailable();
+        return ledger != null ? Result.success(ledger.getStats()) : Result.success("邮箱记账模式未开启", null);
+    }
+}
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.distributebank.common.event.TransferEvent;
 import com.distributebank.ledgerservice.service.LedgerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Component;
  * 监听转账事件，更新账户余额和交易记录
  */
 @Component
+@ConditionalOnProperty(name = "ledger.mailbox.enabled", havingValue = "false", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class LedgerEventHandler {
@@ -22,8 +24,13 @@ public class LedgerEventHandler {
      * 监听转账事件
      * 处理清算成功后的余额更新
      */
-    @KafkaListener(topics = "transfer-events", groupId = "ledger-service")
+    @KafkaListener(topics = "#{@transferEventTopics.topicsFor('CLEARING_SUCCESS')}", groupId = "ledger-service",
+            properties = "transfer.events.accepted-types=CLEARING_SUCCESS")
     public void handleTransferEvent(TransferEvent event) {
+        if (event.getEventType() != TransferEvent.EventType.CLEARING_SUCCESS) {
+            return;
+        }
+        
         log.info("收到转账事件: {}", event.getTransactionId());
         
         try {
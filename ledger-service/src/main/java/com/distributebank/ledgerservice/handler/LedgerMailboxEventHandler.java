@@ -0,0 +1,34 @@
+package com.distributebank.ledgerservice.handler;
+
+import com.distributebank.common.event.TransferEvent;
+import com.distributebank.ledgerservice.service.MailboxLedger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+/**
+ * 账本邮箱模式事件处理器
+ * 清算成功事件交给账户邮箱处理，记录在覆盖它的组提交成功（或转入死信）后才确认
+ */
+@Component
+@ConditionalOnProperty(name = "ledger.mailbox.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LedgerMailboxEventHandler {
+    
+    private final MailboxLedger mailboxLedger;
+    
+    @KafkaListener(topics = "#{@transferEventTopics.topicsFor('CLEARING_SUCCESS')}", groupId = "ledger-service",
+            containerFactory = "ledgerMailboxListenerContainerFactory",
+            properties = "transfer.events.accepted-types=CLEARING_SUCCESS")
+    public void handleTransferEvent(TransferEvent event, Acknowledgment ack) throws InterruptedException {
+        if (event.getEventType() != TransferEvent.EventType.CLEARING_SUCCESS) {
+            ack.acknowledge();
+            return;
+        }
+        
+        // 无法入账的转账由邮箱记账转入死信后确认；其余异常不确认，抛给监听容器重新投递
+        mailboxLedger.submit(event, ack);
+    }
+}
\ No newline at end of file
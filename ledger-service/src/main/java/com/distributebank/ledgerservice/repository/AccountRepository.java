@@ -2,8 +2,13 @@ package com.distributebank.ledgerservice.repository;
 
 import com.distributebank.common.model.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 /**
@@ -27,4 +32,30 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
      * 根据账户状态查询账户列表
      */
     java.util.List<Account> findByStatus(Account.AccountStatus status);
-} 
\ No newline at end of file
+    
+    /**
+     * 查询账户当前余额（在同一事务内更新之后读取，即为本次更新后的余额）
+     */
+    @Query("SELECT a.balance FROM Account a WHERE a.accountId = :accountId")
+    Optional<BigDecimal> findBalanceByAccountId(@Param("accountId") String accountId);
+    
+    /**
+     * 单条语句扣款，余额不足、账户不存在或账户已开启热点分片时不更新（返回0）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, a.version = a.version + 1, a.updatedAt = :now " +
+           "WHERE a.accountId = :accountId AND a.balance >= :amount " +
+           "AND NOT EXISTS (SELECT s.id FROM AccountBalanceShard s WHERE s.accountId = :accountId)")
+    int debitBalance(@Param("accountId") String accountId, @Param("amount") BigDecimal amount,
+                     @Param("now") LocalDateTime now);
+    
+    /**
+     * 单条语句收款，账户不存在或账户已开启热点分片时返回0
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.version = a.version + 1, a.updatedAt = :now " +
+           "WHERE a.accountId = :accountId " +
+           "AND NOT EXISTS (SELECT s.id FROM AccountBalanceShard s WHERE s.accountId = :accountId)")
+    int creditBalance(@Param("accountId") String accountId, @Param("amount") BigDecimal amount,
+                      @Param("now") LocalDateTime now);
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.distributebank.ledgerservice.repository;
+
+import com.distributebank.common.model.AccountBalanceShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 热点账户余额分片数据访问层
+ */
+@Repository
+public interface AccountShardRepository extends JpaRepository<AccountBalanceShard, Long> {
+    
+    /**
+     * 统计账户分片数，0表示非热点账户
+     */
+    long countByAccountId(String accountId);
+    
+    /**
+     * 按分片号顺序加锁读取全部分片（固定加锁顺序避免死锁）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountBalanceShard s WHERE s.accountId = :accountId ORDER BY s.shardNo")
+    List<AccountBalanceShard> findAllForUpdate(@Param("accountId") String accountId);
+    
+    /**
+     * 分片扣款，余额不足时不更新（返回0）
+     */
+    @Modifying
+    @Query("UPDATE AccountBalanceShard s SET s.balance = s.balance - :amount, s.version = s.version + 1, " +
+           "s.updatedAt = :now WHERE s.accountId = :accountId AND s.shardNo = :shardNo AND s.balance >= :amount")
+    int debitShard(@Param("accountId") String accountId, @Param("shardNo") Integer shardNo,
+                   @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+    
+    /**
+     * 分片收款
+     */
+    @Modifying
+    @Query("UPDATE AccountBalanceShard s SET s.balance = s.balance + :amount, s.version = s.version + 1, " +
+           "s.updatedAt = :now WHERE s.accountId = :accountId AND s.shardNo = :shardNo")
+    int creditShard(@Param("accountId") String accountId, @Param("shardNo") Integer shardNo,
+                    @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+    
+    /**
+     * 账户各分片余额之和
+     */
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM AccountBalanceShard s WHERE s.accountId = :accountId")
+    BigDecimal sumBalance(@Param("accountId") String accountId);
+}
\ No newline at end of file
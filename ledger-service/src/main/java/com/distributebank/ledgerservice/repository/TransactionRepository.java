@@ -18,11 +18,6 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
      */
     Optional<Transaction> findByTransactionId(String transactionId);
     
-    /**
-     * 根据源账户ID或目标账户ID查询交易列表
-     */
-    java.util.List<Transaction> findByFromAccountIdOrToAccountIdOrderByCreatedAtDesc(String fromAccountId, String toAccountId);
-    
     /**
      * 根据交易状态查询交易列表
      */
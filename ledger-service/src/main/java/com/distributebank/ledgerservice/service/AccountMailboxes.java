@@ -0,0 +1,226 @@
+package com.distributebank.ledgerservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 按账户划分的串行邮箱（Actor模型）
+ * 每个账户一个消息队列，同一账户的消息在共享线程池上串行执行，账户状态只被所属邮箱访问，无需加锁；
+ * 不同账户的邮箱并行执行。空闲且没有未提交变更的邮箱定期回收
+ */
+@Slf4j
+public class AccountMailboxes {
+    
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    
+    /**
+     * 邮箱单次调度最多处理的消息数，处理完仍有消息时重新排队，避免单个热点账户长期占用线程
+     */
+    private final int throughput;
+    
+    private final AtomicLong processedMessages = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    
+    public AccountMailboxes(int threads, int throughput) {
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ledger-mailbox-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.throughput = throughput;
+    }
+    
+    /**
+     * 向账户邮箱投递一条消息，消息在该账户的邮箱线程上执行
+     */
+    public void tell(String accountId, Consumer<AccountState> message) {
+        // 入队在compute内完成，与回收互斥，不会投递到已被移除的邮箱
+        Mailbox mailbox = mailboxes.compute(accountId, (id, existing) -> {
+            Mailbox target = existing != null ? existing : new Mailbox(new AccountState(id));
+            target.enqueue(message);
+            return target;
+        });
+        maxDepth.accumulateAndGet(mailbox.depth.get(), Math::max);
+        mailbox.schedule();
+    }
+    
+    /**
+     * 回收空闲超过idleMs且没有未提交变更的邮箱，下次使用时重新加载账户状态
+     */
+    public int evictIdle(long idleMs) {
+        long deadline = System.currentTimeMillis() - idleMs;
+        int before = mailboxes.size();
+        for (String accountId : mailboxes.keySet()) {
+            mailboxes.computeIfPresent(accountId, (id, mailbox) -> mailbox.isIdleSince(deadline) ? null : mailbox);
+        }
+        return before - mailboxes.size();
+    }
+    
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 获取邮箱统计
+     */
+    public MailboxStats getStats() {
+        int queued = 0;
+        int deepest = 0;
+        for (Mailbox mailbox : mailboxes.values()) {
+            int depth = mailbox.depth.get();
+            queued += depth;
+            deepest = Math.max(deepest, depth);
+        }
+        return new MailboxStats(mailboxes.size(), queued, deepest, maxDepth.get(), processedMessages.get());
+    }
+    
+    /**
+     * 账户状态，只在所属邮箱线程上读写
+     */
+    public static class AccountState {
+        private final String accountId;
+        
+        /**
+         * 内存余额，null表示尚未从数据库加载
+         */
+        private BigDecimal balance;
+        
+        /**
+         * 热点分片数，0表示普通账户
+         */
+        private int shardCount;
+        
+        /**
+         * 已在内存中生效、尚未组提交的变更数，大于0时邮箱不会被回收
+         */
+        private volatile int uncommitted;
+        
+        AccountState(String accountId) {
+            this.accountId = accountId;
+        }
+        
+        public boolean isLoaded() {
+            return balance != null;
+        }
+        
+        public void load(BigDecimal balance, int shardCount) {
+            this.balance = balance;
+            this.shardCount = shardCount;
+        }
+        
+        public void apply(BigDecimal delta) {
+            balance = balance.add(delta);
+        }
+        
+        public void addUncommitted(int delta) {
+            uncommitted += delta;
+        }
+        
+        // getters
+        public String getAccountId() { return accountId; }
+        public BigDecimal getBalance() { return balance; }
+        public int getShardCount() { return shardCount; }
+        public int getUncommitted() { return uncommitted; }
+    }
+    
+    /**
+     * 单个账户的邮箱
+     */
+    private class Mailbox implements Runnable {
+        private final AccountState state;
+        private final Queue<Consumer<AccountState>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long lastActive = System.currentTimeMillis();
+        
+        Mailbox(AccountState state) {
+            this.state = state;
+        }
+        
+        void enqueue(Consumer<AccountState> message) {
+            queue.offer(message);
+            depth.incrementAndGet();
+        }
+        
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+        
+        boolean isIdleSince(long deadline) {
+            return !scheduled.get() && depth.get() == 0 && state.uncommitted == 0 && lastActive < deadline;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < throughput; i++) {
+                    Consumer<AccountState> message = queue.poll();
+                    if (message == null) {
+                        break;
+                    }
+                    depth.decrementAndGet();
+                    try {
+                        message.accept(state);
+                    } catch (Exception e) {
+                        log.error("账户邮箱消息处理异常: {}", state.accountId, e);
+                    }
+                    processedMessages.incrementAndGet();
+                }
+            } finally {
+                lastActive = System.currentTimeMillis();
+                scheduled.set(false);
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+    
+    /**
+     * 邮箱统计类
+     */
+    public static class MailboxStats {
+        private int activeMailboxes;
+        private int queuedMessages;
+        private int deepestMailbox;
+        private int maxDepthSeen;
+        private long processedMessages;
+        
+        public MailboxStats(int activeMailboxes, int queuedMessages, int deepestMailbox, int maxDepthSeen,
+                            long processedMessages) {
+            this.activeMailboxes = activeMailboxes;
+            this.queuedMessages = queuedMessages;
+            this.deepestMailbox = deepestMailbox;
+            this.maxDepthSeen = maxDepthSeen;
+            this.processedMessages = processedMessages;
+        }
+        
+        // getters
+        public int getActiveMailboxes() { return activeMailboxes; }
+        public int getQueuedMessages() { return queuedMessages; }
+        public int getDeepestMailbox() { return deepestMailbox; }
+        public int getMaxDepthSeen() { return maxDepthSeen; }
+        public long getProcessedMessages() { return processedMessages; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+package com.distributebank.ledgerservice.service;
+
+import com.distributebank.common.cache.BalanceCacheInvalidation;
+import com.distributebank.common.cache.BalanceKeys;
+import com.distributebank.common.cache.PendingBalanceDeltas;
+import com.distributebank.common.event.BalanceChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 余额变更事件发布器
+ * 账户余额行提交后读取新余额和版本号，以账户ID为键发布到Kafka，由account-service按版本号比较写入Redis；
+ * 热点分片账户的余额不在accounts.balance中，不发布。发布失败时退回为删除缓存；
+ * 源账户扣款落库后先清除account-service登记的未落库变动标记，再发布事件
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceEventPublisher {
+    
+    private static final String ACCOUNT_BALANCE_PREFIX = BalanceKeys.PREFIX;
+    private static final String SOURCE = "ledger-service";
+    
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final KafkaTemplate<String, BalanceChangedEvent> kafkaTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    
+    /**
+     * 当前事务提交后发布这些账户的余额变更（没有事务时立即发布）
+     */
+    public void publishAfterCommit(Collection<String> accountIds) {
+        List<String> ids = List.copyOf(new LinkedHashSet<>(accountIds));
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(ids);
+            }
+        });
+    }
+    
+    /**
+     * 当前事务提交后清除这些源账户扣款（账户ID -> 交易ID列表）的未落库变动标记，需在publishAfterCommit之前调用
+     */
+    public void settleAfterCommit(Map<String, List<String>> debits) {
+        if (debits.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            settle(debits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                settle(debits);
+            }
+        });
+    }
+    
+    private void settle(Map<String, List<String>> debits) {
+        try {
+            PendingBalanceDeltas.settle(redisTemplate, debits, SOURCE);
+        } catch (Exception e) {
+            // 清除失败时标记在过期后失效，期间该账户的余额变更事件继续被推迟
+            log.warn("清除未落库变动标记失败: {}个账户", debits.size(), e);
+        }
+    }
+    
+    private void publish(List<String> accountIds) {
+        List<BalanceChangedEvent> events;
+        try {
+            // 提交后再读，余额和版本号来自同一行的同一次读取
+            events = namedJdbcTemplate.query(
+                    "SELECT a.account_id, a.balance, a.version FROM accounts a WHERE a.account_id IN (:accountIds) " +
+                    "AND NOT EXISTS (SELECT 1 FROM account_balance_shards h WHERE h.account_id = a.account_id)",
+                    new MapSqlParameterSource("accountIds", accountIds),
+                    (rs, rowNum) -> BalanceChangedEvent.builder()
+                            .accountId(rs.getString("account_id"))
+                            .balance(rs.getBigDecimal("balance"))
+                            .version(rs.getLong("version"))
+                            .source(SOURCE)
+                            .build());
+        } catch (Exception e) {
+            log.warn("读取变更后余额失败，改为删除缓存: {}", accountIds, e);
+            invalidate(accountIds);
+            return;
+        }
+        
+        for (BalanceChangedEvent event : events) {
+            kafkaTemplate.send(BalanceChangedEvent.TOPIC, event.getAccountId(), event).whenComplete((result, e) -> {
+                if (e != null) {
+                    log.warn("余额变更事件发送失败，改为删除缓存: {}", event.getAccountId(), e);
+                    invalidate(List.of(event.getAccountId()));
+                }
+            });
+        }
+    }
+    
+    private void invalidate(List<String> accountIds) {
+        try {
+            redisTemplate.delete(accountIds.stream().map(id -> ACCOUNT_BALANCE_PREFIX + id).toList());
+            redisTemplate.convertAndSend(BalanceCacheInvalidation.CHANNEL,
+                    BalanceCacheInvalidation.encode(SOURCE, accountIds));
+        } catch (Exception e) {
+            log.error("删除余额缓存失败: {}", accountIds, e);
+        }
+    }
+}
\ No newline at end of file
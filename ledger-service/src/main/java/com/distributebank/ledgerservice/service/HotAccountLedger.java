@@ -0,0 +1,130 @@
+package com.distributebank.ledgerservice.service;
+
+import com.distributebank.common.model.AccountBalanceShard;
+import com.distributebank.common.util.MoneyCodec;
+import com.distributebank.ledgerservice.repository.AccountShardRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 热点账户入账
+ * 热点账户的数据库余额拆分在account_balance_shards的N行上，单个分片用条件UPDATE直接扣减，
+ * 不同交易落在不同分片行上，避免所有扣款争抢同一行；所有分片都不够时加锁全部分片重新均衡。
+ * 分片数缓存在本地，account-service开启热点模式后通过Redis频道通知失效，TTL兜底丢失的消息
+ */
+@Service
+@Slf4j
+public class HotAccountLedger implements MessageListener {
+    
+    private final AccountShardRepository accountShardRepository;
+    
+    /**
+     * 账户分片数本地缓存，0表示非热点账户
+     */
+    private final Cache<String, Integer> shardCounts;
+    
+    public HotAccountLedger(AccountShardRepository accountShardRepository,
+                            @Value("${ledger.hot.shard-count-cache-ms:5000}") long shardCountCacheMs) {
+        this.accountShardRepository = accountShardRepository;
+        this.shardCounts = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(Duration.ofMillis(shardCountCacheMs))
+                .build();
+    }
+    
+    /**
+     * 获取账户分片数，0表示非热点账户
+     */
+    public int getShardCount(String accountId) {
+        return shardCounts.get(accountId, id -> (int) accountShardRepository.countByAccountId(id));
+    }
+    
+    /**
+     * 绕过缓存重新读取分片数（账户行条件更新因已开启热点模式而未命中时使用）
+     */
+    public int refreshShardCount(String accountId) {
+        int shardCount = (int) accountShardRepository.countByAccountId(accountId);
+        shardCounts.put(accountId, shardCount);
+        return shardCount;
+    }
+    
+    /**
+     * 接收热点模式变更通知，失效本地分片数缓存
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String accountId = new String(message.getBody(), StandardCharsets.UTF_8);
+        shardCounts.invalidate(accountId);
+        log.debug("收到热点账户变更通知: {}", accountId);
+    }
+    
+    /**
+     * 热点账户余额：各分片之和
+     */
+    public BigDecimal getBalance(String accountId) {
+        return accountShardRepository.sumBalance(accountId);
+    }
+    
+    /**
+     * 热点账户扣款，需在调用方事务内执行
+     */
+    public void debit(String accountId, int shardCount, BigDecimal amount, String transactionId) {
+        int start = Math.floorMod(transactionId.hashCode(), shardCount);
+        LocalDateTime now = LocalDateTime.now();
+        for (int k = 0; k < shardCount; k++) {
+            int shardNo = (start + k) % shardCount;
+            if (accountShardRepository.debitShard(accountId, shardNo, amount, now) == 1) {
+                log.info("热点账户扣款成功: {} 分片: {} 金额: {}", accountId, shardNo, amount);
+                return;
+            }
+        }
+        rebalanceAndDebit(accountId, amount, now);
+    }
+    
+    /**
+     * 热点账户收款，需在调用方事务内执行
+     */
+    public void credit(String accountId, int shardCount, BigDecimal amount, String transactionId) {
+        int shardNo = Math.floorMod(transactionId.hashCode(), shardCount);
+        if (accountShardRepository.creditShard(accountId, shardNo, amount, LocalDateTime.now()) == 0) {
+            throw new RuntimeException("热点账户分片不存在: " + accountId + "#" + shardNo);
+        }
+        log.info("热点账户收款成功: {} 分片: {} 金额: {}", accountId, shardNo, amount);
+    }
+    
+    /**
+     * 单个分片余额都不足时，按分片号顺序锁住全部分片，扣款后把剩余余额均匀分布
+     */
+    private void rebalanceAndDebit(String accountId, BigDecimal amount, LocalDateTime now) {
+        List<AccountBalanceShard> shards = accountShardRepository.findAllForUpdate(accountId);
+        long total = 0;
+        for (AccountBalanceShard shard : shards) {
+            total += MoneyCodec.toMinorUnits(shard.getBalance());
+        }
+        long remaining = total - MoneyCodec.toMinorUnits(amount);
+        if (remaining < 0) {
+            throw new RuntimeException("源账户余额不足: " + accountId);
+        }
+        
+        long share = remaining / shards.size();
+        for (int i = 0; i < shards.size(); i++) {
+            AccountBalanceShard shard = shards.get(i);
+            long value = i == 0 ? remaining - share * (shards.size() - 1) : share;
+            shard.setBalance(MoneyCodec.fromMinorUnits(value));
+            shard.setUpdatedAt(now);
+        }
+        accountShardRepository.saveAll(shards);
+        log.info("热点账户分片重新均衡后扣款: {} 金额: {} 剩余: {}", accountId, amount, MoneyCodec.fromMinorUnits(remaining));
+    }
+}
\ No newline at end of file
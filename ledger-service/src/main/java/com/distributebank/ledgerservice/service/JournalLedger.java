@@ -0,0 +1,277 @@
+package com.distributebank.ledgerservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 复式记账日志
+ * 每笔转账向ledger_entries追加一借一贷两条不可变分录（一条多值INSERT），不再原地修改账户余额行；
+ * 定时把快照之后的分录按账户汇总进ledger_balance_snapshots，并同步到accounts.balance供其他服务读取。
+ * 账户余额 = 快照余额 + 快照之后的分录净额，写入吞吐不再取决于账户冷热
+ */
+@Service
+@ConditionalOnProperty(name = "ledger.journal.enabled", havingValue = "true")
+@Slf4j
+public class JournalLedger {
+    
+    private static final String CURSOR_NAME = "ledger-snapshot";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final BalanceEventPublisher balanceEventPublisher;
+    
+    /**
+     * 只汇总早于该时长的分录：自增ID按分配顺序而非提交顺序可见，留出时间让较早分配ID的事务先提交
+     */
+    private final long snapshotLagMs;
+    
+    private final AtomicLong appendedTransfers = new AtomicLong();
+    private final AtomicLong duplicateTransfers = new AtomicLong();
+    private final AtomicLong materializedEntries = new AtomicLong();
+    private volatile long snapshotEntryId;
+    
+    public JournalLedger(JdbcTemplate jdbcTemplate,
+                         NamedParameterJdbcTemplate namedJdbcTemplate,
+                         BalanceEventPublisher balanceEventPublisher,
+                         @Value("${ledger.journal.snapshot-lag-ms:10000}") long snapshotLagMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.balanceEventPublisher = balanceEventPublisher;
+        this.snapshotLagMs = snapshotLagMs;
+    }
+    
+    /**
+     * 两条分录一条INSERT IGNORE：重复的交易（唯一键冲突）影响行数为0。
+     * 不能用ON DUPLICATE KEY UPDATE id = id判重：Connector/J默认开启CLIENT_FOUND_ROWS，重复行也计为匹配行
+     */
+    private static final String APPEND_SQL =
+            "INSERT IGNORE INTO ledger_entries (transaction_id, account_id, direction, amount) " +
+            "VALUES (?, ?, 'DEBIT', ?), (?, ?, 'CREDIT', ?)";
+    
+    /**
+     * 追加一笔转账的借贷分录，需在调用方事务内执行；同一交易重复入账时返回false
+     */
+    public boolean append(String transactionId, String fromAccountId, String toAccountId, BigDecimal amount) {
+        int inserted = jdbcTemplate.update(APPEND_SQL,
+                transactionId, fromAccountId, amount, transactionId, toAccountId, amount);
+        if (inserted == 0) {
+            duplicateTransfers.incrementAndGet();
+            return false;
+        }
+        if (inserted != 2) {
+            throw new RuntimeException("分录不完整，交易已部分入账: " + transactionId);
+        }
+        appendedTransfers.incrementAndGet();
+        return true;
+    }
+    
+    /**
+     * 批量追加多笔转账的借贷分录（一次JDBC批量执行），需在调用方事务内执行；
+     * 返回每笔是否为新入账，false表示该交易之前已入账。
+     * 依赖逐条语句的影响行数，数据源不能开启rewriteBatchedStatements（改写后只返回SUCCESS_NO_INFO）
+     */
+    public boolean[] appendAll(List<Entry> transfers) {
+        int[] counts = jdbcTemplate.batchUpdate(APPEND_SQL,
+                transfers.stream()
+                        .map(t -> new Object[] {t.getTransactionId(), t.getFromAccountId(), t.getAmount(),
+                                t.getTransactionId(), t.getToAccountId(), t.getAmount()})
+                        .toList());
+        boolean[] appended = new boolean[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0 && counts[i] != 2) {
+                throw new RuntimeException("分录影响行数异常（" + counts[i] + "），交易可能已部分入账: "
+                        + transfers.get(i).getTransactionId());
+            }
+            appended[i] = counts[i] == 2;
+            if (appended[i]) {
+                appendedTransfers.incrementAndGet();
+            } else {
+                duplicateTransfers.incrementAndGet();
+            }
+        }
+        return appended;
+    }
+    
+    /**
+     * 账户当前余额：快照余额（尚无快照时为accounts.balance）加上快照之后的分录净额，单条语句读取保证一致
+     */
+    public BigDecimal balanceOf(String accountId) {
+        BigDecimal balance = jdbcTemplate.query(
+                "SELECT COALESCE(s.balance, a.balance) + COALESCE((" +
+                "    SELECT SUM(CASE WHEN e.direction = 'CREDIT' THEN e.amount ELSE -e.amount END) " +
+                "    FROM ledger_entries e WHERE e.account_id = a.account_id AND e.id > COALESCE(s.last_entry_id, 0)" +
+                "), 0) AS balance " +
+                "FROM accounts a LEFT JOIN ledger_balance_snapshots s ON s.account_id = a.account_id " +
+                "WHERE a.account_id = ?",
+                rs -> rs.next() ? rs.getBigDecimal("balance") : null,
+                accountId);
+        if (balance == null) {
+            throw new RuntimeException("账户不存在: " + accountId);
+        }
+        return balance;
+    }
+    
+    /**
+     * 定时物化余额快照：把上次快照之后、已过安全时延的分录按账户汇总，
+     * 更新快照和accounts.balance并推进游标，提交后清除已汇总扣款的未落库标记并发布余额变更事件；热点分片账户的余额由分片行维护，不在此汇总
+     */
+    @Scheduled(fixedDelayString = "${ledger.journal.snapshot-interval-ms:1000}")
+    @Transactional
+    public void materializeSnapshots() {
+        jdbcTemplate.update("INSERT IGNORE INTO ledger_snapshot_cursor (name, last_entry_id) VALUES (?, 0)", CURSOR_NAME);
+        // 锁住游标行，多个账本实例同一时刻只有一个在物化
+        long lower = jdbcTemplate.queryForObject(
+                "SELECT last_entry_id FROM ledger_snapshot_cursor WHERE name = ? FOR UPDATE", Long.class, CURSOR_NAME);
+        // 截止时间用数据库时钟计算，与created_at的默认值CURRENT_TIMESTAMP(3)同源，不受应用服务器时钟和时区影响
+        Long upper = jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM ledger_entries WHERE id > ? AND created_at <= NOW(3) - INTERVAL ? MICROSECOND",
+                Long.class, lower, snapshotLagMs * 1000);
+        if (upper == null) {
+            snapshotEntryId = lower;
+            return;
+        }
+        
+        List<Map<String, Object>> deltas = jdbcTemplate.queryForList(
+                "SELECT e.account_id, SUM(CASE WHEN e.direction = 'CREDIT' THEN e.amount ELSE -e.amount END) AS delta, " +
+                "COUNT(*) AS entries FROM ledger_entries e " +
+                "WHERE e.id > ? AND e.id <= ? " +
+                "AND NOT EXISTS (SELECT 1 FROM account_balance_shards h WHERE h.account_id = e.account_id) " +
+                "GROUP BY e.account_id",
+                lower, upper);
+        
+        // 本批汇总的源账户扣款，提交后清除其在Redis中的未落库标记
+        Map<String, List<String>> debits = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT e.account_id, e.transaction_id FROM ledger_entries e " +
+                "WHERE e.id > ? AND e.id <= ? AND e.direction = 'DEBIT' " +
+                "AND NOT EXISTS (SELECT 1 FROM account_balance_shards h WHERE h.account_id = e.account_id)",
+                rs -> {
+                    debits.computeIfAbsent(rs.getString("account_id"), id -> new ArrayList<>())
+                            .add(rs.getString("transaction_id"));
+                },
+                lower, upper);
+        
+        List<String> accountIds = new ArrayList<>(deltas.size());
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        LocalDateTime now = LocalDateTime.now();
+        long entries = 0;
+        for (Map<String, Object> row : deltas) {
+            String accountId = (String) row.get("account_id");
+            accountIds.add(accountId);
+            updates.add(new Object[] {row.get("delta"), upper, now, accountId});
+            entries += ((Number) row.get("entries")).longValue();
+        }
+        
+        if (!accountIds.isEmpty()) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("accountIds", accountIds)
+                    .addValue("now", now);
+            // 首次物化的账户以当前accounts.balance为起点
+            namedJdbcTemplate.update(
+                    "INSERT IGNORE INTO ledger_balance_snapshots (account_id, balance, last_entry_id, updated_at) " +
+                    "SELECT account_id, balance, 0, :now FROM accounts WHERE account_id IN (:accountIds)",
+                    params);
+            jdbcTemplate.batchUpdate(
+                    "UPDATE ledger_balance_snapshots SET balance = balance + ?, last_entry_id = ?, updated_at = ? " +
+                    "WHERE account_id = ?",
+                    updates);
+            namedJdbcTemplate.update(
+                    "UPDATE accounts a JOIN ledger_balance_snapshots s ON s.account_id = a.account_id " +
+                    "SET a.balance = s.balance, a.version = a.version + 1, a.updated_at = :now " +
+                    "WHERE a.account_id IN (:accountIds)",
+                    params);
+        }
+        jdbcTemplate.update("UPDATE ledger_snapshot_cursor SET last_entry_id = ?, updated_at = ? WHERE name = ?",
+                upper, now, CURSOR_NAME);
+        
+        balanceEventPublisher.settleAfterCommit(debits);
+        balanceEventPublisher.publishAfterCommit(accountIds);
+        
+        long materialized = entries;
+        long watermark = upper;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                materializedEntries.addAndGet(materialized);
+                snapshotEntryId = watermark;
+            }
+        });
+        log.debug("物化余额快照: 分录({}, {}] 账户{}个", lower, upper, accountIds.size());
+    }
+    
+    /**
+     * 获取记账日志统计
+     */
+    public JournalStats getStats() {
+        return new JournalStats(
+                appendedTransfers.get(),
+                duplicateTransfers.get(),
+                materializedEntries.get(),
+                snapshotEntryId
+        );
+    }
+    
+    /**
+     * 一笔转账的借贷分录
+     */
+    public static class Entry {
+        private final String transactionId;
+        private final String fromAccountId;
+        private final String toAccountId;
+        private final BigDecimal amount;
+        
+        public Entry(String transactionId, String fromAccountId, String toAccountId, BigDecimal amount) {
+            this.transactionId = transactionId;
+            this.fromAccountId = fromAccountId;
+            this.toAccountId = toAccountId;
+            this.amount = amount;
+        }
+        
+        // getters
+        public String getTransactionId() { return transactionId; }
+        public String getFromAccountId() { return fromAccountId; }
+        public String getToAccountId() { return toAccountId; }
+        public BigDecimal getAmount() { return amount; }
+    }
+    
+    /**
+     * 记账日志统计类
+     */
+    public static class JournalStats {
+        private long appendedTransfers;
+        private long duplicateTransfers;
+        private long materializedEntries;
+        private long snapshotEntryId;
+        
+        public JournalStats(long appendedTransfers, long duplicateTransfers, long materializedEntries,
+                            long snapshotEntryId) {
+            this.appendedTransfers = appendedTransfers;
+            this.duplicateTransfers = duplicateTransfers;
+            this.materializedEntries = materializedEntries;
+            this.snapshotEntryId = snapshotEntryId;
+        }
+        
+        // getters
+        public long getAppendedTransfers() { return appendedTransfers; }
+        public long getDuplicateTransfers() { return duplicateTransfers; }
+        public long getMaterializedEntries() { return materializedEntries; }
+        public long getSnapshotEntryId() { return snapshotEntryId; }
+    }
+}
\ No newline at end of file
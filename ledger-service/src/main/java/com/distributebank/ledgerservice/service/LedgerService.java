@@ -1,27 +1,33 @@
 package com.distributebank.ledgerservice.service;
 
+import com.distributebank.common.cache.SourceDebitMode;
 import com.distributebank.common.event.TransferEvent;
 import com.distributebank.common.model.Account;
 import com.distributebank.common.model.Transaction;
+import com.distributebank.common.util.MoneyCodec;
 import com.distributebank.ledgerservice.repository.AccountRepository;
 import com.distributebank.ledgerservice.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Optional;
 
 /**
  * 账本服务业务逻辑类
- * 负责账户余额更新和交易记录，使用乐观锁保证数据一致性
- * 结合延时双删策略保证缓存一致性
+ * 负责账户余额更新和交易记录，余额通过单条条件UPDATE原子更新
+ * 提交后发布带版本号的余额变更事件，由account-service按版本刷新缓存
  */
 @Service
 @RequiredArgsConstructor
@@ -30,11 +36,32 @@ public class LedgerService {
     
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final HotAccountLedger hotAccountLedger;
+    private final ObjectProvider<JournalLedger> journalLedger;
+    private final BalanceEventPublisher balanceEventPublisher;
     private final RedisTemplate<String, String> redisTemplate;
     
-    private static final String ACCOUNT_BALANCE_PREFIX = "account:balance:";
+    /**
+     * 源账户扣款是否由账本执行；account-service开启余额变动日志回写后由回写器入账，此处需关闭
+     */
+    @Value("${ledger.source-debit.enabled:true}")
+    private boolean sourceDebitEnabled;
+    
     private static final String TRANSACTION_PROCESSED_PREFIX = "ledger:processed:";
     
+    /**
+     * 日志模式下accounts.balance由快照物化覆盖，不能再由account-service回写器直接修改；
+     * 源账户扣款配置需与account-service的余额变动日志回写一致
+     */
+    @PostConstruct
+    public void checkJournalMode() {
+        if (journalLedger.getIfAvailable() != null && !sourceDebitEnabled) {
+            throw new RuntimeException("复式记账日志模式需要ledger.source-debit.enabled=true");
+        }
+        SourceDebitMode.verify(redisTemplate,
+                sourceDebitEnabled ? SourceDebitMode.LEDGER : SourceDebitMode.ACCOUNT_JOURNAL, "ledger-service");
+    }
+    
     /**
      * 处理转账事件，更新账户余额
      */
@@ -43,27 +70,37 @@ public class LedgerService {
         String transactionId = event.getTransactionId();
         String fromAccountId = event.getFromAccountId();
         String toAccountId = event.getToAccountId();
-        BigDecimal amount = event.getAmount();
+        // 与Redis侧一致按分值处理金额，超过两位小数的金额在此直接拒绝
+        BigDecimal amount = MoneyCodec.fromMinorUnits(MoneyCodec.toMinorUnits(event.getAmount()));
         
         log.info("开始处理转账事件: {}", transactionId);
         
+        JournalLedger journal = journalLedger.getIfAvailable();
+        if (journal != null) {
+            processWithJournal(event, amount, journal);
+            return;
+        }
+        
         try {
-            // 1. 先删除源账户和目标账户的缓存
-            deleteCacheFirst(fromAccountId);
-            deleteCacheFirst(toAccountId);
-            
-            // 2. 使用乐观锁更新源账户余额
-            updateFromAccountBalance(fromAccountId, amount, transactionId);
-            
-            // 3. 使用乐观锁更新目标账户余额
-            updateToAccountBalance(toAccountId, amount, transactionId);
+            // 1. 单条条件UPDATE完成扣款和收款，按账户ID顺序加行锁避免两笔反向转账互相死锁
+            BigDecimal fromBalanceAfter;
+            BigDecimal toBalanceAfter;
+            if (fromAccountId.compareTo(toAccountId) <= 0) {
+                fromBalanceAfter = debit(fromAccountId, amount, transactionId);
+                toBalanceAfter = credit(toAccountId, amount, transactionId);
+            } else {
+                toBalanceAfter = credit(toAccountId, amount, transactionId);
+                fromBalanceAfter = debit(fromAccountId, amount, transactionId);
+            }
             
-            // 4. 保存交易记录
-            saveTransactionRecord(event);
+            // 2. 保存交易记录
+            saveTransactionRecord(event, fromBalanceAfter, toBalanceAfter);
             
-            // 5. 延时删除缓存
-            scheduleDelayedDelete(fromAccountId, 500);
-            scheduleDelayedDelete(toAccountId, 500);
+            // 3. 提交后清除源账户在Redis中的未落库扣款标记，再发布带版本号的余额变更事件，由account-service按版本写入缓存
+            if (sourceDebitEnabled) {
+                balanceEventPublisher.settleAfterCommit(Map.of(fromAccountId, List.of(transactionId)));
+            }
+            balanceEventPublisher.publishAfterCommit(List.of(fromAccountId, toAccountId));
             
             log.info("转账事件处理成功: {}", transactionId);
             
@@ -74,147 +111,133 @@ public class LedgerService {
     }
     
     /**
-     * 更新源账户余额（乐观锁）
+     * 日志模式入账：追加一借一贷两条分录，不锁账户行；热点分片账户仍按分片行入账。
+     * 余额检查读取快照加分录尾部，不加锁，透支由account-service在Redis中扣款时拦截
      */
-    private void updateFromAccountBalance(String accountId, BigDecimal amount, String transactionId) {
-        int maxRetries = 3;
+    private void processWithJournal(TransferEvent event, BigDecimal amount, JournalLedger journal) {
+        String transactionId = event.getTransactionId();
+        String fromAccountId = event.getFromAccountId();
+        String toAccountId = event.getToAccountId();
+        int fromShards = hotAccountLedger.getShardCount(fromAccountId);
+        int toShards = hotAccountLedger.getShardCount(toAccountId);
         
-        for (int i = 0; i < maxRetries; i++) {
-            try {
-                Account account = accountRepository.findByAccountId(accountId)
-                        .orElseThrow(() -> new RuntimeException("源账户不存在: " + accountId));
-                
-                if (account.getBalance().compareTo(amount) < 0) {
-                    throw new RuntimeException("源账户余额不足: " + accountId);
-                }
-                
-                BigDecimal newBalance = account.getBalance().subtract(amount);
-                account.setBalance(newBalance);
-                account.setUpdatedAt(LocalDateTime.now());
-                accountRepository.save(account);
-                
-                log.info("源账户扣款成功: {} 扣款金额: {} 新余额: {}", accountId, amount, newBalance);
-                return;
-                
-            } catch (ObjectOptimisticLockingFailureException e) {
-                if (i == maxRetries - 1) {
-                    log.error("源账户扣款失败，乐观锁冲突: {}", accountId, e);
-                    throw new RuntimeException("并发冲突，请重试");
-                }
-                // 重试前删除缓存
-                deleteCache(accountId);
-                log.warn("源账户扣款乐观锁冲突，重试第{}次: {}", i + 1, accountId);
-                try {
-                    Thread.sleep(10 * (i + 1)); // 递增延时
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("扣款操作被中断");
-                }
-            }
+        if (fromShards == 0 && journal.balanceOf(fromAccountId).compareTo(amount) < 0) {
+            throw new RuntimeException("源账户余额不足: " + fromAccountId);
+        }
+        if (!journal.append(transactionId, fromAccountId, toAccountId, amount)) {
+            log.info("转账已入账，忽略重复事件: {}", transactionId);
+            return;
+        }
+        if (fromShards > 0) {
+            hotAccountLedger.debit(fromAccountId, fromShards, amount, transactionId);
+        }
+        if (toShards > 0) {
+            hotAccountLedger.credit(toAccountId, toShards, amount, transactionId);
         }
         
-        throw new RuntimeException("源账户扣款失败，重试次数已用完");
+        BigDecimal fromBalanceAfter = fromShards > 0
+                ? hotAccountLedger.getBalance(fromAccountId) : journal.balanceOf(fromAccountId);
+        BigDecimal toBalanceAfter = toShards > 0
+                ? hotAccountLedger.getBalance(toAccountId) : journal.balanceOf(toAccountId);
+        saveTransactionRecord(event, fromBalanceAfter, toBalanceAfter);
+        log.info("转账分录追加成功: {}", transactionId);
     }
     
     /**
-     * 更新目标账户余额（乐观锁）
+     * 源账户扣款（余额不足时条件不成立，不更新），返回扣款后余额
      */
-    private void updateToAccountBalance(String accountId, BigDecimal amount, String transactionId) {
-        int maxRetries = 3;
+    private BigDecimal debit(String accountId, BigDecimal amount, String transactionId) {
+        int shardCount = hotAccountLedger.getShardCount(accountId);
+        if (shardCount > 0) {
+            hotAccountLedger.debit(accountId, shardCount, amount, transactionId);
+            return hotAccountLedger.getBalance(accountId);
+        }
         
-        for (int i = 0; i < maxRetries; i++) {
-            try {
-                Account account = accountRepository.findByAccountId(accountId)
-                        .orElseThrow(() -> new RuntimeException("目标账户不存在: " + accountId));
-                
-                BigDecimal newBalance = account.getBalance().add(amount);
-                account.setBalance(newBalance);
-                account.setUpdatedAt(LocalDateTime.now());
-                accountRepository.save(account);
-                
-                log.info("目标账户收款成功: {} 收款金额: {} 新余额: {}", accountId, amount, newBalance);
-                return;
-                
-            } catch (ObjectOptimisticLockingFailureException e) {
-                if (i == maxRetries - 1) {
-                    log.error("目标账户收款失败，乐观锁冲突: {}", accountId, e);
-                    throw new RuntimeException("并发冲突，请重试");
-                }
-                // 重试前删除缓存
-                deleteCache(accountId);
-                log.warn("目标账户收款乐观锁冲突，重试第{}次: {}", i + 1, accountId);
-                try {
-                    Thread.sleep(10 * (i + 1)); // 递增延时
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("收款操作被中断");
-                }
+        if (!sourceDebitEnabled) {
+            // 扣款已由account-service变动日志回写入账，这里只读取当前余额
+            return accountRepository.findBalanceByAccountId(accountId)
+                    .orElseThrow(() -> new RuntimeException("源账户不存在: " + accountId));
+        }
+        
+        if (accountRepository.debitBalance(accountId, amount, LocalDateTime.now()) == 0) {
+            // 条件不成立：本地分片数缓存未失效时账户可能刚开启热点模式，重新读取后按分片入账
+            int refreshed = hotAccountLedger.refreshShardCount(accountId);
+            if (refreshed > 0) {
+                hotAccountLedger.debit(accountId, refreshed, amount, transactionId);
+                return hotAccountLedger.getBalance(accountId);
             }
+            // 区分账户不存在和余额不足
+            accountRepository.findBalanceByAccountId(accountId)
+                    .orElseThrow(() -> new RuntimeException("源账户不存在: " + accountId));
+            throw new RuntimeException("源账户余额不足: " + accountId);
         }
         
-        throw new RuntimeException("目标账户收款失败，重试次数已用完");
+        BigDecimal newBalance = accountRepository.findBalanceByAccountId(accountId)
+                .orElseThrow(() -> new RuntimeException("源账户不存在: " + accountId));
+        log.info("源账户扣款成功: {} 扣款金额: {} 新余额: {}", accountId, amount, newBalance);
+        return newBalance;
     }
     
     /**
-     * 保存交易记录
+     * 目标账户收款，返回收款后余额
      */
-    private void saveTransactionRecord(TransferEvent event) {
-        Transaction transaction = Transaction.builder()
-                .transactionId(event.getTransactionId())
-                .fromAccountId(event.getFromAccountId())
-                .toAccountId(event.getToAccountId())
-                .amount(event.getAmount())
-                .status(Transaction.TransactionStatus.SUCCESS)
-                .clearingStatus(Transaction.ClearingStatus.SUCCESS)
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
-                .build();
+    private BigDecimal credit(String accountId, BigDecimal amount, String transactionId) {
+        int shardCount = hotAccountLedger.getShardCount(accountId);
+        if (shardCount > 0) {
+            hotAccountLedger.credit(accountId, shardCount, amount, transactionId);
+            return hotAccountLedger.getBalance(accountId);
+        }
         
-        transactionRepository.save(transaction);
-        log.info("交易记录保存成功: {}", event.getTransactionId());
-    }
-    
-    /**
-     * 先删除缓存
-     */
-    private void deleteCacheFirst(String accountId) {
-        String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-        redisTemplate.delete(balanceKey);
-        log.debug("先删除缓存: {}", balanceKey);
-    }
-    
-    /**
-     * 延时删除缓存
-     */
-    private void scheduleDelayedDelete(String accountId, long delayMs) {
-        new Thread(() -> {
-            try {
-                Thread.sleep(delayMs);
-                String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-                redisTemplate.delete(balanceKey);
-                log.info("延时删除缓存成功: {} (延时{}ms)", balanceKey, delayMs);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.warn("延时删除被中断: {}", accountId);
-            } catch (Exception e) {
-                log.error("延时删除缓存失败: {}", accountId, e);
+        if (accountRepository.creditBalance(accountId, amount, LocalDateTime.now()) == 0) {
+            int refreshed = hotAccountLedger.refreshShardCount(accountId);
+            if (refreshed > 0) {
+                hotAccountLedger.credit(accountId, refreshed, amount, transactionId);
+                return hotAccountLedger.getBalance(accountId);
             }
-        }).start();
+            throw new RuntimeException("目标账户不存在: " + accountId);
+        }
+        
+        BigDecimal newBalance = accountRepository.findBalanceByAccountId(accountId)
+                .orElseThrow(() -> new RuntimeException("目标账户不存在: " + accountId));
+        log.info("目标账户收款成功: {} 收款金额: {} 新余额: {}", accountId, amount, newBalance);
+        return newBalance;
     }
     
     /**
-     * 删除缓存
+     * 保存交易记录
+     * transaction-service创建转账时已插入该交易，存在时更新状态和余额，不存在时补插
      */
-    private void deleteCache(String accountId) {
-        String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-        redisTemplate.delete(balanceKey);
-        log.debug("删除缓存: {}", balanceKey);
+    private void saveTransactionRecord(TransferEvent event, BigDecimal fromBalanceAfter, BigDecimal toBalanceAfter) {
+        Transaction transaction = transactionRepository.findByTransactionId(event.getTransactionId())
+                .orElseGet(() -> Transaction.builder()
+                        .transactionId(event.getTransactionId())
+                        .fromAccountId(event.getFromAccountId())
+                        .toAccountId(event.getToAccountId())
+                        .amount(event.getAmount())
+                        .createdAt(LocalDateTime.now())
+                        .build());
+        
+        transaction.setStatus(Transaction.TransactionStatus.SUCCESS);
+        transaction.setClearingStatus(Transaction.ClearingStatus.SUCCESS);
+        transaction.setFromBalanceAfter(fromBalanceAfter);
+        transaction.setToBalanceAfter(toBalanceAfter);
+        transaction.setUpdatedAt(LocalDateTime.now());
+        
+        transactionRepository.save(transaction);
+        log.info("交易记录保存成功: {}", event.getTransactionId());
     }
     
     /**
      * 获取账户余额
      */
     public BigDecimal getAccountBalance(String accountId) {
+        if (hotAccountLedger.getShardCount(accountId) > 0) {
+            return hotAccountLedger.getBalance(accountId);
+        }
+        JournalLedger journal = journalLedger.getIfAvailable();
+        if (journal != null) {
+            return journal.balanceOf(accountId);
+        }
         Optional<Account> account = accountRepository.findByAccountId(accountId);
         return account.map(Account::getBalance).orElse(BigDecimal.ZERO);
     }
@@ -0,0 +1,539 @@
+package com.distributebank.ledgerservice.service;
+
+import com.distributebank.common.event.TransferEvent;
+import com.distributebank.common.util.MoneyCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 邮箱记账
+ * 每笔转账先投递到源账户邮箱扣减内存余额，再投递到目标账户邮箱增加内存余额，同一账户的变更按顺序执行、无需加锁；
+ * 两边都生效后进入组提交队列，定时把多笔转账的分录、交易记录在一个数据库事务内提交，提交成功后才确认对应的Kafka记录。
+ * 依赖复式记账日志模式：分录按交易ID唯一，重启后重放的记录在组提交时识别为重复并回滚其内存变更。
+ * 事件按交易ID分区，同一账户的转账会落到不同实例，内存余额只是本实例的视图，不做透支检查，也不写入交易记录：
+ * 透支由account-service在Redis中扣款时拦截，交易记录的源账户扣款后余额取事件携带的值，收款后余额不记录。
+ * 无法入账的转账（账户不存在、组提交多次失败）投递到死信主题并把交易置为失败待人工处理，之后才确认Kafka记录
+ */
+@Service
+@ConditionalOnProperty(name = "ledger.mailbox.enabled", havingValue = "true")
+@Slf4j
+public class MailboxLedger {
+    
+    private static final long LOAD_RETRY_MS = 1000;
+    private static final int MAX_ERROR_LENGTH = 500;
+    
+    private final AccountMailboxes mailboxes;
+    private final ObjectProvider<JournalLedger> journalLedger;
+    private final HotAccountLedger hotAccountLedger;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final KafkaTemplate<String, TransferEvent> kafkaTemplate;
+    private final int maxPending;
+    private final int maxCommitSize;
+    private final int maxCommitAttempts;
+    private final String deadLetterTopic;
+    private final long idleMs;
+    
+    /**
+     * 已接收、尚未组提交的转账上限，占满时阻塞监听线程形成背压
+     */
+    private final Semaphore pending;
+    
+    private final Queue<PendingTransfer> ready = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * 提交失败的批次，下次优先重试；重试次数耗尽后拆成两半入队，拆到单笔仍失败时转入死信（只在调度线程上修改）
+     */
+    private final Deque<RetryBatch> retrying = new ConcurrentLinkedDeque<>();
+    
+    private JournalLedger journal;
+    
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong committedTransfers = new AtomicLong();
+    private final AtomicLong duplicateTransfers = new AtomicLong();
+    private final AtomicLong deadLetteredTransfers = new AtomicLong();
+    private final AtomicLong failedCommits = new AtomicLong();
+    private final AtomicLong splitBatches = new AtomicLong();
+    private final AtomicInteger maxCommitSizeSeen = new AtomicInteger();
+    private volatile int lastCommitSize;
+    private volatile long lastCommitMs;
+    
+    public MailboxLedger(ObjectProvider<JournalLedger> journalLedger,
+                         HotAccountLedger hotAccountLedger,
+                         JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         KafkaTemplate<String, TransferEvent> kafkaTemplate,
+                         @Value("${ledger.mailbox.threads:4}") int threads,
+                         @Value("${ledger.mailbox.throughput:64}") int throughput,
+                         @Value("${ledger.mailbox.max-pending:10000}") int maxPending,
+                         @Value("${ledger.mailbox.commit-max-size:500}") int maxCommitSize,
+                         @Value("${ledger.mailbox.commit-max-attempts:5}") int maxCommitAttempts,
+                         @Value("${ledger.mailbox.dead-letter-topic:ledger-dead-letter-events}") String deadLetterTopic,
+                         @Value("${ledger.mailbox.idle-ms:60000}") long idleMs) {
+        this.mailboxes = new AccountMailboxes(threads, throughput);
+        this.journalLedger = journalLedger;
+        this.hotAccountLedger = hotAccountLedger;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.maxPending = maxPending;
+        this.pending = new Semaphore(maxPending);
+        this.maxCommitSize = maxCommitSize;
+        this.maxCommitAttempts = maxCommitAttempts;
+        this.deadLetterTopic = deadLetterTopic;
+        this.idleMs = idleMs;
+    }
+    
+    @PostConstruct
+    public void init() {
+        journal = journalLedger.getIfAvailable();
+        if (journal == null) {
+            throw new RuntimeException("邮箱记账模式需要开启ledger.journal.enabled=true");
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        mailboxes.shutdown();
+    }
+    
+    /**
+     * 接收一笔清算成功的转账，组提交后确认对应的Kafka记录；
+     * 投递失败（例如停机时邮箱线程池已关闭）时归还占用的名额并抛出异常，由监听容器重新投递该记录
+     */
+    public void submit(TransferEvent event, Acknowledgment ack) throws InterruptedException {
+        pending.acquire();
+        BigDecimal amount;
+        try {
+            amount = MoneyCodec.fromMinorUnits(MoneyCodec.toMinorUnits(event.getAmount()));
+        } catch (RuntimeException e) {
+            deadLetter(new PendingTransfer(event, event.getAmount(), ack), e.getMessage());
+            return;
+        }
+        PendingTransfer transfer = new PendingTransfer(event, amount, ack);
+        try {
+            mailboxes.tell(event.getFromAccountId(), state -> debit(state, transfer));
+        } catch (RuntimeException e) {
+            pending.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * 源账户邮箱：扣减内存余额后转交目标账户邮箱；扣款已在account-service完成，这里不做透支检查
+     */
+    private void debit(AccountMailboxes.AccountState state, PendingTransfer transfer) {
+        if (!ensureLoaded(state, transfer, s -> debit(s, transfer))) {
+            return;
+        }
+        state.apply(transfer.amount.negate());
+        state.addUncommitted(1);
+        transfer.debited = true;
+        transfer.fromShards = state.getShardCount();
+        mailboxes.tell(transfer.event.getToAccountId(), s -> credit(s, transfer));
+    }
+    
+    /**
+     * 目标账户邮箱：增加内存余额，两边都生效后进入组提交队列
+     */
+    private void credit(AccountMailboxes.AccountState state, PendingTransfer transfer) {
+        if (!ensureLoaded(state, transfer, s -> credit(s, transfer))) {
+            return;
+        }
+        state.apply(transfer.amount);
+        state.addUncommitted(1);
+        transfer.toShards = state.getShardCount();
+        ready.offer(transfer);
+    }
+    
+    /**
+     * 首次使用时加载账户余额；数据库异常时稍后重新投递该消息，账户不存在时拒绝转账
+     */
+    private boolean ensureLoaded(AccountMailboxes.AccountState state, PendingTransfer transfer,
+                                 Consumer<AccountMailboxes.AccountState> retry) {
+        if (state.isLoaded()) {
+            return true;
+        }
+        String accountId = state.getAccountId();
+        try {
+            int shardCount = hotAccountLedger.getShardCount(accountId);
+            BigDecimal balance = shardCount > 0 ? hotAccountLedger.getBalance(accountId) : journal.balanceOf(accountId);
+            state.load(balance, shardCount);
+            return true;
+        } catch (DataAccessException e) {
+            log.error("加载账户余额失败，稍后重试: {}", accountId, e);
+            CompletableFuture.delayedExecutor(LOAD_RETRY_MS, TimeUnit.MILLISECONDS)
+                    .execute(() -> mailboxes.tell(accountId, retry));
+        } catch (Exception e) {
+            if (accountId.equals(transfer.event.getToAccountId()) && transfer.debited) {
+                // 源账户已扣减内存余额，退回
+                mailboxes.tell(transfer.event.getFromAccountId(), s -> revert(s, transfer.amount));
+            }
+            deadLetter(transfer, e.getMessage());
+        }
+        return false;
+    }
+    
+    private void revert(AccountMailboxes.AccountState state, BigDecimal delta) {
+        state.apply(delta);
+        state.addUncommitted(-1);
+    }
+    
+    /**
+     * 无法入账的转账：交易置为失败待人工处理并投递到死信主题，两步都成功后才确认Kafka记录，否则稍后重试；
+     * 调用前需已撤销该转账的内存变更
+     */
+    private void deadLetter(PendingTransfer transfer, String reason) {
+        String transactionId = transfer.event.getTransactionId();
+        log.error("转账入账失败，转入死信待人工处理: {} 原因: {}", transactionId, reason);
+        CompletableFuture<?> parked;
+        try {
+            markForManualReview(transfer, reason);
+            parked = kafkaTemplate.send(deadLetterTopic, transactionId, transfer.event);
+        } catch (Exception e) {
+            parked = CompletableFuture.failedFuture(e);
+        }
+        parked.whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("转账转入死信失败，稍后重试: {}", transactionId, e);
+                CompletableFuture.delayedExecutor(LOAD_RETRY_MS, TimeUnit.MILLISECONDS)
+                        .execute(() -> deadLetter(transfer, reason));
+                return;
+            }
+            deadLetteredTransfers.incrementAndGet();
+            pending.release();
+            transfer.ack.acknowledge();
+        });
+    }
+    
+    /**
+     * 交易记录置为失败并写明原因，供人工处理；已成功入账的交易不回退
+     */
+    private void markForManualReview(PendingTransfer transfer, String reason) {
+        String message = "入账失败，待人工处理: " + reason;
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(
+                "INSERT INTO transactions (transaction_id, from_account_id, to_account_id, amount, status, " +
+                "clearing_status, error_message, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, 'FAILED', 'SUCCESS', ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE error_message = IF(status = 'SUCCESS', error_message, VALUES(error_message)), " +
+                "status = IF(status = 'SUCCESS', status, 'FAILED'), updated_at = VALUES(updated_at)",
+                transfer.event.getTransactionId(), transfer.event.getFromAccountId(), transfer.event.getToAccountId(),
+                transfer.amount, message, now, now);
+    }
+    
+    /**
+     * 定时组提交：每个批次一个数据库事务；失败的批次保留，下次优先重试，期间不确认对应的Kafka记录。
+     * 数据库不可用时无限重试；其他异常重试commit-max-attempts次后把批次拆成两半分别提交，
+     * 拆到单笔仍失败的转账撤销内存变更并转入死信，不再阻塞其他转账
+     */
+    @Scheduled(fixedDelayString = "${ledger.mailbox.commit-interval-ms:50}")
+    public void groupCommit() {
+        while (true) {
+            RetryBatch batch = retrying.peekFirst();
+            if (batch == null) {
+                List<PendingTransfer> drained = drain();
+                if (drained.isEmpty()) {
+                    return;
+                }
+                batch = new RetryBatch(drained);
+                retrying.addFirst(batch);
+            }
+            try {
+                commit(batch.transfers);
+                retrying.pollFirst();
+                continue;
+            } catch (Exception e) {
+                failedCommits.incrementAndGet();
+                if (isTransient(e)) {
+                    log.error("组提交失败（数据库不可用），{}笔转账稍后重试", batch.transfers.size(), e);
+                    return;
+                }
+                batch.attempts++;
+                log.error("组提交失败（第{}次），{}笔转账稍后重试", batch.attempts, batch.transfers.size(), e);
+                if (batch.attempts < maxCommitAttempts) {
+                    return;
+                }
+            }
+            retrying.pollFirst();
+            if (batch.transfers.size() == 1) {
+                PendingTransfer transfer = batch.transfers.get(0);
+                mailboxes.tell(transfer.event.getFromAccountId(), s -> revert(s, transfer.amount));
+                mailboxes.tell(transfer.event.getToAccountId(), s -> revert(s, transfer.amount.negate()));
+                deadLetter(transfer, "组提交重试" + maxCommitAttempts + "次仍失败");
+                continue;
+            }
+            // 拆成两半分别重试，定位导致失败的转账
+            int middle = batch.transfers.size() / 2;
+            splitBatches.incrementAndGet();
+            retrying.addFirst(new RetryBatch(batch.transfers.subList(middle, batch.transfers.size())));
+            retrying.addFirst(new RetryBatch(batch.transfers.subList(0, middle)));
+            return;
+        }
+    }
+    
+    /**
+     * 连接失败、死锁、锁超时等与具体转账无关的异常，不计入重试次数
+     */
+    private boolean isTransient(Exception e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+    
+    private List<PendingTransfer> drain() {
+        List<PendingTransfer> batch = new ArrayList<>();
+        PendingTransfer transfer;
+        while (batch.size() < maxCommitSize && (transfer = ready.poll()) != null) {
+            batch.add(transfer);
+        }
+        return batch;
+    }
+    
+    private void commit(List<PendingTransfer> batch) {
+        long start = System.nanoTime();
+        boolean[] appended = transactionTemplate.execute(status -> {
+            boolean[] result = journal.appendAll(batch.stream()
+                    .map(t -> new JournalLedger.Entry(t.event.getTransactionId(), t.event.getFromAccountId(),
+                            t.event.getToAccountId(), t.amount))
+                    .toList());
+            saveTransactionRecords(batch, result);
+            applyShardDeltas(batch, result);
+            return result;
+        });
+        
+        for (int i = 0; i < batch.size(); i++) {
+            PendingTransfer transfer = batch.get(i);
+            if (appended[i]) {
+                mailboxes.tell(transfer.event.getFromAccountId(), s -> s.addUncommitted(-1));
+                mailboxes.tell(transfer.event.getToAccountId(), s -> s.addUncommitted(-1));
+            } else {
+                // 重放的已入账转账（分录影响行数为0），撤销其内存变更
+                duplicateTransfers.incrementAndGet();
+                mailboxes.tell(transfer.event.getFromAccountId(), s -> revert(s, transfer.amount));
+                mailboxes.tell(transfer.event.getToAccountId(), s -> revert(s, transfer.amount.negate()));
+            }
+            transfer.ack.acknowledge();
+        }
+        pending.release(batch.size());
+        
+        commits.incrementAndGet();
+        committedTransfers.addAndGet(batch.size());
+        lastCommitSize = batch.size();
+        maxCommitSizeSeen.accumulateAndGet(batch.size(), Math::max);
+        lastCommitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.debug("组提交完成: {}笔转账, 耗时{}ms", batch.size(), lastCommitMs);
+    }
+    
+    /**
+     * 批量保存本批新入账转账的交易记录，transaction-service已插入的记录更新状态和源账户扣款后余额；
+     * 内存余额不是账户的全局余额，收款后余额不记录
+     */
+    private void saveTransactionRecords(List<PendingTransfer> batch, boolean[] appended) {
+        List<PendingTransfer> applied = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (appended[i]) {
+                applied.add(batch.get(i));
+            }
+        }
+        if (applied.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO transactions (transaction_id, from_account_id, to_account_id, amount, status, " +
+                "clearing_status, from_balance_after, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, 'SUCCESS', 'SUCCESS', ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE status = 'SUCCESS', clearing_status = 'SUCCESS', " +
+                "from_balance_after = VALUES(from_balance_after), updated_at = VALUES(updated_at)",
+                applied.stream()
+                        .map(t -> new Object[] {t.event.getTransactionId(), t.event.getFromAccountId(),
+                                t.event.getToAccountId(), t.amount, t.event.getFromBalanceAfter(), now, now})
+                        .toList());
+    }
+    
+    /**
+     * 热点分片账户按本批净额各执行一次分片扣款或收款
+     */
+    private void applyShardDeltas(List<PendingTransfer> batch, boolean[] appended) {
+        Map<String, BigDecimal> nets = new LinkedHashMap<>();
+        Map<String, Integer> shardCounts = new LinkedHashMap<>();
+        Map<String, String> shardKeys = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (!appended[i]) {
+                continue;
+            }
+            PendingTransfer t = batch.get(i);
+            if (t.fromShards > 0) {
+                nets.merge(t.event.getFromAccountId(), t.amount.negate(), BigDecimal::add);
+                shardCounts.put(t.event.getFromAccountId(), t.fromShards);
+                shardKeys.putIfAbsent(t.event.getFromAccountId(), t.event.getTransactionId());
+            }
+            if (t.toShards > 0) {
+                nets.merge(t.event.getToAccountId(), t.amount, BigDecimal::add);
+                shardCounts.put(t.event.getToAccountId(), t.toShards);
+                shardKeys.putIfAbsent(t.event.getToAccountId(), t.event.getTransactionId());
+            }
+        }
+        nets.forEach((accountId, net) -> {
+            if (net.signum() < 0) {
+                hotAccountLedger.debit(accountId, shardCounts.get(accountId), net.negate(), shardKeys.get(accountId));
+            } else if (net.signum() > 0) {
+                hotAccountLedger.credit(accountId, shardCounts.get(accountId), net, shardKeys.get(accountId));
+            }
+        });
+    }
+    
+    /**
+     * 定时回收空闲邮箱
+     */
+    @Scheduled(fixedDelayString = "${ledger.mailbox.idle-ms:60000}")
+    public void evictIdleMailboxes() {
+        int evicted = mailboxes.evictIdle(idleMs);
+        if (evicted > 0) {
+            log.debug("回收空闲账户邮箱{}个", evicted);
+        }
+    }
+    
+    /**
+     * 获取邮箱记账统计
+     */
+    public MailboxLedgerStats getStats() {
+        long commitCount = commits.get();
+        return new MailboxLedgerStats(
+                mailboxes.getStats(),
+                maxPending - pending.availablePermits(),
+                ready.size() + retrying.stream().mapToInt(batch -> batch.transfers.size()).sum(),
+                commitCount,
+                committedTransfers.get(),
+                commitCount > 0 ? (double) committedTransfers.get() / commitCount : 0,
+                lastCommitSize,
+                maxCommitSizeSeen.get(),
+                lastCommitMs,
+                failedCommits.get(),
+                splitBatches.get(),
+                duplicateTransfers.get(),
+                deadLetteredTransfers.get()
+        );
+    }
+    
+    /**
+     * 等待组提交的转账
+     */
+    private static class PendingTransfer {
+        private final TransferEvent event;
+        private final BigDecimal amount;
+        private final Acknowledgment ack;
+        private volatile boolean debited;
+        private volatile int fromShards;
+        private volatile int toShards;
+        
+        PendingTransfer(TransferEvent event, BigDecimal amount, Acknowledgment ack) {
+            this.event = event;
+            this.amount = amount;
+            this.ack = ack;
+        }
+    }
+    
+    /**
+     * 提交失败待重试的批次
+     */
+    private static class RetryBatch {
+        private final List<PendingTransfer> transfers;
+        private int attempts;
+        
+        RetryBatch(List<PendingTransfer> transfers) {
+            this.transfers = transfers;
+        }
+    }
+    
+    /**
+     * 邮箱记账统计类
+     */
+    public static class MailboxLedgerStats {
+        private AccountMailboxes.MailboxStats mailboxes;
+        private int pendingTransfers;
+        private int awaitingCommit;
+        private long commits;
+        private long committedTransfers;
+        private double averageCommitSize;
+        private int lastCommitSize;
+        private int maxCommitSize;
+        private long lastCommitMs;
+        private long failedCommits;
+        private long splitBatches;
+        private long duplicateTransfers;
+        private long deadLetteredTransfers;
+        
+        public MailboxLedgerStats(AccountMailboxes.MailboxStats mailboxes, int pendingTransfers, int awaitingCommit,
+                                  long commits, long committedTransfers, double averageCommitSize,
+                                  int lastCommitSize, int maxCommitSize, long lastCommitMs, long failedCommits,
+                                  long splitBatches, long duplicateTransfers, long deadLetteredTransfers) {
+            this.mailboxes = mailboxes;
+            this.pendingTransfers = pendingTransfers;
+            this.awaitingCommit = awaitingCommit;
+            this.commits = commits;
+            this.committedTransfers = committedTransfers;
+            this.averageCommitSize = averageCommitSize;
+            this.lastCommitSize = lastCommitSize;
+            this.maxCommitSize = maxCommitSize;
+            this.lastCommitMs = lastCommitMs;
+            this.failedCommits = failedCommits;
+            this.splitBatches = splitBatches;
+            this.duplicateTransfers = duplicateTransfers;
+            this.deadLetteredTransfers = deadLetteredTransfers;
+        }
+        
+        // getters
+        public AccountMailboxes.MailboxStats getMailboxes() { return mailboxes; }
+        public int getPendingTransfers() { return pendingTransfers; }
+        public int getAwaitingCommit() { return awaitingCommit; }
+        public long getCommits() { return commits; }
+        public long getCommittedTransfers() { return committedTransfers; }
+        public double getAverageCommitSize() { return averageCommitSize; }
+        public int getLastCommitSize() { return lastCommitSize; }
+        public int getMaxCommitSize() { return maxCommitSize; }
+        public long getLastCommitMs() { return lastCommitMs; }
+        public long getFailedCommits() { return failedCommits; }
+        public long getSplitBatches() { return splitBatches; }
+        public long getDuplicateTransfers() { return duplicateTransfers; }
+        public long getDeadLetteredTransfers() { return deadLetteredTransfers; }
+    }
+}
\ No newline at end of file
@@ -21,7 +21,8 @@ public class NotificationEventHandler {
     /**
      * 消费清算成功事件，发送成功通知
      */
-    @KafkaListener(topics = "transfer-events", groupId = "notification-service-success")
+    @KafkaListener(topics = "#{@transferEventTopics.topicsFor('CLEARING_SUCCESS')}", groupId = "notification-service-success",
+            properties = "transfer.events.accepted-types=CLEARING_SUCCESS")
     public void handleClearingSuccessEvent(TransferEvent event) {
         if (event.getEventType() != TransferEvent.EventType.CLEARING_SUCCESS) {
             return;
@@ -39,7 +40,8 @@ public class NotificationEventHandler {
     /**
      * 消费清算失败事件，发送失败通知
      */
-    @KafkaListener(topics = "transfer-events", groupId = "notification-service-failed")
+    @KafkaListener(topics = "#{@transferEventTopics.topicsFor('CLEARING_FAILED')}", groupId = "notification-service-failed",
+            properties = "transfer.events.accepted-types=CLEARING_FAILED")
     public void handleClearingFailedEvent(TransferEvent event) {
         if (event.getEventType() != TransferEvent.EventType.CLEARING_FAILED) {
             return;
@@ -0,0 +1,19 @@
+package com.distributebank.reconciliationservice.repository;
+
+import com.distributebank.common.model.AccountBalanceShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 热点账户余额分片数据访问层
+ */
+@Repository
+public interface AccountShardRepository extends JpaRepository<AccountBalanceShard, Long> {
+    
+    /**
+     * 查询账户的全部分片
+     */
+    List<AccountBalanceShard> findByAccountIdOrderByShardNoAsc(String accountId);
+}
\ No newline at end of file
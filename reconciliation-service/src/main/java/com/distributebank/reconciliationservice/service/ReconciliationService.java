@@ -1,7 +1,13 @@
 package com.distributebank.reconciliationservice.service;
 
+import com.distributebank.common.cache.BalanceCacheInvalidation;
+import com.distributebank.common.cache.BalanceKeys;
+import com.distributebank.common.cache.BalanceShardKeys;
 import com.distributebank.common.model.Account;
+import com.distributebank.common.model.AccountBalanceShard;
+import com.distributebank.common.util.MoneyCodec;
 import com.distributebank.reconciliationservice.repository.AccountRepository;
+import com.distributebank.reconciliationservice.repository.AccountShardRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -22,9 +28,10 @@ import java.util.List;
 public class ReconciliationService {
     
     private final AccountRepository accountRepository;
+    private final AccountShardRepository accountShardRepository;
     private final RedisTemplate<String, String> redisTemplate;
     
-    private static final String ACCOUNT_BALANCE_PREFIX = "account:balance:";
+    private static final String ACCOUNT_BALANCE_PREFIX = BalanceKeys.PREFIX;
     
     /**
      * 定时对账任务，每5分钟执行一次
@@ -54,18 +61,26 @@ public class ReconciliationService {
         String accountId = account.getAccountId();
         BigDecimal dbBalance = account.getBalance();
         
+        // 热点账户按分片逐个比对
+        List<AccountBalanceShard> shards = accountShardRepository.findByAccountIdOrderByShardNoAsc(accountId);
+        if (!shards.isEmpty()) {
+            reconcileShards(accountId, shards);
+            return;
+        }
+        
         // 获取Redis中的余额
         String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
         String redisBalanceStr = redisTemplate.opsForValue().get(balanceKey);
         
         if (redisBalanceStr == null) {
             // Redis中没有余额记录，同步数据库余额到Redis
-            redisTemplate.opsForValue().set(balanceKey, dbBalance.toString());
+            redisTemplate.opsForValue().set(balanceKey, MoneyCodec.encode(dbBalance));
+            publishCacheInvalidation(accountId);
             log.info("账户{}余额同步到Redis: {}", accountId, dbBalance);
             return;
         }
         
-        BigDecimal redisBalance = new BigDecimal(redisBalanceStr);
+        BigDecimal redisBalance = MoneyCodec.decode(redisBalanceStr);
         
         // 比较Redis和数据库余额
         if (dbBalance.compareTo(redisBalance) != 0) {
@@ -81,6 +96,59 @@ public class ReconciliationService {
         }
     }
     
+    /**
+     * 热点账户分片对账：各分片键分别与数据库分片行比对，缺失的补齐，不一致的以数据库为准
+     */
+    private void reconcileShards(String accountId, List<AccountBalanceShard> shards) {
+        List<String> keys = shards.stream()
+                .map(shard -> BalanceShardKeys.shardKey(accountId, shard.getShardNo()))
+                .toList();
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        
+        for (int i = 0; i < shards.size(); i++) {
+            AccountBalanceShard shard = shards.get(i);
+            String value = values != null ? values.get(i) : null;
+            if (value == null) {
+                redisTemplate.opsForValue().set(keys.get(i), MoneyCodec.encode(shard.getBalance()));
+                log.info("热点账户{}分片{}余额同步到Redis: {}", accountId, shard.getShardNo(), shard.getBalance());
+                continue;
+            }
+            
+            BigDecimal redisBalance = MoneyCodec.decode(value);
+            if (shard.getBalance().compareTo(redisBalance) != 0) {
+                log.warn("热点账户{}分片{}余额不一致 - 数据库: {}, Redis: {}", 
+                        accountId, shard.getShardNo(), shard.getBalance(), redisBalance);
+                recordBalanceDifference(accountId + ":shard:" + shard.getShardNo(), shard.getBalance(), redisBalance);
+                redisTemplate.opsForValue().set(keys.get(i), MoneyCodec.encode(shard.getBalance()));
+            }
+        }
+    }
+    
+    /**
+     * 账户余额（数据库、Redis），热点账户为各分片之和
+     */
+    private BigDecimal[] loadBalances(Account account) {
+        String accountId = account.getAccountId();
+        List<AccountBalanceShard> shards = accountShardRepository.findByAccountIdOrderByShardNoAsc(accountId);
+        if (shards.isEmpty()) {
+            String redisBalanceStr = redisTemplate.opsForValue().get(ACCOUNT_BALANCE_PREFIX + accountId);
+            BigDecimal redisBalance = redisBalanceStr != null ? MoneyCodec.decode(redisBalanceStr) : BigDecimal.ZERO;
+            return new BigDecimal[] {account.getBalance(), redisBalance};
+        }
+        
+        BigDecimal dbBalance = BigDecimal.ZERO;
+        BigDecimal redisBalance = BigDecimal.ZERO;
+        List<String> values = redisTemplate.opsForValue().multiGet(
+                BalanceShardKeys.shardKeys(accountId, shards.size()));
+        for (int i = 0; i < shards.size(); i++) {
+            dbBalance = dbBalance.add(shards.get(i).getBalance());
+            if (values != null && values.get(i) != null) {
+                redisBalance = redisBalance.add(MoneyCodec.decode(values.get(i)));
+            }
+        }
+        return new BigDecimal[] {dbBalance, redisBalance};
+    }
+    
     /**
      * 记录余额差异
      */
@@ -98,10 +166,19 @@ public class ReconciliationService {
      */
     private void autoFixBalance(String accountId, BigDecimal dbBalance) {
         String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-        redisTemplate.opsForValue().set(balanceKey, dbBalance.toString());
+        redisTemplate.opsForValue().set(balanceKey, MoneyCodec.encode(dbBalance));
+        publishCacheInvalidation(accountId);
         log.info("自动修复账户{}余额: {}", accountId, dbBalance);
     }
     
+    /**
+     * 通知account-service各实例失效近端缓存
+     */
+    private void publishCacheInvalidation(String accountId) {
+        redisTemplate.convertAndSend(BalanceCacheInvalidation.CHANNEL,
+                BalanceCacheInvalidation.encode("reconciliation-service", accountId));
+    }
+    
     /**
      * 手动触发对账
      */
@@ -112,16 +189,14 @@ public class ReconciliationService {
             Account account = accountRepository.findByAccountId(accountId)
                     .orElseThrow(() -> new RuntimeException("账户不存在: " + accountId));
             
-            BigDecimal dbBalance = account.getBalance();
-            String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-            String redisBalanceStr = redisTemplate.opsForValue().get(balanceKey);
-            
-            BigDecimal redisBalance = redisBalanceStr != null ? new BigDecimal(redisBalanceStr) : BigDecimal.ZERO;
+            BigDecimal[] balances = loadBalances(account);
+            BigDecimal dbBalance = balances[0];
+            BigDecimal redisBalance = balances[1];
             boolean isConsistent = dbBalance.compareTo(redisBalance) == 0;
             
             if (!isConsistent) {
-                // 自动修复
-                autoFixBalance(accountId, dbBalance);
+                // 自动修复（热点账户逐分片修复）
+                reconcileAccountBalance(account);
             }
             
             return new ReconciliationResult(accountId, dbBalance, redisBalance, isConsistent);
@@ -140,10 +215,9 @@ public class ReconciliationService {
         return accounts.stream()
                 .map(account -> {
                     String accountId = account.getAccountId();
-                    BigDecimal dbBalance = account.getBalance();
-                    String balanceKey = ACCOUNT_BALANCE_PREFIX + accountId;
-                    String redisBalanceStr = redisTemplate.opsForValue().get(balanceKey);
-                    BigDecimal redisBalance = redisBalanceStr != null ? new BigDecimal(redisBalanceStr) : BigDecimal.ZERO;
+                    BigDecimal[] balances = loadBalances(account);
+                    BigDecimal dbBalance = balances[0];
+                    BigDecimal redisBalance = balances[1];
                     boolean isConsistent = dbBalance.compareTo(redisBalance) == 0;
                     
                     return new ReconciliationResult(accountId, dbBalance, redisBalance, isConsistent);
@@ -9,12 +9,19 @@ echo "=========================================="
 # 检查Java版本
 echo "检查Java版本..."
 java_version=$(java -version 2>&1 | head -n 1 | cut -d'"' -f2 | cut -d'.' -f1)
-if [ "$java_version" -lt 17 ]; then
-    echo "错误: 需要Java 17或更高版本，当前版本: $java_version"
+if [ "$java_version" -lt 21 ]; then
+    echo "错误: 需要Java 21或更高版本，当前版本: $java_version"
     exit 1
 fi
 echo "Java版本检查通过: $(java -version 2>&1 | head -n 1)"
 
+# 虚拟线程执行模式：VIRTUAL_THREADS=true ./start-services.sh
+RUN_ARGS=""
+if [ "$VIRTUAL_THREADS" = "true" ]; then
+    RUN_ARGS="-Dspring-boot.run.profiles=virtual-threads -Dspring-boot.run.jvmArguments=-Djdk.tracePinnedThreads=short"
+    echo "已启用虚拟线程执行模式"
+fi
+
 # 检查Maven
 echo "检查Maven..."
 if ! command -v mvn &> /dev/null; then
@@ -77,27 +84,27 @@ echo "开始启动微服务..."
 
 # 启动微服务（后台运行）
 echo "启动transaction-service (端口: 8081)..."
-mvn spring-boot:run -pl transaction-service > logs/transaction-service.log 2>&1 &
+mvn spring-boot:run -pl transaction-service $RUN_ARGS > logs/transaction-service.log 2>&1 &
 TRANSACTION_PID=$!
 
 echo "启动account-service (端口: 8082)..."
-mvn spring-boot:run -pl account-service > logs/account-service.log 2>&1 &
+mvn spring-boot:run -pl account-service $RUN_ARGS > logs/account-service.log 2>&1 &
 ACCOUNT_PID=$!
 
 echo "启动clearing-service (端口: 8083)..."
-mvn spring-boot:run -pl clearing-service > logs/clearing-service.log 2>&1 &
+mvn spring-boot:run -pl clearing-service $RUN_ARGS > logs/clearing-service.log 2>&1 &
 CLEARING_PID=$!
 
 echo "启动ledger-service (端口: 8084)..."
-mvn spring-boot:run -pl ledger-service > logs/ledger-service.log 2>&1 &
+mvn spring-boot:run -pl ledger-service $RUN_ARGS > logs/ledger-service.log 2>&1 &
 LEDGER_PID=$!
 
 echo "启动reconciliation-service (端口: 8085)..."
-mvn spring-boot:run -pl reconciliation-service > logs/reconciliation-service.log 2>&1 &
+mvn spring-boot:run -pl reconciliation-service $RUN_ARGS > logs/reconciliation-service.log 2>&1 &
 RECONCILIATION_PID=$!
 
 echo "启动notification-service (端口: 8086)..."
-mvn spring-boot:run -pl notification-service > logs/notification-service.log 2>&1 &
+mvn spring-boot:run -pl notification-service $RUN_ARGS > logs/notification-service.log 2>&1 &
 NOTIFICATION_PID=$!
 
 # 创建logs目录
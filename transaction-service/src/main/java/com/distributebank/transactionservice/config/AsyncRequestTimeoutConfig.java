@@ -0,0 +1,35 @@
+package com.distributebank.transactionservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 按接口设置异步请求超时
+ * 处理方法把超时毫秒数放入请求属性TIMEOUT_ATTRIBUTE，开始异步处理前覆盖全局默认超时；
+ * 用于流式导出这类需要长时间写出的接口，其他异步请求仍使用默认超时
+ */
+@Configuration
+public class AsyncRequestTimeoutConfig implements WebMvcConfigurer {
+    
+    public static final String TIMEOUT_ATTRIBUTE = AsyncRequestTimeoutConfig.class.getName() + ".timeout";
+    
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                Object timeout = request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if (timeout instanceof Long timeoutMs && request instanceof AsyncWebRequest asyncRequest) {
+                    asyncRequest.setTimeout(timeoutMs);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package com.distributebank.transactionservice.config;
+
+import com.distributebank.common.util.TransactionIdGenerator;
+import com.distributebank.transactionservice.service.WorkerIdLease;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 交易ID生成器配置
+ * 工作节点ID可显式配置（由部署保证唯一）；未配置时启动时从Redis领取带TTL的租约并定时续约，
+ * 租约失效后生成器拒绝生成ID，同时存活的实例不会共用同一ID
+ */
+@Configuration
+@Slf4j
+public class IdGeneratorConfig {
+    
+    @Bean
+    public TransactionIdGenerator transactionIdGenerator(WorkerIdLease workerIdLease,
+                                                         @Value("${transaction.id.worker-id:-1}") int workerId) {
+        if (workerId < 0) {
+            return new TransactionIdGenerator(workerIdLease.acquire(), workerIdLease::isValid);
+        }
+        log.info("使用配置的交易ID工作节点ID: {}", workerId);
+        return new TransactionIdGenerator(workerId);
+    }
+}
@@ -0,0 +1,73 @@
+package com.distributebank.transactionservice.config;
+
+import com.distributebank.common.event.TransferEvent;
+import com.distributebank.common.kafka.TransferEventTopics;
+import com.distributebank.common.kafka.TransferEventTypeFilteringDeserializer;
+import com.distributebank.transactionservice.handler.TransactionStatusNotifyHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.PartitionInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.support.TopicPartitionOffset;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 转账状态通知监听容器配置
+ * 手动分配状态事件主题的全部分区并从末尾开始消费，不加入消费组、不提交位点：
+ * 每个实例都能收到全部状态事件，重启后也不会在broker上遗留消费组；
+ * 只订阅会改变交易状态的三类事件（处理完成、清算成功、清算失败），其他类型在反序列化前按消息头跳过
+ */
+@Configuration
+@Slf4j
+public class StatusNotifyListenerConfig {
+    
+    private static final String[] STATUS_EVENT_TYPES = {"TRANSFER_PROCESSED", "CLEARING_SUCCESS", "CLEARING_FAILED"};
+    
+    @Bean
+    public KafkaMessageListenerContainer<Object, Object> statusNotifyListenerContainer(
+            ConsumerFactory<Object, Object> consumerFactory,
+            TransferEventTopics transferEventTopics,
+            TransactionStatusNotifyHandler handler,
+            @Value("${transaction.status.notify.partition-lookup-timeout-ms:10000}") long lookupTimeoutMs) {
+        
+        List<TopicPartitionOffset> partitions = new ArrayList<>();
+        try (Consumer<Object, Object> consumer = consumerFactory.createConsumer()) {
+            for (String topic : new LinkedHashSet<>(List.of(transferEventTopics.topicsFor(STATUS_EVENT_TYPES)))) {
+                List<PartitionInfo> infos = consumer.partitionsFor(topic, Duration.ofMillis(lookupTimeoutMs));
+                if (infos == null || infos.isEmpty()) {
+                    throw new IllegalStateException("未找到状态事件主题分区: " + topic);
+                }
+                for (PartitionInfo info : infos) {
+                    partitions.add(new TopicPartitionOffset(topic, info.partition(), TopicPartitionOffset.SeekPosition.END));
+                }
+            }
+        }
+        
+        ContainerProperties containerProperties = new ContainerProperties(partitions.toArray(new TopicPartitionOffset[0]));
+        // 手动确认且监听器从不确认：容器不会提交任何位点
+        containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        Properties consumerProperties = new Properties();
+        consumerProperties.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        consumerProperties.setProperty(TransferEventTypeFilteringDeserializer.ACCEPTED_TYPES_CONFIG,
+                String.join(",", STATUS_EVENT_TYPES));
+        containerProperties.setKafkaConsumerProperties(consumerProperties);
+        containerProperties.setMessageListener(
+                (MessageListener<Object, Object>) record -> handler.handleStatusNotification(
+                        record.value() instanceof TransferEvent event ? event : null));
+        
+        log.info("状态通知监听手动分配分区数: {}", partitions.size());
+        return new KafkaMessageListenerContainer<>(consumerFactory, containerProperties);
+    }
+}
@@ -0,0 +1,28 @@
+package com.distributebank.transactionservice.controller;
+
+import com.distributebank.common.dto.Result;
+import com.distributebank.transactionservice.service.OutboxRelay;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 发件箱监控控制器
+ */
+@RestController
+@RequestMapping("/api/transactions/outbox")
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxController {
+    
+    private final OutboxRelay outboxRelay;
+    
+    /**
+     * 查询发件箱投递统计（积压、吞吐、投递延迟）
+     * GET /api/transactions/outbox/stats
+     */
+    @GetMapping("/stats")
+    public Result<OutboxRelay.RelayStats> getStats() {
+        return Result.success(outboxRelay.getStats());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.distributebank.transactionservice.controller;
+
+import com.distributebank.common.dto.Result;
+import com.distributebank.transactionservice.service.PayrollImportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+
+/**
+ * 代发工资文件导入控制器
+ * 请求体直接为CSV或NDJSON文件内容，服务端边读边处理，不在内存中保留整个文件
+ */
+@RestController
+@RequestMapping("/api/transactions/payroll-imports")
+@RequiredArgsConstructor
+@Slf4j
+public class PayrollImportController {
+    
+    private final PayrollImportService payrollImportService;
+    
+    /**
+     * 上传代发工资文件
+     * POST /api/transactions/payroll-imports?fromAccountId=ACC005&format=csv
+     */
+    @PostMapping
+    public Result<PayrollImportService.ImportResult> importPayroll(@RequestParam String fromAccountId,
+                                                                    @RequestParam(defaultValue = "csv") String format,
+                                                                    InputStream body) {
+        log.info("收到代发工资文件: 付款账户{} 格式{}", fromAccountId, format);
+        try {
+            return Result.success("代发工资文件已处理", payrollImportService.startImport(fromAccountId, format, body));
+        } catch (Exception e) {
+            log.error("代发工资文件导入失败", e);
+            return Result.error(500, "导入失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 失败后重新上传同一文件，从检查点续传
+     * POST /api/transactions/payroll-imports/{importId}/resume
+     */
+    @PostMapping("/{importId}/resume")
+    public Result<PayrollImportService.ImportResult> resumeImport(@PathVariable String importId, InputStream body) {
+        log.info("续传代发工资文件: {}", importId);
+        try {
+            return Result.success("代发工资文件已续传", payrollImportService.resumeImport(importId, body));
+        } catch (Exception e) {
+            log.error("代发工资文件续传失败", e);
+            return Result.error(500, "续传失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 查询导入进度
+     * GET /api/transactions/payroll-imports/{importId}
+     */
+    @GetMapping("/{importId}")
+    public Result<PayrollImportService.ImportResult> getImport(@PathVariable String importId) {
+        try {
+            return Result.success(payrollImportService.getImport(importId));
+        } catch (Exception e) {
+            log.error("查询导入进度失败", e);
+            return Result.error(500, "查询失败: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
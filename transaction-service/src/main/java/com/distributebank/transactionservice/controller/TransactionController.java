@@ -3,11 +3,22 @@ package com.distributebank.transactionservice.controller;
 import com.distributebank.common.dto.Result;
 import com.distributebank.common.dto.TransferRequest;
 import com.distributebank.transactionservice.service.TransactionService;
+import com.distributebank.transactionservice.service.TransactionStatusNotifier;
+import com.distributebank.transactionservice.service.TransferRateLimiter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.util.function.Consumer;
 
 /**
  * 转账控制器
@@ -20,20 +31,40 @@ import jakarta.validation.Valid;
 public class TransactionController {
     
     private final TransactionService transactionService;
+    private final TransactionStatusNotifier statusNotifier;
+    private final TransferRateLimiter rateLimiter;
+    
+    /**
+     * 长轮询最长等待时间
+     */
+    @Value("${transaction.status.long-poll-timeout-ms:30000}")
+    private long longPollTimeoutMs;
+    
+    /**
+     * SSE连接最长保持时间
+     */
+    @Value("${transaction.status.sse-timeout-ms:60000}")
+    private long sseTimeoutMs;
     
     /**
      * 发起转账
      * POST /api/transactions/transfer
      */
     @PostMapping("/transfer")
-    public Result<String> transfer(@Valid @RequestBody TransferRequest request) {
+    public ResponseEntity<Result<String>> transfer(@Valid @RequestBody TransferRequest request,
+                                                   HttpServletRequest httpRequest) {
         log.info("收到转账请求: {}", request);
+        TransferRateLimiter.Decision decision =
+                rateLimiter.tryAcquire(clientIdOf(httpRequest), request.getFromAccountId(), 1);
+        if (!decision.isAdmitted()) {
+            return tooManyRequests(decision);
+        }
         try {
             String transactionId = transactionService.createTransfer(request);
-            return Result.success("转账请求已提交", transactionId);
+            return ResponseEntity.ok(Result.success("转账请求已提交", transactionId));
         } catch (Exception e) {
             log.error("转账失败", e);
-            return Result.error(500, "转账失败: " + e.getMessage());
+            return ResponseEntity.ok(Result.error(500, "转账失败: " + e.getMessage()));
         }
     }
     
@@ -53,20 +84,151 @@ public class TransactionController {
         }
     }
     
+    /**
+     * 长轮询转账状态：交易进入终态（SUCCESS/FAILED）时立即返回，超时返回当前状态
+     * GET /api/transactions/{transactionId}/wait?timeoutMs=
+     */
+    @GetMapping("/{transactionId}/wait")
+    public DeferredResult<Result<Object>> waitTransactionStatus(@PathVariable String transactionId,
+                                                               @RequestParam(required = false) Long timeoutMs) {
+        long timeout = timeoutMs != null ? Math.min(timeoutMs, longPollTimeoutMs) : longPollTimeoutMs;
+        DeferredResult<Result<Object>> result = new DeferredResult<>(timeout);
+        Consumer<TransactionService.TransactionStatusResponse> waiter = status -> {
+            if (TransactionStatusNotifier.isFinal(status)) {
+                result.setResult(Result.success(status));
+            }
+        };
+        
+        // 先登记再读当前状态，避免读取和登记之间到达的事件丢失
+        boolean registered = statusNotifier.addWaiter(transactionId, waiter);
+        if (registered) {
+            result.onCompletion(() -> statusNotifier.removeWaiter(transactionId, waiter));
+            result.onTimeout(() -> result.setResult(currentStatus(transactionId)));
+        }
+        
+        try {
+            TransactionService.TransactionStatusResponse status = transactionService.getTransactionStatus(transactionId);
+            if (!registered || TransactionStatusNotifier.isFinal(status)) {
+                result.setResult(Result.success(status));
+            }
+        } catch (Exception e) {
+            log.error("查询转账状态失败", e);
+            result.setResult(Result.error(500, "查询失败: " + e.getMessage()));
+        }
+        return result;
+    }
+    
+    /**
+     * 以SSE推送转账状态变化，先推送当前状态，进入终态后关闭连接
+     * GET /api/transactions/{transactionId}/events
+     */
+    @GetMapping(value = "/{transactionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTransactionStatus(@PathVariable String transactionId) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        Consumer<TransactionService.TransactionStatusResponse> waiter = status -> sendStatus(emitter, status);
+        
+        boolean registered = statusNotifier.addWaiter(transactionId, waiter);
+        if (registered) {
+            emitter.onCompletion(() -> statusNotifier.removeWaiter(transactionId, waiter));
+            emitter.onTimeout(emitter::complete);
+            emitter.onError(e -> statusNotifier.removeWaiter(transactionId, waiter));
+        }
+        
+        try {
+            TransactionService.TransactionStatusResponse status = transactionService.getTransactionStatus(transactionId);
+            sendStatus(emitter, status);
+            if (!registered) {
+                emitter.complete();
+            }
+        } catch (Exception e) {
+            log.error("推送转账状态失败: {}", transactionId, e);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+    
+    /**
+     * 查询转账状态通知统计（状态缓存命中、等待者数量）
+     * GET /api/transactions/status/stats
+     */
+    @GetMapping("/status/stats")
+    public Result<TransactionStatusNotifier.NotifierStats> getStatusStats() {
+        return Result.success(statusNotifier.getStats());
+    }
+    
+    private Result<Object> currentStatus(String transactionId) {
+        try {
+            return Result.success(transactionService.getTransactionStatus(transactionId));
+        } catch (Exception e) {
+            log.error("查询转账状态失败", e);
+            return Result.error(500, "查询失败: " + e.getMessage());
+        }
+    }
+    
+    private void sendStatus(SseEmitter emitter, TransactionService.TransactionStatusResponse status) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(status));
+            if (TransactionStatusNotifier.isFinal(status)) {
+                emitter.complete();
+            }
+        } catch (Exception e) {
+            // 客户端已断开或连接已结束
+            emitter.completeWithError(e);
+        }
+    }
+    
     /**
      * 批量转账（企业发工资场景）
      * POST /api/transactions/batch-transfer
      */
     @PostMapping("/batch-transfer")
-    public Result<String> batchTransfer(@Valid @RequestBody TransactionService.BatchTransferRequest request) {
+    public ResponseEntity<Result<String>> batchTransfer(@Valid @RequestBody TransactionService.BatchTransferRequest request,
+                                                        HttpServletRequest httpRequest) {
         log.info("收到批量转账请求: 从账户{}向{}个账户转账", 
                 request.getFromAccountId(), request.getTransfers().size());
+        TransferRateLimiter.Decision decision = rateLimiter.tryAcquire(clientIdOf(httpRequest),
+                request.getFromAccountId(), request.getTransfers().size());
+        if (decision.isTooLarge()) {
+            return ResponseEntity.badRequest().body(Result.error(400,
+                    "批量笔数超过单次限流上限" + decision.getMaxPermits() + "，请拆分后提交"));
+        }
+        if (!decision.isAdmitted()) {
+            return tooManyRequests(decision);
+        }
         try {
             String batchId = transactionService.createBatchTransfer(request);
-            return Result.success("批量转账请求已提交", batchId);
+            return ResponseEntity.ok(Result.success("批量转账请求已提交", batchId));
         } catch (Exception e) {
             log.error("批量转账失败", e);
-            return Result.error(500, "批量转账失败: " + e.getMessage());
+            return ResponseEntity.ok(Result.error(500, "批量转账失败: " + e.getMessage()));
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 查询转账入口限流统计
+     * GET /api/transactions/rate-limit/stats
+     */
+    @GetMapping("/rate-limit/stats")
+    public Result<TransferRateLimiter.LimiterStats> getRateLimitStats() {
+        return Result.success(rateLimiter.getStats());
+    }
+    
+    /**
+     * 客户端标识：优先取X-Client-Id请求头，没有时使用来源地址
+     */
+    private String clientIdOf(HttpServletRequest httpRequest) {
+        String clientId = httpRequest.getHeader("X-Client-Id");
+        return clientId != null && !clientId.isBlank() ? clientId : httpRequest.getRemoteAddr();
+    }
+    
+    /**
+     * 限流拒绝：立即返回429，Retry-After为建议的重试秒数
+     */
+    private ResponseEntity<Result<String>> tooManyRequests(TransferRateLimiter.Decision decision) {
+        long retryAfterSeconds = Math.max(1, (decision.getRetryAfterMs() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .body(Result.error(429, "请求过于频繁（" + decision.getLimitedBy() + "限流），请"
+                        + decision.getRetryAfterMs() + "毫秒后重试"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.distributebank.transactionservice.controller;
+
+import com.distributebank.common.dto.Result;
+import com.distributebank.transactionservice.config.AsyncRequestTimeoutConfig;
+import com.distributebank.transactionservice.service.TransactionHistoryService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * 账户交易历史控制器
+ * 提供游标分页查询和流式导出
+ */
+@RestController
+@RequestMapping("/api/transactions/history")
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionHistoryController {
+    
+    private final TransactionHistoryService historyService;
+    
+    @Value("${transaction.history.export-timeout-ms:1800000}")
+    private long exportTimeoutMs;
+    
+    /**
+     * 分页查询账户交易历史
+     * GET /api/transactions/history/{accountId}?direction=ALL&cursor=&limit=20
+     */
+    @GetMapping("/{accountId}")
+    public Result<TransactionHistoryService.HistoryPage> getHistory(@PathVariable String accountId,
+                                                                   @RequestParam(defaultValue = "ALL") TransactionHistoryService.Direction direction,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return Result.success(historyService.getHistory(accountId, direction, cursor, limit));
+        } catch (Exception e) {
+            log.error("查询交易历史失败: {}", accountId, e);
+            return Result.error(500, "查询失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 流式导出账户交易历史
+     * GET /api/transactions/history/{accountId}/export?direction=ALL&format=ndjson|csv
+     */
+    @GetMapping("/{accountId}/export")
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable String accountId,
+                                                        @RequestParam(defaultValue = "ALL") TransactionHistoryService.Direction direction,
+                                                        @RequestParam(defaultValue = "ndjson") String format,
+                                                        HttpServletRequest request) {
+        log.info("导出账户{}交易历史: 方向{} 格式{}", accountId, direction, format);
+        request.setAttribute(AsyncRequestTimeoutConfig.TIMEOUT_ATTRIBUTE, exportTimeoutMs);
+        boolean csv = "csv".equalsIgnoreCase(format);
+        StreamingResponseBody body = out -> historyService.export(accountId, direction, format, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + accountId + "-transactions." + (csv ? "csv" : "ndjson") + "\"")
+                .contentType(csv ? new MediaType("text", "csv") : MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.distributebank.transactionservice.handler;
+
+import com.distributebank.common.event.TransferEvent;
+import com.distributebank.transactionservice.service.TransactionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 转账状态批量事件处理器
+ * 一次poll拉取的状态事件按交易合并为最终状态，批量UPDATE后在同一事务内提交；
+ * 异常直接抛出交给容器错误处理器重试整批，偏移量只在本批持久化后提交
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.status.batch.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionBatchEventHandler {
+    
+    private final TransactionService transactionService;
+    
+    /**
+     * 批量处理转账状态更新事件
+     */
+    @KafkaListener(topics = "#{@transferEventTopics.topicsFor('TRANSFER_PROCESSED','CLEARING_SUCCESS','CLEARING_FAILED')}",
+            groupId = "transaction-service-status", batch = "true",
+            properties = "transfer.events.accepted-types=TRANSFER_PROCESSED,CLEARING_SUCCESS,CLEARING_FAILED")
+    public void handleTransferStatusEvents(List<TransferEvent> events) {
+        log.debug("批量处理转账状态事件: 拉取{}条", events.size());
+        transactionService.applyStatusEvents(events);
+    }
+}
\ No newline at end of file
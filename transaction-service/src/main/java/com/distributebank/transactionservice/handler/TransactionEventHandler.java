@@ -4,6 +4,7 @@ import com.distributebank.common.event.TransferEvent;
 import com.distributebank.transactionservice.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Component;
  * 负责处理Kafka中的转账相关事件
  */
 @Component
+@ConditionalOnProperty(name = "transaction.status.batch.enabled", havingValue = "false", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class TransactionEventHandler {
@@ -21,7 +23,9 @@ public class TransactionEventHandler {
     /**
      * 处理转账状态更新事件
      */
-    @KafkaListener(topics = "transfer-events", groupId = "transaction-service-status")
+    @KafkaListener(topics = "#{@transferEventTopics.topicsFor('TRANSFER_PROCESSED','CLEARING_SUCCESS','CLEARING_FAILED')}",
+            groupId = "transaction-service-status",
+            properties = "transfer.events.accepted-types=TRANSFER_PROCESSED,CLEARING_SUCCESS,CLEARING_FAILED")
     public void handleTransferStatusEvent(TransferEvent event) {
         log.info("收到转账状态事件: {} - {}", event.getTransactionId(), event.getEventType());
         
@@ -0,0 +1,32 @@
+package com.distributebank.transactionservice.handler;
+
+import com.distributebank.common.event.TransferEvent;
+import com.distributebank.transactionservice.service.TransactionStatusNotifier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 转账状态通知处理器
+ * 由StatusNotifyListenerConfig中手动分配分区的容器驱动，每个实例都能收到全部状态事件，
+ * 用于更新本实例的状态缓存并唤醒长轮询/SSE等待者；只关心启动后的新事件
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionStatusNotifyHandler {
+    
+    private final TransactionStatusNotifier statusNotifier;
+    
+    public void handleStatusNotification(TransferEvent event) {
+        if (event == null) {
+            // 消息头过滤跳过的记录
+            return;
+        }
+        try {
+            statusNotifier.onEvent(event);
+        } catch (Exception e) {
+            log.error("处理转账状态通知异常: {}", event.getTransactionId(), e);
+        }
+    }
+}
\ No newline at end of file
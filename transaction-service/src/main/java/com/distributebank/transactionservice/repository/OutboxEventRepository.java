@@ -0,0 +1,12 @@
+package com.distributebank.transactionservice.repository;
+
+import com.distributebank.common.model.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 事务发件箱数据访问层
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+}
\ No newline at end of file
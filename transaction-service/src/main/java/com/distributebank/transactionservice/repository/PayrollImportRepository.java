@@ -0,0 +1,19 @@
+package com.distributebank.transactionservice.repository;
+
+import com.distributebank.common.model.PayrollImport;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * 代发工资文件导入数据访问层
+ */
+@Repository
+public interface PayrollImportRepository extends JpaRepository<PayrollImport, Long> {
+    
+    /**
+     * 根据导入批次ID查询
+     */
+    Optional<PayrollImport> findByImportId(String importId);
+}
\ No newline at end of file
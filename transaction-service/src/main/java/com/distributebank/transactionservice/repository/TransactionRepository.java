@@ -2,8 +2,13 @@ package com.distributebank.transactionservice.repository;
 
 import com.distributebank.common.model.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.Optional;
 
 /**
@@ -19,12 +24,14 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     Optional<Transaction> findByTransactionId(String transactionId);
     
     /**
-     * 根据源账户ID查询交易列表
+     * 批量推进交易状态：只更新当前状态在fromStatuses中的交易，保证状态不回退，返回更新行数
      */
-    java.util.List<Transaction> findByFromAccountIdOrderByCreatedAtDesc(String fromAccountId);
-    
-    /**
-     * 根据目标账户ID查询交易列表
-     */
-    java.util.List<Transaction> findByToAccountIdOrderByCreatedAtDesc(String toAccountId);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Transaction t SET t.status = :status, t.clearingStatus = :clearingStatus, t.updatedAt = :now " +
+           "WHERE t.transactionId IN :transactionIds AND t.status IN :fromStatuses")
+    int advanceStatus(@Param("transactionIds") Collection<String> transactionIds,
+                      @Param("status") Transaction.TransactionStatus status,
+                      @Param("clearingStatus") Transaction.ClearingStatus clearingStatus,
+                      @Param("fromStatuses") Collection<Transaction.TransactionStatus> fromStatuses,
+                      @Param("now") LocalDateTime now);
 } 
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.distributebank.transactionservice.service;
+
+import com.distributebank.common.kafka.TransferEventTopics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下游消费积压监控
+ * 定期计算下游消费组在其实际消费的转账事件主题上的积压（共用主题或按类型拆分后的主题，
+ * 各分区最新偏移量 - 已提交偏移量之和，多个消费组取最大），
+ * 超过阈值时成倍调低限流器的自适应系数，回落到阈值一半以下时逐步恢复；采样值记入限流统计（consumerLag）
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.rate-limit.adaptive.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class ConsumerLagMonitor {
+    
+    private static final long ADMIN_TIMEOUT_MS = 3000;
+    
+    private final TransferRateLimiter rateLimiter;
+    private final AdminClient adminClient;
+    private final String[] consumerGroups;
+    private final long lagThreshold;
+    private final double minFactor;
+    private final double recoveryStep;
+    
+    public ConsumerLagMonitor(TransferRateLimiter rateLimiter, KafkaAdmin kafkaAdmin,
+                              @Value("${transaction.rate-limit.adaptive.consumer-groups:account-service}") String[] consumerGroups,
+                              @Value("${transaction.rate-limit.adaptive.lag-threshold:10000}") long lagThreshold,
+                              @Value("${transaction.rate-limit.adaptive.min-factor:0.1}") double minFactor,
+                              @Value("${transaction.rate-limit.adaptive.recovery-step:0.1}") double recoveryStep) {
+        this.rateLimiter = rateLimiter;
+        this.adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+        this.consumerGroups = consumerGroups;
+        this.lagThreshold = lagThreshold;
+        this.minFactor = minFactor;
+        this.recoveryStep = recoveryStep;
+    }
+    
+    /**
+     * 定期采样积压并调整自适应系数：超过阈值减半，低于阈值一半时线性恢复
+     */
+    @Scheduled(fixedDelayString = "${transaction.rate-limit.adaptive.check-interval-ms:5000}")
+    public void adjust() {
+        long lag;
+        try {
+            lag = currentLag();
+        } catch (Exception e) {
+            log.warn("查询下游消费积压失败，保持当前限流系数: {}", rateLimiter.getAdaptiveFactor(), e);
+            return;
+        }
+        rateLimiter.setConsumerLag(lag);
+        
+        double factor = rateLimiter.getAdaptiveFactor();
+        double next = factor;
+        if (lag > lagThreshold) {
+            next = Math.max(minFactor, factor / 2);
+        } else if (lag < lagThreshold / 2) {
+            next = Math.min(1.0, factor + recoveryStep);
+        }
+        if (next != factor) {
+            rateLimiter.setAdaptiveFactor(next);
+            log.info("下游消费积压{}，限流系数调整: {} -> {}", lag, factor, next);
+        }
+    }
+    
+    private long currentLag() throws Exception {
+        long maxLag = 0;
+        for (String group : consumerGroups) {
+            Map<TopicPartition, OffsetAndMetadata> committed = adminClient.listConsumerGroupOffsets(group)
+                    .partitionsToOffsetAndMetadata().get(ADMIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            
+            Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+            committed.forEach((partition, offset) -> {
+                if (TransferEventTopics.isTransferEventTopic(partition.topic()) && offset != null) {
+                    request.put(partition, OffsetSpec.latest());
+                }
+            });
+            if (request.isEmpty()) {
+                continue;
+            }
+            
+            Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> latest = adminClient.listOffsets(request)
+                    .all().get(ADMIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            long groupLag = 0;
+            for (Map.Entry<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> entry : latest.entrySet()) {
+                groupLag += Math.max(0, entry.getValue().offset() - committed.get(entry.getKey()).offset());
+            }
+            maxLag = Math.max(maxLag, groupLag);
+        }
+        return maxLag;
+    }
+    
+    @PreDestroy
+    public void close() {
+        adminClient.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,350 @@
+package com.distributebank.transactionservice.service;
+
+import com.distributebank.common.event.TransferEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发件箱投递器
+ * 定时在短事务内以 FOR UPDATE SKIP LOCKED 领取一批待发送记录并标记为SENDING后立即提交（多实例各取不同的行），
+ * 不在等待Kafka确认期间持有行锁；全部异步发送后统一flush，按发送结果批量标记已发送，
+ * 失败的记录累加失败次数后放回待发送，达到最大次数（或无法反序列化）时标记为FAILED死信，不再阻塞后续投递。
+ * 领取后超过claim-timeout仍未完成的记录（投递器崩溃）由定时任务放回待发送
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final KafkaTemplate<String, TransferEvent> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+    private final long retentionMs;
+    private final int maxAttempts;
+    private final long claimTimeoutMs;
+    
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong totalLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+    private volatile long lastLagMs;
+    private volatile int lastBatchSize;
+    
+    /**
+     * 吞吐量统计窗口
+     */
+    private static final long THROUGHPUT_WINDOW_MS = 10_000;
+    private long windowStartMs = System.currentTimeMillis();
+    private long windowPublished;
+    private volatile double lastThroughputPerSecond;
+    
+    public OutboxRelay(JdbcTemplate jdbcTemplate,
+                       NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                       TransactionTemplate transactionTemplate,
+                       KafkaTemplate<String, TransferEvent> kafkaTemplate,
+                       ObjectMapper objectMapper,
+                       @Value("${transaction.outbox.batch-size:500}") int batchSize,
+                       @Value("${transaction.outbox.send-timeout-ms:5000}") long sendTimeoutMs,
+                       @Value("${transaction.outbox.retention-ms:86400000}") long retentionMs,
+                       @Value("${transaction.outbox.max-attempts:10}") int maxAttempts,
+                       @Value("${transaction.outbox.claim-timeout-ms:60000}") long claimTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.retentionMs = retentionMs;
+        this.maxAttempts = maxAttempts;
+        this.claimTimeoutMs = claimTimeoutMs;
+    }
+    
+    /**
+     * 定时投递：一批取满且有记录发送成功时继续投递下一批；整批都失败时（Kafka不可用）等到下一轮
+     */
+    @Scheduled(fixedDelayString = "${transaction.outbox.relay-interval-ms:100}")
+    public void relay() {
+        try {
+            BatchResult result;
+            do {
+                result = relayOnce();
+            } while (result.claimed >= batchSize && result.sent > 0);
+        } catch (Exception e) {
+            log.error("发件箱投递异常", e);
+        }
+    }
+    
+    /**
+     * 投递一批：短事务领取 -> 事务外发送 -> 按结果标记
+     */
+    private BatchResult relayOnce() {
+        List<OutboxRow> rows = transactionTemplate.execute(status -> claim());
+        if (rows == null || rows.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+        
+        List<CompletableFuture<SendResult<String, TransferEvent>>> futures = new ArrayList<>(rows.size());
+        List<Long> poisonIds = new ArrayList<>();
+        for (OutboxRow row : rows) {
+            try {
+                TransferEvent event = objectMapper.readValue(row.payload, TransferEvent.class);
+                futures.add(kafkaTemplate.send(row.topic, row.eventKey, event));
+            } catch (Exception e) {
+                // 内容无法反序列化，重试也不会成功，直接进入死信
+                log.error("发件箱记录无法发送: {}", row.id, e);
+                poisonIds.add(row.id);
+                futures.add(null);
+            }
+        }
+        kafkaTemplate.flush();
+        
+        List<Long> sentIds = new ArrayList<>(rows.size());
+        List<Long> failedIds = new ArrayList<>();
+        String lastError = null;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rows.size(); i++) {
+            OutboxRow row = rows.get(i);
+            if (futures.get(i) == null) {
+                continue;
+            }
+            try {
+                futures.get(i).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+                sentIds.add(row.id);
+                recordLag(now - row.createdAtMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedIds.add(row.id);
+                lastError = "发送被中断";
+            } catch (Exception e) {
+                failedIds.add(row.id);
+                lastError = String.valueOf(e.getCause() != null ? e.getCause() : e);
+            }
+        }
+        
+        if (!sentIds.isEmpty()) {
+            namedParameterJdbcTemplate.update(
+                    "UPDATE transfer_outbox SET status = 'SENT', sent_at = :now WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", sentIds).addValue("now", new Timestamp(now)));
+        }
+        if (!failedIds.isEmpty()) {
+            // 放回待发送；达到最大次数的进入死信（MySQL按从左到右的顺序赋值，IF中的attempts已是累加后的值）
+            namedParameterJdbcTemplate.update(
+                    "UPDATE transfer_outbox SET attempts = attempts + 1, last_error = :error, " +
+                    "status = IF(attempts >= :maxAttempts, 'FAILED', 'NEW') WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", failedIds)
+                            .addValue("error", truncate(lastError))
+                            .addValue("maxAttempts", maxAttempts));
+            failedCount.addAndGet(failedIds.size());
+            log.warn("发件箱本批发送失败{}条，未达最大次数的下一轮重试", failedIds.size());
+        }
+        if (!poisonIds.isEmpty()) {
+            namedParameterJdbcTemplate.update(
+                    "UPDATE transfer_outbox SET attempts = attempts + 1, status = 'FAILED', last_error = :error " +
+                    "WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", poisonIds).addValue("error", "事件内容无法反序列化"));
+            log.error("发件箱记录无法反序列化，已标记为死信: {}", poisonIds);
+        }
+        
+        publishedCount.addAndGet(sentIds.size());
+        batchCount.incrementAndGet();
+        lastBatchSize = rows.size();
+        recordThroughput(sentIds.size(), now);
+        return new BatchResult(rows.size(), sentIds.size());
+    }
+    
+    /**
+     * 领取一批待发送记录并标记为SENDING，需在事务内执行，提交后即释放行锁
+     */
+    private List<OutboxRow> claim() {
+        List<OutboxRow> rows = jdbcTemplate.query(
+                "SELECT id, topic, event_key, payload, created_at FROM transfer_outbox WHERE status = 'NEW' " +
+                "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED",
+                (rs, rowNum) -> new OutboxRow(rs.getLong("id"), rs.getString("topic"), rs.getString("event_key"),
+                        rs.getString("payload"), rs.getTimestamp("created_at").getTime()),
+                batchSize);
+        if (!rows.isEmpty()) {
+            namedParameterJdbcTemplate.update(
+                    "UPDATE transfer_outbox SET status = 'SENDING', claimed_at = :now WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", rows.stream().map(row -> row.id).toList())
+                            .addValue("now", new Timestamp(System.currentTimeMillis())));
+        }
+        return rows;
+    }
+    
+    /**
+     * 领取后超时未完成的记录（投递器在发送途中崩溃）放回待发送，重复发送由消费端幂等处理
+     */
+    @Scheduled(fixedDelayString = "${transaction.outbox.claim-timeout-ms:60000}")
+    public void reclaimStale() {
+        try {
+            Timestamp before = new Timestamp(System.currentTimeMillis() - claimTimeoutMs);
+            int reclaimed = jdbcTemplate.update(
+                    "UPDATE transfer_outbox SET status = 'NEW' WHERE status = 'SENDING' AND claimed_at < ?", before);
+            if (reclaimed > 0) {
+                log.warn("发件箱领取超时记录放回待发送: {}条", reclaimed);
+            }
+        } catch (Exception e) {
+            log.error("回收发件箱领取超时记录异常", e);
+        }
+    }
+    
+    /**
+     * 清理保留期之前已发送的记录
+     */
+    @Scheduled(fixedDelayString = "${transaction.outbox.purge-interval-ms:60000}")
+    public void purgeSent() {
+        try {
+            Timestamp before = Timestamp.valueOf(LocalDateTime.now().minus(Duration.ofMillis(retentionMs)));
+            int deleted = jdbcTemplate.update(
+                    "DELETE FROM transfer_outbox WHERE status = 'SENT' AND sent_at < ? LIMIT 10000", before);
+            if (deleted > 0) {
+                log.info("清理已发送发件箱记录{}条", deleted);
+            }
+        } catch (Exception e) {
+            log.error("清理发件箱记录异常", e);
+        }
+    }
+    
+    private String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > 500 ? error.substring(0, 500) : error;
+    }
+    
+    private void recordLag(long lag) {
+        lastLagMs = lag;
+        totalLagMs.addAndGet(lag);
+        maxLagMs.accumulateAndGet(lag, Math::max);
+    }
+    
+    private synchronized void recordThroughput(int published, long now) {
+        windowPublished += published;
+        long elapsed = now - windowStartMs;
+        if (elapsed >= THROUGHPUT_WINDOW_MS) {
+            lastThroughputPerSecond = windowPublished * 1000.0 / elapsed;
+            windowPublished = 0;
+            windowStartMs = now;
+        }
+    }
+    
+    /**
+     * 获取投递统计
+     */
+    public RelayStats getStats() {
+        Long backlog = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transfer_outbox WHERE status IN ('NEW', 'SENDING')", Long.class);
+        Long deadLetters = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transfer_outbox WHERE status = 'FAILED'", Long.class);
+        long published = publishedCount.get();
+        return new RelayStats(
+                backlog == null ? 0 : backlog,
+                deadLetters == null ? 0 : deadLetters,
+                published,
+                failedCount.get(),
+                batchCount.get(),
+                lastBatchSize,
+                lastLagMs,
+                maxLagMs.get(),
+                published == 0 ? 0 : (double) totalLagMs.get() / published,
+                lastThroughputPerSecond
+        );
+    }
+    
+    /**
+     * 领取到的发件箱记录
+     */
+    private static class OutboxRow {
+        private final long id;
+        private final String topic;
+        private final String eventKey;
+        private final String payload;
+        private final long createdAtMs;
+        
+        OutboxRow(long id, String topic, String eventKey, String payload, long createdAtMs) {
+            this.id = id;
+            this.topic = topic;
+            this.eventKey = eventKey;
+            this.payload = payload;
+            this.createdAtMs = createdAtMs;
+        }
+    }
+    
+    /**
+     * 一批投递结果：领取条数和发送成功条数
+     */
+    private static class BatchResult {
+        private final int claimed;
+        private final int sent;
+        
+        BatchResult(int claimed, int sent) {
+            this.claimed = claimed;
+            this.sent = sent;
+        }
+    }
+    
+    /**
+     * 投递统计类
+     */
+    public static class RelayStats {
+        private long backlog;
+        private long deadLetters;
+        private long published;
+        private long failed;
+        private long batches;
+        private int lastBatchSize;
+        private long lastLagMs;
+        private long maxLagMs;
+        private double avgLagMs;
+        private double throughputPerSecond;
+        
+        public RelayStats(long backlog, long deadLetters, long published, long failed, long batches, int lastBatchSize,
+                          long lastLagMs, long maxLagMs, double avgLagMs, double throughputPerSecond) {
+            this.backlog = backlog;
+            this.deadLetters = deadLetters;
+            this.published = published;
+            this.failed = failed;
+            this.batches = batches;
+            this.lastBatchSize = lastBatchSize;
+            this.lastLagMs = lastLagMs;
+            this.maxLagMs = maxLagMs;
+            this.avgLagMs = avgLagMs;
+            this.throughputPerSecond = throughputPerSecond;
+        }
+        
+        // getters
+        public long getBacklog() { return backlog; }
+        public long getDeadLetters() { return deadLetters; }
+        public long getPublished() { return published; }
+        public long getFailed() { return failed; }
+        public long getBatches() { return batches; }
+        public int getLastBatchSize() { return lastBatchSize; }
+        public long getLastLagMs() { return lastLagMs; }
+        public long getMaxLagMs() { return maxLagMs; }
+        public double getAvgLagMs() { return avgLagMs; }
+        public double getThroughputPerSecond() { return throughputPerSecond; }
+    }
+}
\ No newline at end of file
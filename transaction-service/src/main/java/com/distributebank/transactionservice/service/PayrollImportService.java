@@ -0,0 +1,395 @@
+package com.distributebank.transactionservice.service;
+
+import com.distributebank.common.event.TransferEvent;
+import com.distributebank.common.model.PayrollImport;
+import com.distributebank.transactionservice.repository.PayrollImportRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 代发工资文件导入服务
+ * 逐行流式解析CSV/NDJSON文件，按固定大小分块：每块一个短事务批量插入交易记录，
+ * 提交后批量发送转账事件并flush，全部发送成功后推进检查点；
+ * 交易ID由导入批次和行号确定，失败后重新上传同一文件从检查点续传，重复插入被INSERT IGNORE忽略，
+ * 检查点之后重复发送的事件由扣款幂等检查过滤；交易ID中的时间戳为导入批次创建时间，
+ * 超出续传期限后扣款幂等标记可能已过期，不再发送任何事件，批次置为失败等待人工核对
+ */
+@Service
+@Slf4j
+public class PayrollImportService {
+    
+    private static final String TRANSFER_TOPIC = "transfer-events";
+    private static final String FORMAT_CSV = "csv";
+    private static final String FORMAT_NDJSON = "ndjson";
+    private static final int MAX_ERROR_LENGTH = 500;
+    
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT IGNORE INTO transactions (transaction_id, from_account_id, to_account_id, amount, status, " +
+            "clearing_status, created_at, updated_at) VALUES (?, ?, ?, ?, 'PENDING', 'PENDING', ?, ?)";
+    
+    private static final String INSERT_ERROR_SQL =
+            "INSERT IGNORE INTO payroll_import_errors (import_id, row_no, reason, created_at) VALUES (?, ?, ?, ?)";
+    
+    private final PayrollImportRepository payrollImportRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final KafkaTemplate<String, TransferEvent> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final long resumeWindowMs;
+    
+    public PayrollImportService(PayrollImportRepository payrollImportRepository,
+                                JdbcTemplate jdbcTemplate,
+                                NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                KafkaTemplate<String, TransferEvent> kafkaTemplate,
+                                ObjectMapper objectMapper,
+                                @Value("${transaction.payroll-import.chunk-size:1000}") int chunkSize,
+                                @Value("${transaction.payroll-import.resume-window-seconds:86400}") long resumeWindowSeconds) {
+        this.payrollImportRepository = payrollImportRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.resumeWindowMs = resumeWindowSeconds * 1000;
+    }
+    
+    /**
+     * 新建导入并处理文件
+     */
+    public ImportResult startImport(String fromAccountId, String format, InputStream input) {
+        String normalizedFormat = format == null ? FORMAT_CSV : format.toLowerCase();
+        if (!FORMAT_CSV.equals(normalizedFormat) && !FORMAT_NDJSON.equals(normalizedFormat)) {
+            throw new RuntimeException("不支持的文件格式: " + format);
+        }
+        
+        PayrollImport payrollImport = PayrollImport.builder()
+                .importId("PAY" + UUID.randomUUID().toString().replace("-", "").substring(0, 12).toUpperCase())
+                .fromAccountId(fromAccountId)
+                .format(normalizedFormat)
+                .status(PayrollImport.ImportStatus.PROCESSING)
+                .idTimestamp(System.currentTimeMillis())
+                .checkpointRow(0L)
+                .acceptedRows(0L)
+                .rejectedRows(0L)
+                .totalAmount(BigDecimal.ZERO)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        payrollImport = payrollImportRepository.save(payrollImport);
+        log.info("开始代发工资导入: {} 付款账户: {} 格式: {}", payrollImport.getImportId(), fromAccountId, normalizedFormat);
+        
+        return process(payrollImport, input);
+    }
+    
+    /**
+     * 重新上传同一文件，从检查点之后续传
+     */
+    public ImportResult resumeImport(String importId, InputStream input) {
+        PayrollImport payrollImport = payrollImportRepository.findByImportId(importId)
+                .orElseThrow(() -> new RuntimeException("导入批次不存在: " + importId));
+        if (payrollImport.getStatus() == PayrollImport.ImportStatus.COMPLETED) {
+            return toResult(payrollImport);
+        }
+        
+        payrollImport.setStatus(PayrollImport.ImportStatus.PROCESSING);
+        payrollImport.setErrorMessage(null);
+        payrollImport = payrollImportRepository.save(payrollImport);
+        log.info("续传代发工资导入: {} 检查点: {}", importId, payrollImport.getCheckpointRow());
+        
+        return process(payrollImport, input);
+    }
+    
+    /**
+     * 查询导入进度
+     */
+    public ImportResult getImport(String importId) {
+        return toResult(payrollImportRepository.findByImportId(importId)
+                .orElseThrow(() -> new RuntimeException("导入批次不存在: " + importId)));
+    }
+    
+    /**
+     * 逐行读取文件，检查点之前的行只计数不处理
+     */
+    private ImportResult process(PayrollImport payrollImport, InputStream input) {
+        boolean csv = FORMAT_CSV.equals(payrollImport.getFormat());
+        long checkpoint = payrollImport.getCheckpointRow();
+        List<PayrollRow> chunk = new ArrayList<>(chunkSize);
+        long rowNo = 0;
+        
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            boolean firstLine = true;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                // CSV首行为表头时跳过
+                if (firstLine && csv && line.toLowerCase().startsWith("toaccountid")) {
+                    firstLine = false;
+                    continue;
+                }
+                firstLine = false;
+                
+                rowNo++;
+                if (rowNo <= checkpoint) {
+                    continue;
+                }
+                chunk.add(csv ? parseCsv(rowNo, line) : parseNdjson(rowNo, line));
+                if (chunk.size() >= chunkSize) {
+                    payrollImport = processChunk(payrollImport, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                payrollImport = processChunk(payrollImport, chunk);
+            }
+            
+            payrollImport.setStatus(PayrollImport.ImportStatus.COMPLETED);
+            payrollImport = payrollImportRepository.save(payrollImport);
+            log.info("代发工资导入完成: {} 受理: {} 拒绝: {} 总金额: {}", payrollImport.getImportId(),
+                    payrollImport.getAcceptedRows(), payrollImport.getRejectedRows(), payrollImport.getTotalAmount());
+        } catch (Exception e) {
+            log.error("代发工资导入失败: {} 检查点: {}", payrollImport.getImportId(), payrollImport.getCheckpointRow(), e);
+            payrollImport.setStatus(PayrollImport.ImportStatus.FAILED);
+            String message = String.valueOf(e.getMessage());
+            payrollImport.setErrorMessage(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+            payrollImport = payrollImportRepository.save(payrollImport);
+        }
+        return toResult(payrollImport);
+    }
+    
+    /**
+     * 处理一个分块：校验收款账户 -> 短事务批量入库 -> 批量发送事件 -> 推进检查点
+     */
+    private PayrollImport processChunk(PayrollImport payrollImport, List<PayrollRow> chunk) {
+        // 交易ID沿用批次创建时间，超出期限后account-service会拒绝扣款且无法识别重复，不再发送
+        if (System.currentTimeMillis() - payrollImport.getIdTimestamp() > resumeWindowMs) {
+            throw new RuntimeException("导入批次已超出续传期限，检查点" + payrollImport.getCheckpointRow()
+                    + "之后的行需人工核对后以新批次导入");
+        }
+        rejectUnknownAccounts(payrollImport.getFromAccountId(), chunk);
+        
+        List<PayrollRow> accepted = chunk.stream().filter(row -> row.getError() == null).toList();
+        List<PayrollRow> rejected = chunk.stream().filter(row -> row.getError() != null).toList();
+        String importId = payrollImport.getImportId();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_TRANSACTION_SQL, accepted.stream()
+                    .map(row -> new Object[] {transactionIdOf(payrollImport, row.getRowNo()),
+                            payrollImport.getFromAccountId(), row.getToAccountId(), row.getAmount(), now, now})
+                    .toList());
+            jdbcTemplate.batchUpdate(INSERT_ERROR_SQL, rejected.stream()
+                    .map(row -> new Object[] {importId, row.getRowNo(), row.getError(), now})
+                    .toList());
+        });
+        
+        // 事务提交后再发送事件，保证消费者能查到交易记录；全部确认后才推进检查点
+        List<CompletableFuture<SendResult<String, TransferEvent>>> futures = new ArrayList<>(accepted.size());
+        for (PayrollRow row : accepted) {
+            String transactionId = transactionIdOf(payrollImport, row.getRowNo());
+            TransferEvent event = TransferEvent.builder()
+                    .transactionId(transactionId)
+                    .fromAccountId(payrollImport.getFromAccountId())
+                    .toAccountId(row.getToAccountId())
+                    .amount(row.getAmount())
+                    .eventType(TransferEvent.EventType.TRANSFER_CREATED)
+                    .timestamp(LocalDateTime.now())
+                    .build();
+            futures.add(kafkaTemplate.send(TRANSFER_TOPIC, transactionId, event));
+        }
+        kafkaTemplate.flush();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        
+        BigDecimal chunkAmount = accepted.stream().map(PayrollRow::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        payrollImport.setCheckpointRow(chunk.get(chunk.size() - 1).getRowNo());
+        payrollImport.setAcceptedRows(payrollImport.getAcceptedRows() + accepted.size());
+        payrollImport.setRejectedRows(payrollImport.getRejectedRows() + rejected.size());
+        payrollImport.setTotalAmount(payrollImport.getTotalAmount().add(chunkAmount));
+        PayrollImport saved = payrollImportRepository.save(payrollImport);
+        log.debug("代发工资导入分块完成: {} 检查点: {} 受理: {} 拒绝: {}",
+                importId, saved.getCheckpointRow(), accepted.size(), rejected.size());
+        return saved;
+    }
+    
+    /**
+     * 一次IN查询校验本块内的收款账户是否存在
+     */
+    private void rejectUnknownAccounts(String fromAccountId, List<PayrollRow> chunk) {
+        Set<String> accountIds = new HashSet<>();
+        for (PayrollRow row : chunk) {
+            if (row.getError() == null) {
+                accountIds.add(row.getToAccountId());
+            }
+        }
+        if (accountIds.isEmpty()) {
+            return;
+        }
+        
+        Set<String> existing = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT account_id FROM accounts WHERE account_id IN (:ids)",
+                new MapSqlParameterSource("ids", accountIds), String.class));
+        for (PayrollRow row : chunk) {
+            if (row.getError() != null) {
+                continue;
+            }
+            if (!existing.contains(row.getToAccountId())) {
+                row.setError("收款账户不存在: " + row.getToAccountId());
+            } else if (row.getToAccountId().equals(fromAccountId)) {
+                row.setError("收款账户不能与付款账户相同");
+            }
+        }
+    }
+    
+    /**
+     * CSV行：toAccountId,amount[,remark]
+     */
+    private PayrollRow parseCsv(long rowNo, String line) {
+        String[] columns = line.split(",", 3);
+        if (columns.length < 2) {
+            return PayrollRow.invalid(rowNo, "列数不足");
+        }
+        return validate(rowNo, columns[0].trim(), columns[1].trim());
+    }
+    
+    /**
+     * NDJSON行：{"toAccountId": "...", "amount": 1000.00, "remark": "..."}
+     */
+    private PayrollRow parseNdjson(long rowNo, String line) {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            JsonNode toAccountId = node.get("toAccountId");
+            JsonNode amount = node.get("amount");
+            return validate(rowNo, toAccountId == null ? "" : toAccountId.asText(),
+                    amount == null ? "" : amount.asText());
+        } catch (IOException e) {
+            return PayrollRow.invalid(rowNo, "JSON格式错误");
+        }
+    }
+    
+    private PayrollRow validate(long rowNo, String toAccountId, String amountText) {
+        if (toAccountId.isEmpty()) {
+            return PayrollRow.invalid(rowNo, "收款账户为空");
+        }
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(amountText);
+        } catch (NumberFormatException e) {
+            return PayrollRow.invalid(rowNo, "金额格式错误: " + amountText);
+        }
+        if (amount.signum() <= 0) {
+            return PayrollRow.invalid(rowNo, "金额必须大于0");
+        }
+        if (amount.stripTrailingZeros().scale() > 2) {
+            return PayrollRow.invalid(rowNo, "金额最多两位小数");
+        }
+        return new PayrollRow(rowNo, toAccountId, amount.setScale(2), null);
+    }
+    
+    /**
+     * 同一导入批次的同一行始终生成相同的交易ID
+     */
+    private String transactionIdOf(PayrollImport payrollImport, long rowNo) {
+        return "TXN_" + payrollImport.getIdTimestamp() + "_" + payrollImport.getImportId() + "R" + rowNo;
+    }
+    
+    private ImportResult toResult(PayrollImport payrollImport) {
+        return new ImportResult(
+                payrollImport.getImportId(),
+                payrollImport.getStatus().name(),
+                payrollImport.getCheckpointRow(),
+                payrollImport.getAcceptedRows(),
+                payrollImport.getRejectedRows(),
+                payrollImport.getTotalAmount(),
+                payrollImport.getErrorMessage()
+        );
+    }
+    
+    /**
+     * 解析后的文件行
+     */
+    private static class PayrollRow {
+        private final long rowNo;
+        private final String toAccountId;
+        private final BigDecimal amount;
+        private String error;
+        
+        PayrollRow(long rowNo, String toAccountId, BigDecimal amount, String error) {
+            this.rowNo = rowNo;
+            this.toAccountId = toAccountId;
+            this.amount = amount;
+            this.error = error;
+        }
+        
+        static PayrollRow invalid(long rowNo, String error) {
+            return new PayrollRow(rowNo, null, null, error);
+        }
+        
+        long getRowNo() { return rowNo; }
+        String getToAccountId() { return toAccountId; }
+        BigDecimal getAmount() { return amount; }
+        String getError() { return error; }
+        void setError(String error) { this.error = error; }
+    }
+    
+    /**
+     * 导入结果类
+     */
+    public static class ImportResult {
+        private String importId;
+        private String status;
+        private long checkpointRow;
+        private long acceptedRows;
+        private long rejectedRows;
+        private BigDecimal totalAmount;
+        private String errorMessage;
+        
+        public ImportResult(String importId, String status, long checkpointRow, long acceptedRows,
+                            long rejectedRows, BigDecimal totalAmount, String errorMessage) {
+            this.importId = importId;
+            this.status = status;
+            this.checkpointRow = checkpointRow;
+            this.acceptedRows = acceptedRows;
+            this.rejectedRows = rejectedRows;
+            this.totalAmount = totalAmount;
+            this.errorMessage = errorMessage;
+        }
+        
+        // getters
+        public String getImportId() { return importId; }
+        public String getStatus() { return status; }
+        public long getCheckpointRow() { return checkpointRow; }
+        public long getAcceptedRows() { return acceptedRows; }
+        public long getRejectedRows() { return rejectedRows; }
+        public BigDecimal getTotalAmount() { return totalAmount; }
+        public String getErrorMessage() { return errorMessage; }
+    }
+}
\ No newline at end of file
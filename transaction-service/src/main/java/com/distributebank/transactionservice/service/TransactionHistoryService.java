@@ -0,0 +1,309 @@
+package com.distributebank.transactionservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 账户交易历史服务
+ * 分页查询按 (created_at, id) 游标向后翻页，转出、转入分别走各自的复合索引，
+ * 全部方向时两路各取一页再归并；导出按同样的游标分块读取并逐行写出，内存占用与数据量无关
+ */
+@Service
+@Slf4j
+public class TransactionHistoryService {
+    
+    private static final String COLUMNS =
+            "id, transaction_id, from_account_id, to_account_id, amount, status, clearing_status, created_at";
+    private static final String KEYSET_CONDITION = " AND (created_at < ? OR (created_at = ? AND id < ?))";
+    private static final String ORDER_AND_LIMIT = " ORDER BY created_at DESC, id DESC LIMIT ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int maxPageSize;
+    private final int exportChunkSize;
+    
+    public TransactionHistoryService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                     @Value("${transaction.history.max-page-size:200}") int maxPageSize,
+                                     @Value("${transaction.history.export-chunk-size:1000}") int exportChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.maxPageSize = maxPageSize;
+        this.exportChunkSize = exportChunkSize;
+    }
+    
+    /**
+     * 查询方向
+     */
+    public enum Direction {
+        ALL, OUT, IN
+    }
+    
+    /**
+     * 分页查询账户交易历史，cursor为上一页返回的nextCursor，首页传null
+     */
+    public HistoryPage getHistory(String accountId, Direction direction, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        Cursor after = cursor != null && !cursor.isEmpty() ? Cursor.decode(cursor) : null;
+        
+        List<HistoryItem> rows;
+        if (direction == Direction.ALL) {
+            rows = merge(queryPage(accountId, Direction.OUT, after, pageSize + 1),
+                    queryPage(accountId, Direction.IN, after, pageSize + 1));
+        } else {
+            rows = queryPage(accountId, direction, after, pageSize + 1);
+        }
+        
+        boolean hasMore = rows.size() > pageSize;
+        List<HistoryItem> items = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            HistoryItem last = items.get(items.size() - 1);
+            nextCursor = new Cursor(last.getCreatedAt(), last.id).encode();
+        }
+        return new HistoryPage(new ArrayList<>(items), nextCursor, hasMore);
+    }
+    
+    private List<HistoryItem> queryPage(String accountId, Direction direction, Cursor after, int limit) {
+        String accountColumn = direction == Direction.OUT ? "from_account_id" : "to_account_id";
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS)
+                .append(" FROM transactions WHERE ").append(accountColumn).append(" = ?");
+        List<Object> args = new ArrayList<>();
+        args.add(accountId);
+        if (direction == Direction.IN) {
+            // 自己转给自己的交易只在转出方向出现一次
+            sql.append(" AND from_account_id <> ?");
+            args.add(accountId);
+        }
+        if (after != null) {
+            Timestamp createdAt = Timestamp.valueOf(after.createdAt);
+            sql.append(KEYSET_CONDITION);
+            args.add(createdAt);
+            args.add(createdAt);
+            args.add(after.id);
+        }
+        sql.append(ORDER_AND_LIMIT);
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), rowMapper(accountId), args.toArray());
+    }
+    
+    /**
+     * 归并两路按 (created_at, id) 倒序的结果
+     */
+    private List<HistoryItem> merge(List<HistoryItem> outgoing, List<HistoryItem> incoming) {
+        List<HistoryItem> merged = new ArrayList<>(outgoing.size() + incoming.size());
+        int i = 0;
+        int j = 0;
+        while (i < outgoing.size() || j < incoming.size()) {
+            if (j >= incoming.size() || (i < outgoing.size() && isAfter(outgoing.get(i), incoming.get(j)))) {
+                merged.add(outgoing.get(i++));
+            } else {
+                merged.add(incoming.get(j++));
+            }
+        }
+        return merged;
+    }
+    
+    private boolean isAfter(HistoryItem a, HistoryItem b) {
+        int byTime = a.getCreatedAt().compareTo(b.getCreatedAt());
+        return byTime != 0 ? byTime > 0 : a.id > b.id;
+    }
+    
+    /**
+     * 流式导出账户交易历史（ndjson或csv），按时间倒序逐行写出
+     * 按游标分块读取，每块一条短查询，下载期间不占用数据库连接；
+     * 全部方向时转出、转入两路各自按索引顺序分块读取，在应用内归并，避免UNION ALL后整体排序
+     */
+    public void export(String accountId, Direction direction, String format, OutputStream out) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (csv) {
+            writer.write("transaction_id,direction,counterparty_account_id,amount,status,clearing_status,created_at\n");
+        }
+        
+        HistoryStream outgoing = direction != Direction.IN ? new HistoryStream(accountId, Direction.OUT) : null;
+        HistoryStream incoming = direction != Direction.OUT ? new HistoryStream(accountId, Direction.IN) : null;
+        long count = 0;
+        HistoryItem item;
+        while ((item = next(outgoing, incoming)) != null) {
+            writer.write(csv ? toCsv(item) : objectMapper.writeValueAsString(item));
+            writer.write('\n');
+            count++;
+        }
+        writer.flush();
+        log.info("导出账户{}交易历史完成: 方向{} 格式{} 共{}条", accountId, direction, csv ? "csv" : "ndjson", count);
+    }
+    
+    /**
+     * 取两路中 (created_at, id) 较大的一条，两路都读完时返回null
+     */
+    private HistoryItem next(HistoryStream outgoing, HistoryStream incoming) {
+        HistoryItem a = outgoing != null ? outgoing.peek() : null;
+        HistoryItem b = incoming != null ? incoming.peek() : null;
+        if (a == null && b == null) {
+            return null;
+        }
+        if (b == null || (a != null && isAfter(a, b))) {
+            return outgoing.poll();
+        }
+        return incoming.poll();
+    }
+    
+    /**
+     * 单一方向的导出读取流：按游标每次查询一块，读完当前块再查下一块
+     */
+    private class HistoryStream {
+        private final String accountId;
+        private final Direction direction;
+        private List<HistoryItem> buffer = List.of();
+        private int position;
+        private Cursor after;
+        private boolean exhausted;
+        
+        HistoryStream(String accountId, Direction direction) {
+            this.accountId = accountId;
+            this.direction = direction;
+        }
+        
+        HistoryItem peek() {
+            if (position >= buffer.size() && !exhausted) {
+                buffer = queryPage(accountId, direction, after, exportChunkSize);
+                position = 0;
+                exhausted = buffer.size() < exportChunkSize;
+                if (!buffer.isEmpty()) {
+                    HistoryItem last = buffer.get(buffer.size() - 1);
+                    after = new Cursor(last.getCreatedAt(), last.id);
+                }
+            }
+            return position < buffer.size() ? buffer.get(position) : null;
+        }
+        
+        HistoryItem poll() {
+            HistoryItem item = peek();
+            position++;
+            return item;
+        }
+    }
+    
+    private String toCsv(HistoryItem item) {
+        return item.getTransactionId() + "," + item.getDirection() + "," + item.getCounterpartyAccountId() + ","
+                + item.getAmount().toPlainString() + "," + item.getStatus() + "," + item.getClearingStatus() + ","
+                + item.getCreatedAt();
+    }
+    
+    private RowMapper<HistoryItem> rowMapper(String accountId) {
+        return (rs, rowNum) -> {
+            String from = rs.getString("from_account_id");
+            boolean outgoing = accountId.equals(from);
+            return new HistoryItem(
+                    rs.getLong("id"),
+                    rs.getString("transaction_id"),
+                    outgoing ? Direction.OUT.name() : Direction.IN.name(),
+                    outgoing ? rs.getString("to_account_id") : from,
+                    rs.getBigDecimal("amount"),
+                    rs.getString("status"),
+                    rs.getString("clearing_status"),
+                    rs.getTimestamp("created_at").toLocalDateTime()
+            );
+        };
+    }
+    
+    /**
+     * 翻页游标：上一页最后一行的 (created_at, id)，Base64URL编码后返回给客户端
+     */
+    private static class Cursor {
+        private final LocalDateTime createdAt;
+        private final long id;
+        
+        Cursor(LocalDateTime createdAt, long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+        
+        String encode() {
+            String raw = createdAt + "," + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int comma = raw.indexOf(',');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, comma)), Long.parseLong(raw.substring(comma + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("无效的翻页游标: " + cursor);
+            }
+        }
+    }
+    
+    /**
+     * 交易历史条目
+     */
+    public static class HistoryItem {
+        private long id;
+        private String transactionId;
+        private String direction;
+        private String counterpartyAccountId;
+        private BigDecimal amount;
+        private String status;
+        private String clearingStatus;
+        private LocalDateTime createdAt;
+        
+        public HistoryItem(long id, String transactionId, String direction, String counterpartyAccountId,
+                           BigDecimal amount, String status, String clearingStatus, LocalDateTime createdAt) {
+            this.id = id;
+            this.transactionId = transactionId;
+            this.direction = direction;
+            this.counterpartyAccountId = counterpartyAccountId;
+            this.amount = amount;
+            this.status = status;
+            this.clearingStatus = clearingStatus;
+            this.createdAt = createdAt;
+        }
+        
+        // getters
+        public String getTransactionId() { return transactionId; }
+        public String getDirection() { return direction; }
+        public String getCounterpartyAccountId() { return counterpartyAccountId; }
+        public BigDecimal getAmount() { return amount; }
+        public String getStatus() { return status; }
+        public String getClearingStatus() { return clearingStatus; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+    }
+    
+    /**
+     * 交易历史分页结果
+     */
+    public static class HistoryPage {
+        private List<HistoryItem> items;
+        private String nextCursor;
+        private boolean hasMore;
+        
+        public HistoryPage(List<HistoryItem> items, String nextCursor, boolean hasMore) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+        
+        // getters
+        public List<HistoryItem> getItems() { return items; }
+        public String getNextCursor() { return nextCursor; }
+        public boolean isHasMore() { return hasMore; }
+    }
+}
\ No newline at end of file
@@ -2,21 +2,30 @@ package com.distributebank.transactionservice.service;
 
 import com.distributebank.common.dto.TransferRequest;
 import com.distributebank.common.event.TransferEvent;
+import com.distributebank.common.model.OutboxEvent;
 import com.distributebank.common.model.Transaction;
+import com.distributebank.common.util.TransactionIdGenerator;
+import com.distributebank.transactionservice.repository.OutboxEventRepository;
 import com.distributebank.transactionservice.repository.TransactionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 /**
  * 转账服务业务逻辑类
- * 负责创建转账交易并发送Kafka事件
+ * 负责创建转账交易，转账事件与交易记录在同一事务内写入发件箱，由投递器异步发送到Kafka
  */
 @Service
 @RequiredArgsConstructor
@@ -24,7 +33,10 @@ import java.util.UUID;
 public class TransactionService {
     
     private final TransactionRepository transactionRepository;
-    private final KafkaTemplate<String, TransferEvent> kafkaTemplate;
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionIdGenerator transactionIdGenerator;
+    private final TransactionStatusNotifier statusNotifier;
     
     private static final String TRANSFER_TOPIC = "transfer-events";
     
@@ -34,7 +46,7 @@ public class TransactionService {
     @Transactional
     public String createTransfer(TransferRequest request) {
         // 生成交易ID
-        String transactionId = generateTransactionId();
+        String transactionId = transactionIdGenerator.nextId();
         
         // 创建交易记录
         Transaction transaction = Transaction.builder()
@@ -62,8 +74,25 @@ public class TransactionService {
                 .timestamp(LocalDateTime.now())
                 .build();
         
-        kafkaTemplate.send(TRANSFER_TOPIC, transactionId, event);
-        log.info("发送转账事件: {}", event);
+        // 写入发件箱，与交易记录同事务提交
+        outboxEventRepository.save(OutboxEvent.builder()
+                .topic(TRANSFER_TOPIC)
+                .eventKey(transactionId)
+                .payload(toJson(event))
+                .status(OutboxEvent.OutboxStatus.NEW)
+                .attempts(0)
+                .createdAt(LocalDateTime.now())
+                .build());
+        log.info("转账事件写入发件箱: {}", event);
+        
+        // 提交后预热状态缓存，客户端首次查询无需读库
+        TransactionStatusResponse pending = toStatusResponse(transaction);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                statusNotifier.cache(pending);
+            }
+        });
         
         return transactionId;
     }
@@ -73,7 +102,7 @@ public class TransactionService {
      */
     @Transactional
     public String createBatchTransfer(BatchTransferRequest request) {
-        String batchId = "BATCH_" + generateTransactionId();
+        String batchId = "BATCH_" + transactionIdGenerator.nextId();
         
         List<String> transactionIds = request.getTransfers().stream()
                 .map(transfer -> {
@@ -88,12 +117,22 @@ public class TransactionService {
     }
     
     /**
-     * 查询转账状态
+     * 查询转账状态，优先读短TTL状态缓存，未命中读库后回填
      */
-    public Object getTransactionStatus(String transactionId) {
+    public TransactionStatusResponse getTransactionStatus(String transactionId) {
+        TransactionStatusResponse cached = statusNotifier.getCached(transactionId);
+        if (cached != null) {
+            return cached;
+        }
+        
         Transaction transaction = transactionRepository.findByTransactionId(transactionId)
                 .orElseThrow(() -> new RuntimeException("交易不存在: " + transactionId));
         
+        // 读库期间可能已收到更新的状态事件，以合并后的状态为准
+        return statusNotifier.cache(toStatusResponse(transaction));
+    }
+    
+    private TransactionStatusResponse toStatusResponse(Transaction transaction) {
         return new TransactionStatusResponse(
                 transaction.getTransactionId(),
                 transaction.getStatus().name(),
@@ -102,11 +141,12 @@ public class TransactionService {
         );
     }
     
-    /**
-     * 生成交易ID
-     */
-    private String generateTransactionId() {
-        return "TXN_" + System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8);
+    private String toJson(TransferEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("转账事件序列化失败: " + event.getTransactionId(), e);
+        }
     }
     
     /**
@@ -139,6 +179,71 @@ public class TransactionService {
         log.info("交易状态更新: {} -> {}", transactionId, status);
     }
     
+    /**
+     * 批量应用状态事件（供批量事件处理器调用）
+     * 同一交易的多条事件合并为最终状态（终态优先，不会从SUCCESS/FAILED回退到PROCESSING），
+     * 按目标状态分组各执行一条批量UPDATE，全部在同一事务内提交，返回更新行数
+     */
+    @Transactional
+    public int applyStatusEvents(List<TransferEvent> events) {
+        Map<String, Transaction.TransactionStatus> latest = new LinkedHashMap<>();
+        for (TransferEvent event : events) {
+            Transaction.TransactionStatus status = statusOf(event.getEventType());
+            if (status != null) {
+                latest.merge(event.getTransactionId(), status,
+                        (existing, incoming) -> statusRank(incoming) > statusRank(existing) ? incoming : existing);
+            }
+        }
+        if (latest.isEmpty()) {
+            return 0;
+        }
+        
+        Map<Transaction.TransactionStatus, List<String>> byStatus = new EnumMap<>(Transaction.TransactionStatus.class);
+        latest.forEach((transactionId, status) ->
+                byStatus.computeIfAbsent(status, s -> new ArrayList<>()).add(transactionId));
+        
+        LocalDateTime now = LocalDateTime.now();
+        int updated = 0;
+        for (Map.Entry<Transaction.TransactionStatus, List<String>> entry : byStatus.entrySet()) {
+            Transaction.TransactionStatus status = entry.getKey();
+            if (status == Transaction.TransactionStatus.PROCESSING) {
+                updated += transactionRepository.advanceStatus(entry.getValue(), status,
+                        Transaction.ClearingStatus.PENDING, List.of(Transaction.TransactionStatus.PENDING), now);
+            } else {
+                updated += transactionRepository.advanceStatus(entry.getValue(), status,
+                        Transaction.ClearingStatus.valueOf(status.name()),
+                        List.of(Transaction.TransactionStatus.PENDING, Transaction.TransactionStatus.PROCESSING), now);
+            }
+        }
+        log.info("批量更新交易状态: 事件{}条, 合并后{}笔, 更新{}行", events.size(), latest.size(), updated);
+        return updated;
+    }
+    
+    private static Transaction.TransactionStatus statusOf(TransferEvent.EventType eventType) {
+        switch (eventType) {
+            case TRANSFER_PROCESSED:
+                return Transaction.TransactionStatus.PROCESSING;
+            case CLEARING_SUCCESS:
+                return Transaction.TransactionStatus.SUCCESS;
+            case CLEARING_FAILED:
+                return Transaction.TransactionStatus.FAILED;
+            default:
+                return null;
+        }
+    }
+    
+    private static int statusRank(Transaction.TransactionStatus status) {
+        switch (status) {
+            case PROCESSING:
+                return 1;
+            case SUCCESS:
+            case FAILED:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+    
     /**
      * 批量转账请求内部类
      */
@@ -0,0 +1,198 @@
+package com.distributebank.transactionservice.service;
+
+import com.distributebank.common.event.TransferEvent;
+import com.distributebank.common.model.Transaction;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 交易状态通知中心
+ * 维护短TTL的交易状态缓存和等待者登记表：状态事件到达时更新缓存并回调该交易的所有等待者（长轮询、SSE），
+ * 普通查询优先读缓存，每笔交易的数据库读取降到约一次
+ */
+@Component
+@Slf4j
+public class TransactionStatusNotifier {
+    
+    private final Cache<String, TransactionService.TransactionStatusResponse> statusCache;
+    private final Map<String, Set<Consumer<TransactionService.TransactionStatusResponse>>> waiters = new ConcurrentHashMap<>();
+    private final int maxWaiters;
+    
+    private final AtomicInteger activeWaiters = new AtomicInteger();
+    private final AtomicLong rejectedWaiters = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong notificationsDelivered = new AtomicLong();
+    
+    public TransactionStatusNotifier(@Value("${transaction.status.cache-ttl-ms:3000}") long cacheTtlMs,
+                                     @Value("${transaction.status.cache-max-size:100000}") long cacheMaxSize,
+                                     @Value("${transaction.status.max-waiters:10000}") int maxWaiters) {
+        this.statusCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .build();
+        this.maxWaiters = maxWaiters;
+    }
+    
+    /**
+     * 读取缓存的交易状态，未命中返回null
+     */
+    public TransactionService.TransactionStatusResponse getCached(String transactionId) {
+        TransactionService.TransactionStatusResponse status = statusCache.getIfPresent(transactionId);
+        if (status != null) {
+            cacheHits.incrementAndGet();
+        } else {
+            cacheMisses.incrementAndGet();
+        }
+        return status;
+    }
+    
+    /**
+     * 写入缓存（不通知等待者），状态只前进不回退，返回合并后的状态
+     */
+    public TransactionService.TransactionStatusResponse cache(TransactionService.TransactionStatusResponse status) {
+        return statusCache.asMap().merge(status.getTransactionId(), status,
+                (existing, incoming) -> rank(incoming.getStatus()) >= rank(existing.getStatus()) ? incoming : existing);
+    }
+    
+    /**
+     * 收到转账状态事件：更新缓存并回调等待者，非状态类事件忽略
+     */
+    public void onEvent(TransferEvent event) {
+        TransactionService.TransactionStatusResponse status = toStatus(event);
+        if (status == null) {
+            return;
+        }
+        eventsReceived.incrementAndGet();
+        cache(status);
+        
+        Set<Consumer<TransactionService.TransactionStatusResponse>> listeners = waiters.get(event.getTransactionId());
+        if (listeners == null) {
+            return;
+        }
+        for (Consumer<TransactionService.TransactionStatusResponse> listener : listeners) {
+            try {
+                listener.accept(status);
+                notificationsDelivered.incrementAndGet();
+            } catch (Exception e) {
+                log.warn("回调交易状态等待者失败: {}", event.getTransactionId(), e);
+            }
+        }
+    }
+    
+    /**
+     * 登记等待者，超过上限时返回false，调用方应直接返回当前状态
+     */
+    public boolean addWaiter(String transactionId, Consumer<TransactionService.TransactionStatusResponse> listener) {
+        if (activeWaiters.incrementAndGet() > maxWaiters) {
+            activeWaiters.decrementAndGet();
+            rejectedWaiters.incrementAndGet();
+            return false;
+        }
+        waiters.computeIfAbsent(transactionId, id -> ConcurrentHashMap.newKeySet()).add(listener);
+        return true;
+    }
+    
+    /**
+     * 注销等待者（请求完成、超时或连接断开时调用，重复调用无副作用）
+     */
+    public void removeWaiter(String transactionId, Consumer<TransactionService.TransactionStatusResponse> listener) {
+        waiters.computeIfPresent(transactionId, (id, listeners) -> {
+            if (listeners.remove(listener)) {
+                activeWaiters.decrementAndGet();
+            }
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+    
+    /**
+     * 是否为终态（不会再变化）
+     */
+    public static boolean isFinal(TransactionService.TransactionStatusResponse status) {
+        return rank(status.getStatus()) == 2;
+    }
+    
+    private static int rank(String status) {
+        if (Transaction.TransactionStatus.SUCCESS.name().equals(status)
+                || Transaction.TransactionStatus.FAILED.name().equals(status)) {
+            return 2;
+        }
+        return Transaction.TransactionStatus.PROCESSING.name().equals(status) ? 1 : 0;
+    }
+    
+    private TransactionService.TransactionStatusResponse toStatus(TransferEvent event) {
+        switch (event.getEventType()) {
+            case TRANSFER_PROCESSED:
+                return new TransactionService.TransactionStatusResponse(event.getTransactionId(),
+                        Transaction.TransactionStatus.PROCESSING.name(), Transaction.ClearingStatus.PENDING.name(), null);
+            case CLEARING_SUCCESS:
+                return new TransactionService.TransactionStatusResponse(event.getTransactionId(),
+                        Transaction.TransactionStatus.SUCCESS.name(), Transaction.ClearingStatus.SUCCESS.name(), null);
+            case CLEARING_FAILED:
+                return new TransactionService.TransactionStatusResponse(event.getTransactionId(),
+                        Transaction.TransactionStatus.FAILED.name(), Transaction.ClearingStatus.FAILED.name(), null);
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * 获取通知统计
+     */
+    public NotifierStats getStats() {
+        return new NotifierStats(
+                statusCache.estimatedSize(),
+                cacheHits.get(),
+                cacheMisses.get(),
+                activeWaiters.get(),
+                rejectedWaiters.get(),
+                eventsReceived.get(),
+                notificationsDelivered.get()
+        );
+    }
+    
+    /**
+     * 通知统计类
+     */
+    public static class NotifierStats {
+        private long cachedStatuses;
+        private long cacheHits;
+        private long cacheMisses;
+        private int activeWaiters;
+        private long rejectedWaiters;
+        private long eventsReceived;
+        private long notificationsDelivered;
+        
+        public NotifierStats(long cachedStatuses, long cacheHits, long cacheMisses, int activeWaiters,
+                             long rejectedWaiters, long eventsReceived, long notificationsDelivered) {
+            this.cachedStatuses = cachedStatuses;
+            this.cacheHits = cacheHits;
+            this.cacheMisses = cacheMisses;
+            this.activeWaiters = activeWaiters;
+            this.rejectedWaiters = rejectedWaiters;
+            this.eventsReceived = eventsReceived;
+            this.notificationsDelivered = notificationsDelivered;
+        }
+        
+        // getters
+        public long getCachedStatuses() { return cachedStatuses; }
+        public long getCacheHits() { return cacheHits; }
+        public long getCacheMisses() { return cacheMisses; }
+        public int getActiveWaiters() { return activeWaiters; }
+        public long getRejectedWaiters() { return rejectedWaiters; }
+        public long getEventsReceived() { return eventsReceived; }
+        public long getNotificationsDelivered() { return notificationsDelivered; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,333 @@
+package com.distributebank.transactionservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 转账入口限流器
+ * 按客户端和付款账户两个维度各维护一个令牌桶（GCRA实现：每个桶只有一个"理论到达时间"，CAS推进，无锁），
+ * 两个维度都通过才放行；分布式模式下同样的算法在Redis Lua脚本中原子执行，各实例共享额度。
+ * 下游消费积压时由 {@link ConsumerLagMonitor} 调低自适应系数，按比例收紧所有速率
+ */
+@Component
+@Slf4j
+public class TransferRateLimiter {
+    
+    private static final String REDIS_KEY_PREFIX = "rate:transfer:";
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    
+    /**
+     * 两个桶一起检查，都通过才推进；返回{0}表示放行，否则返回{需等待的微秒数, 受限的桶序号}
+     * KEYS[1]=客户端桶 KEYS[2]=账户桶，ARGV: 客户端间隔(微秒)、客户端突发、账户间隔、账户突发、令牌数
+     */
+    private static final String ACQUIRE_SCRIPT =
+        "local t = redis.call('TIME')\n" +
+        "local now = tonumber(t[1]) * 1000000 + tonumber(t[2])\n" +
+        "local permits = tonumber(ARGV[5])\n" +
+        "local wait = 0\n" +
+        "local limited = 0\n" +
+        "local tats = {}\n" +
+        "for i = 1, 2 do\n" +
+        "    local interval = tonumber(ARGV[i * 2 - 1])\n" +
+        "    local burst = tonumber(ARGV[i * 2])\n" +
+        "    local tat = tonumber(redis.call('GET', KEYS[i]) or now)\n" +
+        "    if tat < now then tat = now end\n" +
+        "    tats[i] = tat + permits * interval\n" +
+        "    local w = tats[i] - now - burst * interval\n" +
+        "    if w > wait then\n" +
+        "        wait = w\n" +
+        "        limited = i\n" +
+        "    end\n" +
+        "end\n" +
+        "if wait > 0 then\n" +
+        "    return {math.ceil(wait), limited}\n" +
+        "end\n" +
+        "for i = 1, 2 do\n" +
+        "    redis.call('SET', KEYS[i], string.format('%d', tats[i]), 'PX', math.ceil((tats[i] - now) / 1000) + 1)\n" +
+        "end\n" +
+        "return {0}\n";
+    
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> REDIS_ACQUIRE_SCRIPT = new DefaultRedisScript<>(ACQUIRE_SCRIPT, List.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final boolean enabled;
+    private final boolean distributed;
+    private final double clientRate;
+    private final int clientBurst;
+    private final double accountRate;
+    private final int accountBurst;
+    
+    /**
+     * 本地模式的令牌桶，长时间未访问的桶自动淘汰
+     */
+    private final Cache<String, AtomicLong> buckets;
+    
+    /**
+     * 自适应系数（0-1]，下游积压时由积压监控调低
+     */
+    private volatile double adaptiveFactor = 1.0;
+    
+    /**
+     * 积压监控最近一次采样的下游消费积压，未开启自适应或尚未采样成功时为-1
+     */
+    private volatile long consumerLag = -1;
+    
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedByClient = new AtomicLong();
+    private final AtomicLong rejectedByAccount = new AtomicLong();
+    private final AtomicLong rejectedBySize = new AtomicLong();
+    private final AtomicLong redisFailures = new AtomicLong();
+    
+    public TransferRateLimiter(RedisTemplate<String, String> redisTemplate,
+                               @Value("${transaction.rate-limit.enabled:true}") boolean enabled,
+                               @Value("${transaction.rate-limit.mode:local}") String mode,
+                               @Value("${transaction.rate-limit.client.rate-per-second:200}") double clientRate,
+                               @Value("${transaction.rate-limit.client.burst:400}") int clientBurst,
+                               @Value("${transaction.rate-limit.account.rate-per-second:50}") double accountRate,
+                               @Value("${transaction.rate-limit.account.burst:100}") int accountBurst,
+                               @Value("${transaction.rate-limit.max-buckets:100000}") long maxBuckets) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.distributed = "redis".equalsIgnoreCase(mode);
+        this.clientRate = clientRate;
+        this.clientBurst = clientBurst;
+        this.accountRate = accountRate;
+        this.accountBurst = accountBurst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofMinutes(5))
+                .build();
+    }
+    
+    /**
+     * 申请permits个令牌（批量转账按笔数申请并全额扣减），返回放行或需等待的时间；
+     * 超过突发上限的批次任何时候都无法放行，直接拒绝，由调用方拆分后提交
+     */
+    public Decision tryAcquire(String clientId, String accountId, int permits) {
+        if (!enabled) {
+            return Decision.ADMITTED;
+        }
+        if (permits > getMaxPermits()) {
+            rejectedBySize.incrementAndGet();
+            return Decision.tooLarge(getMaxPermits());
+        }
+        double factor = adaptiveFactor;
+        long clientInterval = intervalNanos(clientRate, factor);
+        long accountInterval = intervalNanos(accountRate, factor);
+        
+        Decision decision = distributed
+                ? acquireRedis(clientId, accountId, permits, clientInterval, accountInterval)
+                : acquireLocal(clientId, accountId, permits, clientInterval, accountInterval);
+        if (decision.isAdmitted()) {
+            admitted.incrementAndGet();
+        }
+        return decision;
+    }
+    
+    private Decision acquireLocal(String clientId, String accountId, int permits,
+                                  long clientInterval, long accountInterval) {
+        long now = System.nanoTime();
+        AtomicLong clientBucket = buckets.get("client:" + clientId, key -> new AtomicLong(now));
+        long clientWait = acquire(clientBucket, now, permits, clientInterval, clientBurst);
+        if (clientWait > 0) {
+            rejectedByClient.incrementAndGet();
+            return Decision.rejected("client", clientWait);
+        }
+        
+        AtomicLong accountBucket = buckets.get("account:" + accountId, key -> new AtomicLong(now));
+        long accountWait = acquire(accountBucket, now, permits, accountInterval, accountBurst);
+        if (accountWait > 0) {
+            // 账户维度被拒，退还客户端维度已扣的令牌
+            clientBucket.addAndGet(-permits * clientInterval);
+            rejectedByAccount.incrementAndGet();
+            return Decision.rejected("account", accountWait);
+        }
+        return Decision.ADMITTED;
+    }
+    
+    /**
+     * GCRA：tat为下一个令牌的理论到达时间，推进后超出突发容忍范围则拒绝，返回需等待的纳秒数
+     */
+    private long acquire(AtomicLong bucket, long now, int permits, long interval, int burst) {
+        long tolerance = interval * burst;
+        while (true) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + permits * interval;
+            long wait = next - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+    
+    private Decision acquireRedis(String clientId, String accountId, int permits,
+                                  long clientInterval, long accountInterval) {
+        try {
+            List<?> result = redisTemplate.execute(REDIS_ACQUIRE_SCRIPT,
+                    List.of(REDIS_KEY_PREFIX + "client:" + clientId, REDIS_KEY_PREFIX + "account:" + accountId),
+                    Long.toString(TimeUnit.NANOSECONDS.toMicros(clientInterval)), Integer.toString(clientBurst),
+                    Long.toString(TimeUnit.NANOSECONDS.toMicros(accountInterval)), Integer.toString(accountBurst),
+                    Integer.toString(permits));
+            long waitMicros = result != null && !result.isEmpty() ? ((Number) result.get(0)).longValue() : 0;
+            if (waitMicros <= 0) {
+                return Decision.ADMITTED;
+            }
+            if (((Number) result.get(1)).intValue() == 1) {
+                rejectedByClient.incrementAndGet();
+                return Decision.rejected("client", TimeUnit.MICROSECONDS.toNanos(waitMicros));
+            }
+            rejectedByAccount.incrementAndGet();
+            return Decision.rejected("account", TimeUnit.MICROSECONDS.toNanos(waitMicros));
+        } catch (Exception e) {
+            // Redis不可用时放行，避免限流器本身成为故障点
+            redisFailures.incrementAndGet();
+            log.warn("分布式限流检查失败，本次放行: client={} account={}", clientId, accountId, e);
+            return Decision.ADMITTED;
+        }
+    }
+    
+    private long intervalNanos(double ratePerSecond, double factor) {
+        return (long) (NANOS_PER_SECOND / (ratePerSecond * factor));
+    }
+    
+    /**
+     * 设置自适应系数（由积压监控调用）
+     */
+    public void setAdaptiveFactor(double adaptiveFactor) {
+        this.adaptiveFactor = adaptiveFactor;
+    }
+    
+    public double getAdaptiveFactor() {
+        return adaptiveFactor;
+    }
+    
+    /**
+     * 记录最近一次采样的下游消费积压（由积压监控调用）
+     */
+    public void setConsumerLag(long consumerLag) {
+        this.consumerLag = consumerLag;
+    }
+    
+    /**
+     * 单次可申请的最大令牌数（两个维度突发上限的较小值）
+     */
+    public int getMaxPermits() {
+        return Math.min(clientBurst, accountBurst);
+    }
+    
+    /**
+     * 获取限流统计
+     */
+    public LimiterStats getStats() {
+        return new LimiterStats(
+                enabled,
+                distributed ? "redis" : "local",
+                adaptiveFactor,
+                consumerLag,
+                admitted.get(),
+                rejectedByClient.get(),
+                rejectedByAccount.get(),
+                rejectedBySize.get(),
+                redisFailures.get(),
+                buckets.estimatedSize()
+        );
+    }
+    
+    /**
+     * 限流判定结果
+     */
+    public static class Decision {
+        private static final Decision ADMITTED = new Decision(true, null, 0);
+        
+        private boolean admitted;
+        private String limitedBy;
+        private long retryAfterMs;
+        private int maxPermits;
+        
+        private Decision(boolean admitted, String limitedBy, long retryAfterMs) {
+            this.admitted = admitted;
+            this.limitedBy = limitedBy;
+            this.retryAfterMs = retryAfterMs;
+        }
+        
+        private static Decision rejected(String limitedBy, long waitNanos) {
+            return new Decision(false, limitedBy, Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+        }
+        
+        private static Decision tooLarge(int maxPermits) {
+            Decision decision = new Decision(false, "size", 0);
+            decision.maxPermits = maxPermits;
+            return decision;
+        }
+        
+        /**
+         * 是否因单次申请超过突发上限被拒（等待无效，需拆分）
+         */
+        public boolean isTooLarge() {
+            return maxPermits > 0;
+        }
+        
+        // getters
+        public boolean isAdmitted() { return admitted; }
+        public int getMaxPermits() { return maxPermits; }
+        public String getLimitedBy() { return limitedBy; }
+        public long getRetryAfterMs() { return retryAfterMs; }
+    }
+    
+    /**
+     * 限流统计类
+     */
+    public static class LimiterStats {
+        private boolean enabled;
+        private String mode;
+        private double adaptiveFactor;
+        private long consumerLag;
+        private long admitted;
+        private long rejectedByClient;
+        private long rejectedByAccount;
+        private long rejectedBySize;
+        private long redisFailures;
+        private long localBuckets;
+        
+        public LimiterStats(boolean enabled, String mode, double adaptiveFactor, long consumerLag, long admitted,
+                            long rejectedByClient, long rejectedByAccount, long rejectedBySize, long redisFailures,
+                            long localBuckets) {
+            this.enabled = enabled;
+            this.mode = mode;
+            this.adaptiveFactor = adaptiveFactor;
+            this.consumerLag = consumerLag;
+            this.admitted = admitted;
+            this.rejectedByClient = rejectedByClient;
+            this.rejectedByAccount = rejectedByAccount;
+            this.rejectedBySize = rejectedBySize;
+            this.redisFailures = redisFailures;
+            this.localBuckets = localBuckets;
+        }
+        
+        // getters
+        public boolean isEnabled() { return enabled; }
+        public String getMode() { return mode; }
+        public double getAdaptiveFactor() { return adaptiveFactor; }
+        public long getConsumerLag() { return consumerLag; }
+        public long getAdmitted() { return admitted; }
+        public long getRejectedByClient() { return rejectedByClient; }
+        public long getRejectedByAccount() { return rejectedByAccount; }
+        public long getRejectedBySize() { return rejectedBySize; }
+        public long getRedisFailures() { return redisFailures; }
+        public long getLocalBuckets() { return localBuckets; }
+    }
+}
\ No newline at end of file
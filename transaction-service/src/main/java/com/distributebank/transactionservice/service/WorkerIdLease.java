@@ -0,0 +1,148 @@
+package com.distributebank.transactionservice.service;
+
+import com.distributebank.common.util.TransactionIdGenerator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * 交易ID工作节点ID租约
+ * 启动时从Redis INCR得到的位置开始依次尝试 SET txn:worker-id:{n} NX PX，占到的ID即本实例的工作节点ID，
+ * 定时续约；租约只在最近一次成功续约后的TTL内有效，Redis不可达或进程长时间停顿导致续约中断时，
+ * 在键可能过期被其他实例占用之前停止生成交易ID，同一时刻不会有两个存活实例使用同一ID
+ */
+@Component
+@Slf4j
+public class WorkerIdLease {
+    
+    private static final String WORKER_ID_KEY_PREFIX = "txn:worker-id:";
+    private static final String WORKER_ID_SEQUENCE_KEY = "txn:worker-id:seq";
+    
+    // Redis Lua脚本：仍由本实例持有时续约，返回1；否则返回0
+    private static final String RENEW_LEASE_SCRIPT =
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+        "    return redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+        "end\n" +
+        "return 0";
+    
+    // Redis Lua脚本：仍由本实例持有时释放
+    private static final String RELEASE_LEASE_SCRIPT =
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+        "    return redis.call('DEL', KEYS[1])\n" +
+        "end\n" +
+        "return 0";
+    
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT =
+            new DefaultRedisScript<>(RENEW_LEASE_SCRIPT, Long.class);
+    
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT =
+            new DefaultRedisScript<>(RELEASE_LEASE_SCRIPT, Long.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final long ttlMs;
+    private final String token = "transaction-service-" + UUID.randomUUID();
+    
+    private volatile int workerId = -1;
+    
+    /**
+     * 租约有效期截止时间：最近一次成功占用或续约前的时间 + TTL
+     */
+    private volatile long validUntil;
+    
+    public WorkerIdLease(RedisTemplate<String, String> redisTemplate,
+                         @Value("${transaction.id.lease-ttl-ms:30000}") long ttlMs) {
+        this.redisTemplate = redisTemplate;
+        this.ttlMs = ttlMs;
+    }
+    
+    /**
+     * 领取一个未被占用的工作节点ID，全部被占用时抛出异常
+     */
+    public synchronized int acquire() {
+        Long sequence = redisTemplate.opsForValue().increment(WORKER_ID_SEQUENCE_KEY);
+        if (sequence == null) {
+            throw new RuntimeException("从Redis领取交易ID工作节点ID失败");
+        }
+        int size = TransactionIdGenerator.MAX_WORKER_ID + 1;
+        int start = (int) Math.floorMod(sequence, (long) size);
+        for (int k = 0; k < size; k++) {
+            int candidate = (start + k) % size;
+            long startedAt = System.currentTimeMillis();
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(keyOf(candidate), token, Duration.ofMillis(ttlMs)))) {
+                workerId = candidate;
+                validUntil = startedAt + ttlMs;
+                log.info("领取交易ID工作节点ID: {} 租约: {}ms", candidate, ttlMs);
+                return candidate;
+            }
+        }
+        throw new RuntimeException("交易ID工作节点ID已全部被占用");
+    }
+    
+    /**
+     * 租约是否仍然有效
+     */
+    public boolean isValid() {
+        return System.currentTimeMillis() < validUntil;
+    }
+    
+    /**
+     * 定时续约；键已过期时尝试重新占用同一ID，已被其他实例占用时租约随即失效，停止生成交易ID
+     */
+    @Scheduled(fixedDelayString = "${transaction.id.lease-renew-ms:10000}")
+    public void renew() {
+        int id = workerId;
+        if (id < 0) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(keyOf(id)),
+                    token, Long.toString(ttlMs));
+            if (renewed != null && renewed == 1) {
+                validUntil = startedAt + ttlMs;
+                return;
+            }
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(keyOf(id), token, Duration.ofMillis(ttlMs)))) {
+                validUntil = startedAt + ttlMs;
+                log.warn("交易ID工作节点租约曾过期，已重新占用: {}", id);
+                return;
+            }
+            validUntil = 0;
+            log.error("交易ID工作节点ID已被其他实例占用，本实例停止生成交易ID，需重启: {}", id);
+        } catch (Exception e) {
+            // 有效期内继续使用，到期前续约仍未成功则停止生成
+            log.warn("交易ID工作节点租约续约失败: {}", id, e);
+        }
+    }
+    
+    /**
+     * 停止时释放租约，ID可立即被新实例领取
+     */
+    @PreDestroy
+    public void release() {
+        int id = workerId;
+        if (id < 0) {
+            return;
+        }
+        validUntil = 0;
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(keyOf(id)), token);
+        } catch (Exception e) {
+            log.warn("释放交易ID工作节点租约失败: {}", id, e);
+        }
+    }
+    
+    private String keyOf(int id) {
+        return WORKER_ID_KEY_PREFIX + id;
+    }
+}